@@ -0,0 +1,52 @@
+package com.example.petlorshop.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.core.io.ClassPathResource;
+
+import java.util.List;
+
+// Độ trễ tra cứu địa giới hành chính (từ điển trong bộ nhớ nạp từ dia-gioi-hanh-chinh.json): ./gradlew jmh
+@State(Scope.Benchmark)
+public class DiaChiHanhChinhBenchmark {
+
+	private DiaChiHanhChinhService diaChiHanhChinhService;
+
+	@Setup
+	public void setUp() {
+		diaChiHanhChinhService = new DiaChiHanhChinhService(new ObjectMapper(), new ClassPathResource("dia-gioi-hanh-chinh.json"));
+	}
+
+	// Tên đúng chuẩn: khớp khóa đầy đủ ở cả ba cấp
+	@Benchmark
+	public DiaChiHanhChinhService.DiaChiChuan chuanHoaDungTen() {
+		return diaChiHanhChinhService.chuanHoa("Hồ Chí Minh", "Quận 1", "Phường Bến Nghé");
+	}
+
+	// Viết tắt, không dấu, thừa khoảng trắng: phải bỏ dấu/tiền tố trước khi khớp
+	@Benchmark
+	public DiaChiHanhChinhService.DiaChiChuan chuanHoaVietTat() {
+		return diaChiHanhChinhService.chuanHoa(" tp. ho chi minh ", "q.1", "p ben nghe");
+	}
+
+	// Không có trong từ điển: trả lại tên đã gọn khoảng trắng
+	@Benchmark
+	public DiaChiHanhChinhService.DiaChiChuan chuanHoaKhongCo() {
+		return diaChiHanhChinhService.chuanHoa("Tỉnh Không Có", "Huyện Không Có", "Xã Không Có");
+	}
+
+	// Gợi ý tỉnh/thành: quét cả danh sách cấp tỉnh
+	@Benchmark
+	public List<String> goiYTinhThanh() {
+		return diaChiHanhChinhService.goiY(null, null, "ha", 10);
+	}
+
+	// Gợi ý phường/xã trong một quận
+	@Benchmark
+	public List<String> goiYPhuongXa() {
+		return diaChiHanhChinhService.goiY("Hồ Chí Minh", "Quận 1", "ben", 10);
+	}
+}
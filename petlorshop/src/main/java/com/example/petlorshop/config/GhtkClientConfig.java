@@ -0,0 +1,32 @@
+package com.example.petlorshop.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+
+/**
+ * HTTP client riêng cho GHTK: dùng java.net.http.HttpClient (giữ kết nối keep-alive và tái sử dụng giữa các request)
+ * với timeout kết nối/đọc chặt để một GHTK bị treo không giữ thread Tomcat vô thời hạn.
+ * Số lời gọi đồng thời được giới hạn ở GhtkService (bulkhead).
+ */
+@Configuration
+public class GhtkClientConfig {
+
+    @Bean
+    public RestTemplate ghtkRestTemplate(@Value("${ghtk.connect-timeout-ms:1000}") long connectTimeoutMs,
+                                         @Value("${ghtk.read-timeout-ms:2000}") long readTimeoutMs) {
+        HttpClient httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .build();
+
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+        requestFactory.setReadTimeout(Duration.ofMillis(readTimeoutMs));
+        return new RestTemplate(requestFactory);
+    }
+}
@@ -66,10 +66,10 @@ public class SecurityConfig {
                         .requestMatchers("/api/auth/**").permitAll()
                         .requestMatchers("/api/search/**").permitAll()
                         .requestMatchers("/uploads/**").permitAll()
-                        .requestMatchers(HttpMethod.GET, "/api/san-pham/**", "/api/dich-vu/**", "/api/danh-muc-san-pham/**", "/api/danh-muc-dich-vu/**").permitAll()
-                        .requestMatchers(HttpMethod.POST, "/api/don-hang/guest", "/api/don-hang/tinh-phi-ship").permitAll()
+                        .requestMatchers(HttpMethod.GET, "/api/san-pham/**", "/api/dich-vu/**", "/api/danh-muc-san-pham/**", "/api/danh-muc-dich-vu/**", "/api/dia-chi/**").permitAll()
+                        .requestMatchers(HttpMethod.POST, "/api/don-hang/guest", "/api/don-hang/tinh-phi-ship", "/api/don-hang/bao-gia").permitAll()
                         .requestMatchers(HttpMethod.POST, "/api/khuyen-mai/kiem-tra").permitAll()
-                        .requestMatchers(HttpMethod.GET, "/api/don-hang/ly-do-huy", "/api/lich-hen/ly-do-huy").permitAll()
+                        .requestMatchers(HttpMethod.GET, "/api/don-hang/ly-do-huy", "/api/lich-hen/ly-do-huy", "/api/lich-hen/slots").permitAll()
                         .requestMatchers(HttpMethod.POST, "/api/lich-hen/guest").permitAll()
                         .requestMatchers(HttpMethod.GET, "/api/bai-viet/cong-khai", "/api/bai-viet/danh-muc/**", "/api/bai-viet/{id}", "/api/bai-viet/slug/**", "/api/bai-viet/{id}/lien-quan").permitAll()
                         .requestMatchers(HttpMethod.GET, "/api/danh-gia/san-pham/**").permitAll() // Xem đánh giá sản phẩm là public
@@ -112,6 +112,7 @@ public class SecurityConfig {
                         .requestMatchers("/api/nha-cung-cap/**").hasAuthority(admin)
                         .requestMatchers("/api/cua-hang/**").hasAuthority(admin)
                         .requestMatchers(HttpMethod.GET, "/api/danh-gia").hasAuthority(admin) // Admin xem tất cả đánh giá
+                        .requestMatchers(HttpMethod.GET, "/api/don-hang/export").hasAuthority(admin) // Xuất đơn hàng cho kế toán
 
                         // Quản lý sản phẩm/dịch vụ (POST/PUT/DELETE)
                         .requestMatchers(HttpMethod.POST, "/api/san-pham", "/api/dich-vu", "/api/danh-muc-san-pham", "/api/danh-muc-dich-vu").hasAuthority(admin)
@@ -0,0 +1,36 @@
+package com.example.petlorshop.controllers;
+
+import com.example.petlorshop.dto.KpiDoanhThuResponse;
+import com.example.petlorshop.services.DoanhThuService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/admin/bao-cao")
+public class BaoCaoController {
+
+    @Autowired
+    private DoanhThuService doanhThuService;
+
+    // Doanh số hôm nay / tuần này / tháng này, đọc từ bảng tổng hợp theo ngày
+    @GetMapping("/kpi")
+    public ResponseEntity<KpiDoanhThuResponse> getKpi() {
+        return ResponseEntity.ok(doanhThuService.getKpi());
+    }
+
+    // Dựng lại bảng tổng hợp cho một khoảng ngày từ dữ liệu đơn hàng
+    @PostMapping("/dung-lai")
+    public ResponseEntity<?> dungLai(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate tuNgay,
+                                     @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate denNgay) {
+        if (denNgay.isBefore(tuNgay)) {
+            return ResponseEntity.badRequest().body(Map.of("error", "denNgay phải sau hoặc bằng tuNgay."));
+        }
+        int soDong = doanhThuService.dungLai(tuNgay, denNgay);
+        return ResponseEntity.ok(Map.of("soDong", soDong));
+    }
+}
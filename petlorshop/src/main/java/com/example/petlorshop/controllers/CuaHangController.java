@@ -2,10 +2,14 @@ package com.example.petlorshop.controllers;
 
 import com.example.petlorshop.models.CuaHang;
 import com.example.petlorshop.services.CuaHangService;
+import com.example.petlorshop.services.GhtkService;
+import com.example.petlorshop.services.ShippingFeeCache;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.Map;
+
 @RestController
 @RequestMapping("/api/cua-hang")
 public class CuaHangController {
@@ -13,6 +17,12 @@ public class CuaHangController {
     @Autowired
     private CuaHangService cuaHangService;
 
+    @Autowired
+    private ShippingFeeCache shippingFeeCache;
+
+    @Autowired
+    private GhtkService ghtkService;
+
     @GetMapping
     public ResponseEntity<CuaHang> getInfo() {
         return ResponseEntity.ok(cuaHangService.getThongTinCuaHang());
@@ -22,4 +32,12 @@ public class CuaHangController {
     public ResponseEntity<CuaHang> updateInfo(@RequestBody CuaHang cuaHang) {
         return ResponseEntity.ok(cuaHangService.updateThongTinCuaHang(cuaHang));
     }
+
+    // Thống kê GHTK: cache phí vận chuyển (hit/miss) và client (độ trễ, lỗi, trạng thái circuit breaker)
+    @GetMapping("/ghtk/thong-ke")
+    public ResponseEntity<Map<String, Object>> getGhtkThongKe() {
+        return ResponseEntity.ok(Map.of(
+                "cache", shippingFeeCache.getThongKe(),
+                "client", ghtkService.getThongKe()));
+    }
 }
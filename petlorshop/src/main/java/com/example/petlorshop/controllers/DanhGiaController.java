@@ -11,6 +11,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
@@ -30,8 +31,15 @@ public class DanhGiaController {
     }
 
     // API lấy tất cả đánh giá (Có thể dùng chung hoặc public tùy logic cũ của bạn)
+    // Mặc định trả về Page (offset). Truyền keyset=true hoặc after=<cursor> để dùng phân trang theo cursor
     @GetMapping
-    public ResponseEntity<Page<DanhGiaResponse>> getAllDanhGia(Pageable pageable) {
+    public ResponseEntity<?> getAllDanhGia(Pageable pageable,
+                                           @RequestParam(required = false) String after,
+                                           @RequestParam(defaultValue = "false") boolean keyset,
+                                           @RequestParam(defaultValue = "false") boolean withCount) {
+        if (keyset || StringUtils.hasText(after)) {
+            return ResponseEntity.ok(danhGiaService.getAllDanhGiaKeyset(after, pageable.getPageSize(), withCount));
+        }
         return ResponseEntity.ok(danhGiaService.getAllDanhGia(pageable));
     }
 
@@ -0,0 +1,25 @@
+package com.example.petlorshop.controllers;
+
+import com.example.petlorshop.services.DiaChiHanhChinhService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/dia-chi")
+public class DiaChiController {
+
+    @Autowired
+    private DiaChiHanhChinhService diaChiHanhChinhService;
+
+    // Gợi ý tỉnh/thành (không truyền tinhThanh), quận/huyện (có tinhThanh) hoặc phường/xã (có cả quanHuyen)
+    @GetMapping("/goi-y")
+    public ResponseEntity<List<String>> goiY(@RequestParam(required = false) String tinhThanh,
+                                             @RequestParam(required = false) String quanHuyen,
+                                             @RequestParam(required = false) String q,
+                                             @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(diaChiHanhChinhService.goiY(tinhThanh, quanHuyen, q, Math.max(1, Math.min(limit, 50))));
+    }
+}
@@ -1,21 +1,37 @@
 package com.example.petlorshop.controllers;
 
+import com.example.petlorshop.dto.BaoGiaRequest;
+import com.example.petlorshop.dto.ChuyenTrangThaiRequest;
 import com.example.petlorshop.dto.DonHangRequest;
 import com.example.petlorshop.dto.DonHangResponse;
 import com.example.petlorshop.dto.DonHangUpdateRequest;
 import com.example.petlorshop.dto.GuestOrderRequest;
+import com.example.petlorshop.dto.KetQuaChuyenTrangThai;
 import com.example.petlorshop.dto.ShippingFeeRequest;
 import com.example.petlorshop.models.DonHang;
+import com.example.petlorshop.services.DonHangExportService;
 import com.example.petlorshop.services.DonHangService;
+import com.example.petlorshop.services.IdempotencyService;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
 
@@ -23,12 +39,55 @@ import java.util.Map;
 @RequestMapping("/api/don-hang")
 public class DonHangController {
 
+    private static final String IDEMPOTENCY_HEADER = "Idempotency-Key";
+
     @Autowired
     private DonHangService donHangService;
 
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private DonHangExportService donHangExportService;
+
+    // Mặc định trả về Page (offset). Truyền keyset=true hoặc after=<cursor> để dùng phân trang theo cursor;
+    // withCount=true nếu cần tổng số bản ghi ở chế độ cursor.
     @GetMapping
-    public Page<DonHangResponse> getAllDonHang(Pageable pageable, @RequestParam(required = false) String keyword) {
-        return donHangService.getAllDonHang(pageable, keyword);
+    public ResponseEntity<?> getAllDonHang(Pageable pageable,
+                                           @RequestParam(required = false) String keyword,
+                                           @RequestParam(required = false) String after,
+                                           @RequestParam(defaultValue = "false") boolean keyset,
+                                           @RequestParam(defaultValue = "false") boolean withCount) {
+        if (keyset || StringUtils.hasText(after)) {
+            return ResponseEntity.ok(donHangService.getAllDonHangKeyset(after, pageable.getPageSize(), keyword, withCount));
+        }
+        return ResponseEntity.ok(donHangService.getAllDonHang(pageable, keyword));
+    }
+
+    /**
+     * Xuất đơn hàng cho kế toán: CSV (mặc định) hoặc NDJSON, theo khoảng ngày đặt và trạng thái (tùy chọn).
+     * Ghi thẳng ra response trong lúc đọc cursor, không phân trang và không giữ toàn bộ kết quả trong bộ nhớ.
+     */
+    @GetMapping("/export")
+    public void exportDonHang(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate tuNgay,
+                              @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate denNgay,
+                              @RequestParam(required = false) DonHang.TrangThaiDonHang trangThai,
+                              @RequestParam(defaultValue = "csv") String format,
+                              HttpServletResponse response) throws IOException {
+        DonHangExportService.DinhDang dinhDang = "ndjson".equalsIgnoreCase(format)
+                ? DonHangExportService.DinhDang.NDJSON : DonHangExportService.DinhDang.CSV;
+        if (denNgay.isBefore(tuNgay)) {
+            response.sendError(HttpStatus.BAD_REQUEST.value(), "denNgay phải sau hoặc bằng tuNgay.");
+            return;
+        }
+
+        String fileName = "don-hang_" + tuNgay + "_" + denNgay + (dinhDang == DonHangExportService.DinhDang.CSV ? ".csv" : ".ndjson");
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setContentType(dinhDang == DonHangExportService.DinhDang.CSV ? "text/csv" : "application/x-ndjson");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"");
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8), 64 * 1024);
+        donHangExportService.export(tuNgay, denNgay, trangThai, dinhDang, writer);
     }
 
     @GetMapping("/{id}")
@@ -55,31 +114,56 @@ public class DonHangController {
                 .orElse(ResponseEntity.notFound().build());
     }
 
+    // Header Idempotency-Key (tùy chọn): client gửi lại cùng key khi retry sẽ nhận lại đúng đơn hàng đã tạo,
+    // dùng lại key với giỏ hàng/địa chỉ khác thì trả về 422
     @PostMapping
-    public ResponseEntity<?> createDonHang(@RequestBody DonHangRequest donHangRequest) {
+    public ResponseEntity<?> createDonHang(@RequestBody DonHangRequest donHangRequest,
+                                           @RequestHeader(value = IDEMPOTENCY_HEADER, required = false) String idempotencyKey) {
         try {
-            DonHang createdDonHang = donHangService.createDonHang(donHangRequest);
+            Integer donHangId = StringUtils.hasText(idempotencyKey)
+                    ? idempotencyService.execute("user:" + currentUserName(), idempotencyKey, donHangRequest,
+                            () -> donHangService.createDonHang(donHangRequest).getDonHangId())
+                    : donHangService.createDonHang(donHangRequest).getDonHangId();
             // Trả về DTO thay vì Entity để tránh lỗi lazy loading
-            return donHangService.getDonHangById(createdDonHang.getDonHangId())
+            return donHangService.getDonHangById(donHangId)
                 .map(ResponseEntity::ok)
                 .orElse(ResponseEntity.internalServerError().build());
+        } catch (IdempotencyService.KhoaDaDungException e) {
+            return ResponseEntity.unprocessableEntity().body(Map.of("error", e.getMessage()));
         } catch (RuntimeException e) {
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         }
     }
     
+    // Key của khách vãng lai được tách theo số điện thoại/email người nhận: hai khách trùng key không thấy đơn của nhau
     @PostMapping("/guest")
-    public ResponseEntity<?> createGuestOrder(@RequestBody GuestOrderRequest request) {
+    public ResponseEntity<?> createGuestOrder(@RequestBody GuestOrderRequest request,
+                                              @RequestHeader(value = IDEMPOTENCY_HEADER, required = false) String idempotencyKey) {
         try {
-            DonHang createdDonHang = donHangService.createGuestOrder(request);
-            return donHangService.getDonHangById(createdDonHang.getDonHangId())
+            Integer donHangId = StringUtils.hasText(idempotencyKey)
+                    ? idempotencyService.execute(guestScope(request), idempotencyKey, request,
+                            () -> donHangService.createGuestOrder(request).getDonHangId())
+                    : donHangService.createGuestOrder(request).getDonHangId();
+            return donHangService.getDonHangById(donHangId)
                 .map(ResponseEntity::ok)
                 .orElse(ResponseEntity.internalServerError().build());
+        } catch (IdempotencyService.KhoaDaDungException e) {
+            return ResponseEntity.unprocessableEntity().body(Map.of("error", e.getMessage()));
         } catch (RuntimeException e) {
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         }
     }
     
+    // Báo giá cho trang thanh toán: trả về tổng tiền và maBaoGia (token có chữ ký, sống ngắn) để gửi kèm khi đặt hàng
+    @PostMapping("/bao-gia")
+    public ResponseEntity<?> taoBaoGia(@RequestBody BaoGiaRequest request) {
+        try {
+            return ResponseEntity.ok(donHangService.taoBaoGia(request));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
     @PostMapping("/tinh-phi-ship")
     public ResponseEntity<?> calculateShippingFee(@RequestBody ShippingFeeRequest request) {
         try {
@@ -91,15 +175,31 @@ public class DonHangController {
     }
 
     @PutMapping("/{id}")
-    public ResponseEntity<DonHangResponse> updateDonHang(@PathVariable Integer id, @RequestBody DonHangUpdateRequest updateRequest) {
+    public ResponseEntity<?> updateDonHang(@PathVariable Integer id, @RequestBody DonHangUpdateRequest updateRequest) {
         try {
             DonHangResponse updatedDonHang = donHangService.updateDonHangStatus(id, updateRequest);
             return ResponseEntity.ok(updatedDonHang);
+        } catch (ObjectOptimisticLockingFailureException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("error", "Đơn hàng vừa được người khác cập nhật, vui lòng tải lại."));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         } catch (RuntimeException e) {
             return ResponseEntity.notFound().build();
         }
     }
 
+    // Chuyển trạng thái nhiều đơn (ví dụ đánh dấu DANG_GIAO cho cả lô), trả về kết quả từng đơn
+    @PutMapping("/trang-thai")
+    public ResponseEntity<?> chuyenTrangThaiHangLoat(@RequestBody ChuyenTrangThaiRequest request) {
+        try {
+            List<KetQuaChuyenTrangThai> ketQua = donHangService.chuyenTrangThaiHangLoat(request.getDonHangIds(), request.getTrangThai());
+            return ResponseEntity.ok(ketQua);
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
     @PutMapping("/me/{id}/cancel")
     public ResponseEntity<?> cancelDonHang(@PathVariable Integer id, @RequestBody(required = false) Map<String, String> body) {
         try {
@@ -140,4 +240,15 @@ public class DonHangController {
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         }
     }
+
+    private String guestScope(GuestOrderRequest request) {
+        String soDienThoai = request.getSoDienThoaiNhan() != null ? request.getSoDienThoaiNhan().replaceAll("\\D", "") : "";
+        String email = request.getEmail() != null ? request.getEmail().trim().toLowerCase() : "";
+        return "guest:" + soDienThoai + ":" + email;
+    }
+
+    private String currentUserName() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication != null ? authentication.getName() : "anonymous";
+    }
 }
@@ -1,6 +1,7 @@
 package com.example.petlorshop.controllers;
 
 import com.example.petlorshop.dto.AddToCartRequest;
+import com.example.petlorshop.dto.GioHangBatchRequest;
 import com.example.petlorshop.dto.GioHangResponse;
 import com.example.petlorshop.models.NguoiDung;
 import com.example.petlorshop.models.Role;
@@ -125,6 +126,32 @@ public class GioHangController {
         }
     }
 
+    // Nhiều thao tác thêm/cập nhật/xóa trong một request, áp dụng trong một transaction
+    @PostMapping("/batch/{userId}")
+    public ResponseEntity<GioHangResponse> capNhatHangLoat(@PathVariable Integer userId,
+                                                          @Valid @RequestBody GioHangBatchRequest request) {
+        try {
+            checkOwnership(userId);
+            GioHangResponse gioHang = gioHangService.capNhatHangLoat(userId, request.getThaoTacList());
+            return ResponseEntity.ok(gioHang);
+        } catch (SecurityException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(null);
+        }
+    }
+
+    @PostMapping("/me/batch")
+    public ResponseEntity<GioHangResponse> capNhatHangLoatMe(@Valid @RequestBody GioHangBatchRequest request) {
+        try {
+            NguoiDung currentUser = getCurrentUser();
+            GioHangResponse gioHang = gioHangService.capNhatHangLoat(currentUser.getUserId(), request.getThaoTacList());
+            return ResponseEntity.ok(gioHang);
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(null);
+        }
+    }
+
     @DeleteMapping("/remove/{userId}/{sanPhamId}")
     public ResponseEntity<GioHangResponse> xoaKhoiGio(@PathVariable Integer userId, @PathVariable Integer sanPhamId) {
         try {
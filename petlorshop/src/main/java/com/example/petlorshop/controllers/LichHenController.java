@@ -8,14 +8,16 @@ import com.example.petlorshop.dto.LichHenUpdateRequest;
 import com.example.petlorshop.models.LichHen;
 import com.example.petlorshop.services.LichHenService;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
 
@@ -26,9 +28,29 @@ public class LichHenController {
     @Autowired
     private LichHenService lichHenService;
 
+    // Mặc định trả về Page (offset). Truyền keyset=true hoặc after=<cursor> để dùng phân trang theo cursor
     @GetMapping
-    public Page<LichHenResponse> getAllLichHen(Pageable pageable, @RequestParam(required = false) String keyword) {
-        return lichHenService.getAllLichHen(pageable, keyword);
+    public ResponseEntity<?> getAllLichHen(Pageable pageable,
+                                           @RequestParam(required = false) String keyword,
+                                           @RequestParam(required = false) String after,
+                                           @RequestParam(defaultValue = "false") boolean keyset,
+                                           @RequestParam(defaultValue = "false") boolean withCount) {
+        if (keyset || StringUtils.hasText(after)) {
+            return ResponseEntity.ok(lichHenService.getAllLichHenKeyset(after, pageable.getPageSize(), keyword, withCount));
+        }
+        return ResponseEntity.ok(lichHenService.getAllLichHen(pageable, keyword));
+    }
+
+    // Giờ còn đặt được của một dịch vụ trong ngày, kèm nhân viên rảnh (công khai cho khách vãng lai)
+    @GetMapping("/slots")
+    public ResponseEntity<?> getKhungGioTrong(@RequestParam Integer dichVuId,
+                                              @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+        try {
+            return ResponseEntity.ok(lichHenService.getKhungGioTrong(dichVuId, date));
+        } catch (RuntimeException e) {
+            // Ví dụ dichVuId không tồn tại
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
     }
 
     @GetMapping("/{id}")
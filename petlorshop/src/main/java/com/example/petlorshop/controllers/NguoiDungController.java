@@ -8,13 +8,13 @@ import com.example.petlorshop.services.NguoiDungService;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -53,9 +53,18 @@ public class NguoiDungController {
         );
     }
 
+    // Mặc định trả về Page (offset). Truyền keyset=true hoặc after=<cursor> để dùng phân trang theo cursor
     @GetMapping
-    public Page<NguoiDungResponse> getAllNguoiDung(Pageable pageable, @RequestParam(required = false) String keyword) {
-        return nguoiDungService.getAllNguoiDung(pageable, keyword).map(this::toNguoiDungResponse);
+    public ResponseEntity<?> getAllNguoiDung(Pageable pageable,
+                                             @RequestParam(required = false) String keyword,
+                                             @RequestParam(required = false) String after,
+                                             @RequestParam(defaultValue = "false") boolean keyset,
+                                             @RequestParam(defaultValue = "false") boolean withCount) {
+        if (keyset || StringUtils.hasText(after)) {
+            return ResponseEntity.ok(nguoiDungService.getAllNguoiDungKeyset(after, pageable.getPageSize(), keyword, withCount)
+                    .map(this::toNguoiDungResponse));
+        }
+        return ResponseEntity.ok(nguoiDungService.getAllNguoiDung(pageable, keyword).map(this::toNguoiDungResponse));
     }
 
     @GetMapping("/{id}")
@@ -0,0 +1,15 @@
+package com.example.petlorshop.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class BaoGiaRequest {
+    private String tinhThanh;
+    private String quanHuyen;
+    private String phuongXa;
+    private String diaChi;
+    private String maKhuyenMai;
+    private List<ChiTietDonHangRequest> items;
+}
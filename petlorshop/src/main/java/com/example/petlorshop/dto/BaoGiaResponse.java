@@ -0,0 +1,20 @@
+package com.example.petlorshop.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BaoGiaResponse {
+    private BigDecimal tongTienHang;
+    private BigDecimal soTienGiam;
+    private BigDecimal phiVanChuyen;
+    private BigDecimal tongThanhToan;
+    private String maBaoGia; // Gửi kèm khi đặt hàng (maBaoGia) để không phải tính lại phí vận chuyển
+    private LocalDateTime hetHan;
+}
@@ -0,0 +1,12 @@
+package com.example.petlorshop.dto;
+
+import com.example.petlorshop.models.DonHang;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class ChuyenTrangThaiRequest {
+    private List<Integer> donHangIds;
+    private DonHang.TrangThaiDonHang trangThai;
+}
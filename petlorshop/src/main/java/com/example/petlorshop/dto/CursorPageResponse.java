@@ -0,0 +1,24 @@
+package com.example.petlorshop.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPageResponse<T> {
+    private List<T> content;
+    private String nextCursor; // Truyền lại vào tham số "after" để lấy trang tiếp theo, null nếu hết dữ liệu
+    private boolean hasNext;
+    private Long totalElements; // Chỉ có giá trị khi client yêu cầu withCount=true
+
+    public <R> CursorPageResponse<R> map(Function<T, R> mapper) {
+        List<R> mapped = content.stream().map(mapper).collect(Collectors.toList());
+        return new CursorPageResponse<>(mapped, nextCursor, hasNext, totalElements);
+    }
+}
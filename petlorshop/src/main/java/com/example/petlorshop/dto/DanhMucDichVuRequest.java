@@ -1,9 +1,11 @@
 package com.example.petlorshop.dto;
 
+import com.example.petlorshop.models.Role;
 import lombok.Data;
 
 @Data
 public class DanhMucDichVuRequest {
     private String tenDanhMuc;
     private String moTa;
+    private Role vaiTroThucHien;
 }
@@ -1,5 +1,6 @@
 package com.example.petlorshop.dto;
 
+import com.example.petlorshop.models.Role;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -17,4 +18,5 @@ public class DichVuRequest {
     private BigDecimal giaDichVu;
     private Integer thoiLuongUocTinh; // Sửa ở đây
     private Integer danhMucDvId;
+    private Role vaiTroThucHien; // Bỏ trống: theo danh mục
 }
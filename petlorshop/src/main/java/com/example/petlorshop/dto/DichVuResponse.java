@@ -1,5 +1,6 @@
 package com.example.petlorshop.dto;
 
+import com.example.petlorshop.models.Role;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -18,6 +19,7 @@ public class DichVuResponse {
     private BigDecimal giaDichVu;
     private Integer thoiLuongUocTinh;
     private String hinhAnh;
+    private Role vaiTroThucHien; // Đã tính cả vai trò của danh mục
 
     // Thông tin danh mục
     private Integer danhMucDvId;
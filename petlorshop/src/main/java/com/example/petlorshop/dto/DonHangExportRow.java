@@ -0,0 +1,32 @@
+package com.example.petlorshop.dto;
+
+import com.example.petlorshop.models.DonHang;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// Một dòng xuất đơn hàng cho kế toán (projection JPQL, không nạp entity)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DonHangExportRow {
+    private Integer donHangId;
+    private LocalDateTime ngayDatHang;
+    private DonHang.TrangThaiDonHang trangThai;
+    private DonHang.PhuongThucThanhToan phuongThucThanhToan;
+    private DonHang.TrangThaiThanhToan trangThaiThanhToan;
+    private LocalDateTime ngayThanhToan;
+    private String maGiaoDich;
+    private BigDecimal tongTienHang;
+    private BigDecimal soTienGiam;
+    private BigDecimal phiVanChuyen;
+    private BigDecimal tongThanhToan;
+    private String maKhuyenMai;
+    private Integer userId;
+    private String tenNguoiNhan;
+    private String soDienThoaiNhan;
+    private String diaChiGiaoHang;
+}
@@ -18,4 +18,5 @@ public class DonHangRequest {
     private String maKhuyenMai;
     private DonHang.PhuongThucThanhToan phuongThucThanhToan;
     private List<ChiTietDonHangRequest> chiTietDonHangs;
+    private String maBaoGia; // Token từ POST /api/don-hang/bao-gia (tùy chọn)
 }
@@ -31,4 +31,5 @@ public class DonHangResponse {
     private String maKhuyenMai;
     private List<ChiTietDonHangResponse> chiTietDonHangs;
     private boolean daDanhGiaChung;
+    private Long phienBan;
 }
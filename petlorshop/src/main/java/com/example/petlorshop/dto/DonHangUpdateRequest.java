@@ -13,4 +13,5 @@ import lombok.Setter;
 public class DonHangUpdateRequest {
     private DonHang.TrangThaiDonHang trangThai;
     private String diaChiGiaoHang;
+    private Long phienBan; // Phiên bản client đang xem (tùy chọn), khác với hiện tại thì báo xung đột
 }
@@ -0,0 +1,34 @@
+package com.example.petlorshop.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class GioHangBatchRequest {
+
+    @NotEmpty(message = "Danh sách thao tác không được để trống")
+    @Valid
+    private List<ThaoTac> thaoTacList;
+
+    @Data
+    public static class ThaoTac {
+        @NotNull(message = "Loại thao tác không được để trống")
+        private LoaiThaoTac loai;
+
+        @NotNull(message = "Product ID không được để trống")
+        private Integer sanPhamId;
+
+        // THEM: số lượng cộng thêm; CAP_NHAT: số lượng mới (<= 0 thì xóa); XOA: bỏ qua
+        @Min(value = 0, message = "Số lượng không được âm")
+        private int soLuong = 1;
+    }
+
+    public enum LoaiThaoTac {
+        THEM, CAP_NHAT, XOA
+    }
+}
@@ -19,4 +19,5 @@ public class GuestOrderRequest {
     private String maKhuyenMai;
     private DonHang.PhuongThucThanhToan phuongThucThanhToan;
     private List<ChiTietDonHangRequest> chiTietDonHangs;
+    private String maBaoGia; // Token từ POST /api/don-hang/bao-gia (tùy chọn)
 }
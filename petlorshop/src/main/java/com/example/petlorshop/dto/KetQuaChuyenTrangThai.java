@@ -0,0 +1,14 @@
+package com.example.petlorshop.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class KetQuaChuyenTrangThai {
+    private Integer donHangId;
+    private boolean thanhCong;
+    private String loi;
+}
@@ -0,0 +1,27 @@
+package com.example.petlorshop.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Một giờ bắt đầu còn đặt được cho dịch vụ và các nhân viên rảnh trong suốt thời lượng dịch vụ
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class KhungGioResponse {
+    private LocalDateTime thoiGianBatDau;
+    private LocalDateTime thoiGianKetThuc;
+    private List<NhanVienRanh> nhanVienRanh;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class NhanVienRanh {
+        private Integer nhanVienId;
+        private String hoTen;
+        private String anhDaiDien;
+    }
+}
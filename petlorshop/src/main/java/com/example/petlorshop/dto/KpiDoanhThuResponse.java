@@ -0,0 +1,34 @@
+package com.example.petlorshop.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class KpiDoanhThuResponse {
+    private ChiSoDoanhThu homNay;
+    private ChiSoDoanhThu tuanNay;
+    private ChiSoDoanhThu thangNay;
+    private LocalDateTime capNhatLuc;
+
+    @Data
+    @NoArgsConstructor
+    public static class ChiSoDoanhThu {
+        private LocalDate tuNgay;
+        private LocalDate denNgay;
+        private long soDon;
+        private BigDecimal doanhThu = BigDecimal.ZERO;
+        private long soLuong;
+        private BigDecimal tienGiam = BigDecimal.ZERO;
+        private BigDecimal phiVanChuyen = BigDecimal.ZERO;
+        private long soDonDaThanhToan;
+        private long soDonDaGiao;
+        private long soDonHuy;
+    }
+}
@@ -19,6 +19,8 @@ public class SanPhamResponse {
     private BigDecimal gia;
     private BigDecimal giaGiam;
     private Integer soLuongTonKho;
+    private Integer soLuongCoTheBan; // Tồn kho trừ đi số lượng đang giữ chỗ cho đơn chờ thanh toán
+    private Integer soLuongDaBan; // Tổng số lượng trên các đơn đã giao
     private String hinhAnh;
     private Integer trongLuong;
     private Integer danhMucId;
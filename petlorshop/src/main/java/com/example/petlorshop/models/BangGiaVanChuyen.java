@@ -0,0 +1,57 @@
+package com.example.petlorshop.models;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Bảng giá vận chuyển nội bộ, tự học từ các phản hồi thành công của GHTK.
+ * Khóa theo tỉnh/thành + quận/huyện (đã chuẩn hóa) + bậc khối lượng + bậc giá trị khai báo (phí bảo hiểm tính theo giá trị).
+ * Cùng tên ràng buộc với bản cũ (3 cột): ddl-auto=update xóa và tạo lại ràng buộc theo tên với đủ 4 cột.
+ */
+@Entity
+@Table(name = "bang_gia_van_chuyen", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_bang_gia_khu_vuc", columnNames = {"tinh_thanh", "quan_huyen", "bac_khoi_luong", "bac_gia_tri"})
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class BangGiaVanChuyen {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "bang_gia_id")
+    private Integer bangGiaId;
+
+    @Column(name = "tinh_thanh", nullable = false, length = 100)
+    private String tinhThanh;
+
+    @Column(name = "quan_huyen", nullable = false, length = 100)
+    private String quanHuyen;
+
+    @Column(name = "bac_khoi_luong", nullable = false)
+    private Integer bacKhoiLuong; // Đơn vị: gram (cận trên của bậc)
+
+    @Column(name = "bac_gia_tri", nullable = false)
+    private Integer bacGiaTri; // Đơn vị: đồng (cận trên của bậc)
+
+    @Column(name = "phi_van_chuyen", nullable = false, precision = 10, scale = 2)
+    private BigDecimal phiVanChuyen;
+
+    @Column(name = "so_lan_ghi_nhan", nullable = false)
+    private Integer soLanGhiNhan = 0;
+
+    // Lần gần nhất GHTK trả về phí này; quá cũ thì không dùng thay cho GHTK nữa
+    @Column(name = "ngay_xac_nhan")
+    private LocalDateTime ngayXacNhan;
+
+    @UpdateTimestamp
+    @Column(name = "ngay_cap_nhat")
+    private LocalDateTime ngayCapNhat;
+}
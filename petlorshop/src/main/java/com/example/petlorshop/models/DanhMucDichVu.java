@@ -28,6 +28,11 @@ public class DanhMucDichVu {
     @Column(name = "mo_ta", columnDefinition = "TEXT")
     private String moTa;
 
+    // Vai trò nhân viên mặc định cho các dịch vụ trong danh mục (DOCTOR, SPA...)
+    @Enumerated(EnumType.STRING)
+    @Column(name = "vai_tro_thuc_hien", length = 20)
+    private Role vaiTroThucHien;
+
     @JsonIgnore
     @OneToMany(mappedBy = "danhMucDichVu")
     private List<DichVu> danhSachDichVu;
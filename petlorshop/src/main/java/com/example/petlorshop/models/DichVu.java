@@ -38,6 +38,11 @@ public class DichVu {
     @Column(name = "hinh_anh", columnDefinition = "TEXT")
     private String hinhAnh;
 
+    // Vai trò nhân viên thực hiện; null thì theo vai trò của danh mục
+    @Enumerated(EnumType.STRING)
+    @Column(name = "vai_tro_thuc_hien", length = 20)
+    private Role vaiTroThucHien;
+
     // --- Relationships ---
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -0,0 +1,70 @@
+package com.example.petlorshop.models;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Bảng tổng hợp doanh số theo ngày đặt hàng: một dòng tổng (TONG), một dòng cho mỗi sản phẩm
+ * và mỗi danh mục có phát sinh trong ngày. Được cộng dồn theo từng sự kiện của đơn hàng
+ * (tạo, thanh toán, giao, hủy) và có thể dựng lại từ don_hang/chi_tiet_don_hang.
+ * Doanh thu, số đơn, số lượng không tính đơn đã hủy; tiền giảm và phí vận chuyển chỉ có ở dòng TONG.
+ */
+@Entity
+@Table(name = "doanh_thu_ngay",
+       uniqueConstraints = @UniqueConstraint(name = "uk_doanh_thu_ngay", columnNames = {"ngay", "loai", "doi_tuong_id"}))
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class DoanhThuNgay {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id")
+    private Long id;
+
+    @Column(name = "ngay", nullable = false)
+    private LocalDate ngay;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "loai", nullable = false, length = 20)
+    private LoaiThongKe loai;
+
+    // sanPhamId hoặc danhMucId; 0 với dòng TONG
+    @Column(name = "doi_tuong_id", nullable = false)
+    private int doiTuongId;
+
+    @Column(name = "so_don", nullable = false)
+    private long soDon;
+
+    @Column(name = "doanh_thu", nullable = false, precision = 15, scale = 2)
+    private BigDecimal doanhThu = BigDecimal.ZERO;
+
+    @Column(name = "so_luong", nullable = false)
+    private long soLuong;
+
+    @Column(name = "tien_giam", nullable = false, precision = 15, scale = 2)
+    private BigDecimal tienGiam = BigDecimal.ZERO;
+
+    @Column(name = "phi_van_chuyen", nullable = false, precision = 15, scale = 2)
+    private BigDecimal phiVanChuyen = BigDecimal.ZERO;
+
+    @Column(name = "so_don_da_thanh_toan", nullable = false)
+    private long soDonDaThanhToan;
+
+    @Column(name = "so_don_da_giao", nullable = false)
+    private long soDonDaGiao;
+
+    @Column(name = "so_don_huy", nullable = false)
+    private long soDonHuy;
+
+    public enum LoaiThongKe {
+        TONG, SAN_PHAM, DANH_MUC
+    }
+}
@@ -74,6 +74,11 @@ public class DonHang {
     @Column(name = "ly_do_huy", columnDefinition = "TEXT")
     private String lyDoHuy;
 
+    // Khóa lạc quan: hai người cùng sửa một đơn thì người lưu sau nhận lỗi xung đột thay vì ghi đè
+    @Version
+    @Column(name = "phien_ban", nullable = false, columnDefinition = "BIGINT NOT NULL DEFAULT 0")
+    private Long phienBan;
+
     // --- Relationships ---
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -89,6 +94,36 @@ public class DonHang {
     @OneToMany(mappedBy = "donHang", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<ChiTietDonHang> chiTietDonHangs;
 
+    /**
+     * Chuyển trạng thái đơn hàng theo máy trạng thái của TrangThaiDonHang, có xét phương thức và trạng thái thanh toán.
+     * Chuyển sang chính trạng thái hiện tại không làm gì.
+     */
+    public void chuyenTrangThai(TrangThaiDonHang moi) {
+        if (trangThai == moi) {
+            return;
+        }
+        if (trangThai != null && !trangThai.coTheChuyenSang(moi)) {
+            throw new IllegalStateException("Không thể chuyển đơn hàng #" + donHangId + " từ '"
+                    + trangThai.getDisplayName() + "' sang '" + moi.getDisplayName() + "'.");
+        }
+        if (trangThai != null && !trangThai.coTheChuyenSang(moi, phuongThucThanhToan, trangThaiThanhToan)) {
+            throw new IllegalStateException("Đơn hàng #" + donHangId + " thanh toán " + phuongThucThanhToan
+                    + " chưa được thanh toán, không thể chuyển sang '" + moi.getDisplayName() + "'.");
+        }
+        trangThai = moi;
+    }
+
+    public void chuyenTrangThaiThanhToan(TrangThaiThanhToan moi) {
+        if (trangThaiThanhToan == moi) {
+            return;
+        }
+        if (trangThaiThanhToan != null && !trangThaiThanhToan.coTheChuyenSang(moi)) {
+            throw new IllegalStateException("Không thể chuyển thanh toán của đơn hàng #" + donHangId + " từ "
+                    + trangThaiThanhToan + " sang " + moi + ".");
+        }
+        trangThaiThanhToan = moi;
+    }
+
     // --- Enums ---
     public enum TrangThaiDonHang {
         CHO_XU_LY("Chờ xử lý"),
@@ -106,14 +141,59 @@ public class DonHang {
         public String getDisplayName() {
             return displayName;
         }
+
+        // CHO_XU_LY -> DA_XAC_NHAN -> DANG_GIAO -> DA_GIAO; hủy được trước khi giao xong; DA_GIAO, DA_HUY là trạng thái cuối
+        public boolean coTheChuyenSang(TrangThaiDonHang moi) {
+            return switch (this) {
+                case CHO_XU_LY -> moi == DA_XAC_NHAN || moi == DA_HUY;
+                case DA_XAC_NHAN -> moi == DANG_GIAO || moi == DA_HUY;
+                case DANG_GIAO -> moi == DA_GIAO || moi == DA_HUY;
+                case DA_GIAO, DA_HUY -> false;
+            };
+        }
+
+        /**
+         * Như coTheChuyenSang(moi), thêm điều kiện thanh toán: đơn thanh toán online chỉ được xác nhận/giao khi đã
+         * thanh toán. Trước đó hàng chỉ đang được giữ chỗ (chưa trừ tồn kho) và giữ chỗ có thể hết hạn;
+         * khi đã thanh toán thì giữ chỗ đã được xác nhận thành trừ tồn kho (TonKhoService.xacNhanThanhToan).
+         * Điều kiện tương ứng trong SQL: DonHangRepository.chuyenTrangThaiHangLoat.
+         */
+        public boolean coTheChuyenSang(TrangThaiDonHang moi, PhuongThucThanhToan phuongThuc, TrangThaiThanhToan thanhToan) {
+            return coTheChuyenSang(moi)
+                    && (!moi.canDaThanhToan() || !PhuongThucThanhToan.laOnline(phuongThuc)
+                        || thanhToan == TrangThaiThanhToan.DA_THANH_TOAN);
+        }
+
+        // Các trạng thái xử lý/giao hàng, đơn online phải thanh toán xong mới được chuyển sang
+        public boolean canDaThanhToan() {
+            return this == DA_XAC_NHAN || this == DANG_GIAO || this == DA_GIAO;
+        }
     }
 
     public enum PhuongThucThanhToan {
-        COD, VNPAY, MOMO
+        COD, VNPAY, MOMO;
+
+        public boolean laOnline() {
+            return this != COD;
+        }
+
+        // Đơn cũ không có phương thức thanh toán được coi là online, như lúc tạo đơn (đã giữ chỗ tồn kho, chờ thanh toán)
+        public static boolean laOnline(PhuongThucThanhToan phuongThuc) {
+            return phuongThuc == null || phuongThuc.laOnline();
+        }
     }
     
     public enum TrangThaiThanhToan {
-        CHUA_THANH_TOAN, CHO_THANH_TOAN, DA_THANH_TOAN, THAT_BAI, HOAN_TIEN
+        CHUA_THANH_TOAN, CHO_THANH_TOAN, DA_THANH_TOAN, THAT_BAI, HOAN_TIEN;
+
+        // Thanh toán lỗi được thử lại; đã thanh toán chỉ có thể hoàn tiền; HOAN_TIEN là trạng thái cuối
+        public boolean coTheChuyenSang(TrangThaiThanhToan moi) {
+            return switch (this) {
+                case CHUA_THANH_TOAN, CHO_THANH_TOAN, THAT_BAI -> moi != CHUA_THANH_TOAN && moi != HOAN_TIEN;
+                case DA_THANH_TOAN -> moi == HOAN_TIEN;
+                case HOAN_TIEN -> false;
+            };
+        }
     }
 
     public enum LyDoHuyDon {
@@ -0,0 +1,59 @@
+package com.example.petlorshop.models;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * Sổ tồn kho của đơn hàng: mỗi dòng là số lượng một sản phẩm đang giữ chỗ hoặc đã trừ cho đơn.
+ * - Đơn online (VNPAY/MOMO): hàng được giữ (DANG_GIU) đến thời điểm hetHan; thanh toán thành công thì xác nhận
+ *   (DA_XAC_NHAN - trừ tồn kho thật), quá hạn thì job quét sẽ giải phóng (HET_HAN) và hủy đơn.
+ * - Đơn COD: trừ tồn kho ngay khi đặt, ghi thẳng DA_XAC_NHAN.
+ * Hủy đơn dựa vào sổ này để biết cần giải phóng giữ chỗ hay cộng lại tồn kho, dòng đã xử lý chuyển sang DA_HUY.
+ */
+@Entity
+@Table(name = "giu_cho_ton_kho", indexes = {
+        @Index(name = "idx_giu_cho_trang_thai_het_han", columnList = "trang_thai, het_han"),
+        @Index(name = "idx_giu_cho_don_hang", columnList = "don_hang_id")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class GiuChoTonKho {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "giu_cho_id")
+    private Integer giuChoId;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "don_hang_id", nullable = false)
+    private DonHang donHang;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "san_pham_id", nullable = false)
+    private SanPham sanPham;
+
+    @Column(name = "so_luong", nullable = false)
+    private Integer soLuong;
+
+    @Column(name = "het_han", nullable = false)
+    private LocalDateTime hetHan;
+
+    @CreationTimestamp
+    @Column(name = "ngay_tao")
+    private LocalDateTime ngayTao;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "trang_thai", nullable = false)
+    private TrangThaiGiuCho trangThai = TrangThaiGiuCho.DANG_GIU;
+
+    public enum TrangThaiGiuCho {
+        DANG_GIU, DA_XAC_NHAN, DA_HUY, HET_HAN
+    }
+}
@@ -46,6 +46,16 @@ public class SanPham {
     @Column(name = "so_luong_ton_kho")
     private Integer soLuongTonKho;
 
+    // Số lượng đang giữ chỗ cho đơn chờ thanh toán online - chỉ cập nhật bằng câu UPDATE trong SanPhamRepository
+    @Column(name = "so_luong_giu_cho", nullable = false, insertable = false, updatable = false,
+            columnDefinition = "INT NOT NULL DEFAULT 0")
+    private int soLuongGiuCho;
+
+    // Tổng số lượng đã bán trên các đơn đã giao - chỉ cập nhật bằng câu UPDATE trong SanPhamRepository
+    @Column(name = "so_luong_da_ban", nullable = false, insertable = false, updatable = false,
+            columnDefinition = "INT NOT NULL DEFAULT 0")
+    private int soLuongDaBan;
+
     @Column(name = "hinh_anh", columnDefinition = "TEXT")
     private String hinhAnh;
     
@@ -85,4 +95,9 @@ public class SanPham {
     @JsonIgnore
     @OneToMany(mappedBy = "sanPham")
     private List<ChiTietGioHang> danhSachChiTietGioHang;
+
+    // Số lượng có thể bán = tồn kho thực tế - số lượng đang giữ chỗ
+    public int getSoLuongCoTheBan() {
+        return (soLuongTonKho != null ? soLuongTonKho : 0) - soLuongGiuCho;
+    }
 }
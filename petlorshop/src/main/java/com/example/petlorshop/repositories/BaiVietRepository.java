@@ -2,9 +2,8 @@ package com.example.petlorshop.repositories;
 
 import com.example.petlorshop.models.BaiViet;
 import com.example.petlorshop.models.DanhMucBaiViet;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -13,7 +12,7 @@ import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface BaiVietRepository extends JpaRepository<BaiViet, Integer> {
+public interface BaiVietRepository extends JpaRepository<BaiViet, Integer>, JpaSpecificationExecutor<BaiViet> {
     Optional<BaiViet> findBySlug(String slug);
     List<BaiViet> findByTrangThai(BaiViet.TrangThaiBaiViet trangThai);
     List<BaiViet> findByDanhMucBaiViet(DanhMucBaiViet danhMucBaiViet);
@@ -25,10 +24,4 @@ public interface BaiVietRepository extends JpaRepository<BaiViet, Integer> {
     // Global Search (List)
     @Query("SELECT bv FROM BaiViet bv WHERE LOWER(bv.tieuDe) LIKE LOWER(CONCAT('%', :keyword, '%')) OR LOWER(bv.noiDung) LIKE LOWER(CONCAT('%', :keyword, '%'))")
     List<BaiViet> searchByKeyword(@Param("keyword") String keyword);
-
-    // Page Search
-    Page<BaiViet> findByTieuDeContainingIgnoreCaseOrNoiDungContainingIgnoreCase(String tieuDe, String noiDung, Pageable pageable);
-
-    // Filter by Category
-    Page<BaiViet> findByDanhMucBaiViet_DanhMucBvId(Integer danhMucBvId, Pageable pageable);
 }
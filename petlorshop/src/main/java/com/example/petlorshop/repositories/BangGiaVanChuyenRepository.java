@@ -0,0 +1,13 @@
+package com.example.petlorshop.repositories;
+
+import com.example.petlorshop.models.BangGiaVanChuyen;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface BangGiaVanChuyenRepository extends JpaRepository<BangGiaVanChuyen, Integer> {
+    Optional<BangGiaVanChuyen> findByTinhThanhAndQuanHuyenAndBacKhoiLuongAndBacGiaTri(String tinhThanh, String quanHuyen,
+                                                                                    Integer bacKhoiLuong, Integer bacGiaTri);
+}
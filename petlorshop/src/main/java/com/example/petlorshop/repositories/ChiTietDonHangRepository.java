@@ -2,8 +2,18 @@ package com.example.petlorshop.repositories;
 
 import com.example.petlorshop.models.ChiTietDonHang;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+
 @Repository
 public interface ChiTietDonHangRepository extends JpaRepository<ChiTietDonHang, Integer> {
+
+    // [sanPhamId, tổng số lượng] của một nhóm đơn hàng
+    @Query("SELECT ct.sanPham.sanPhamId, SUM(ct.soLuong) FROM ChiTietDonHang ct " +
+           "WHERE ct.donHang.donHangId IN :donHangIds GROUP BY ct.sanPham.sanPhamId ORDER BY ct.sanPham.sanPhamId")
+    List<Object[]> tongSoLuongTheoSanPham(@Param("donHangIds") Collection<Integer> donHangIds);
 }
@@ -2,11 +2,21 @@ package com.example.petlorshop.repositories;
 
 import com.example.petlorshop.models.ChiTietGioHang;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.Optional;
 
 @Repository
 public interface ChiTietGioHangRepository extends JpaRepository<ChiTietGioHang, Integer> {
     Optional<ChiTietGioHang> findByGioHang_GioHangIdAndSanPham_SanPhamId(Integer gioHangId, Integer sanPhamId);
+
+    // Xóa hàng loạt các dòng của những sản phẩm đã đặt khỏi giỏ của người dùng (một câu DELETE)
+    @Modifying
+    @Query("DELETE FROM ChiTietGioHang c WHERE c.sanPham.sanPhamId IN :sanPhamIds " +
+           "AND c.gioHang.gioHangId IN (SELECT g.gioHangId FROM GioHang g WHERE g.nguoiDung.userId = :userId)")
+    int xoaTheoSanPham(@Param("userId") Integer userId, @Param("sanPhamIds") Collection<Integer> sanPhamIds);
 }
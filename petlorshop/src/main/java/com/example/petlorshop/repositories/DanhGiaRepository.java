@@ -4,17 +4,22 @@ import com.example.petlorshop.models.DanhGia;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
-public interface DanhGiaRepository extends JpaRepository<DanhGia, Integer> {
+public interface DanhGiaRepository extends JpaRepository<DanhGia, Integer>, JpaSpecificationExecutor<DanhGia> {
     List<DanhGia> findBySanPham_SanPhamId(Integer sanPhamId);
     Page<DanhGia> findBySanPham_SanPhamId(Integer sanPhamId, Pageable pageable);
     
     // Lấy tất cả đánh giá của một đơn hàng
     List<DanhGia> findByDonHang_DonHangId(Integer donHangId);
+
+    // Lấy đánh giá của nhiều đơn hàng trong một truy vấn (dùng khi map danh sách đơn hàng)
+    List<DanhGia> findByDonHang_DonHangIdIn(Collection<Integer> donHangIds);
     
     // Kiểm tra đánh giá sản phẩm
     boolean existsByNguoiDung_UserIdAndSanPham_SanPhamIdAndDonHang_DonHangId(Integer userId, Integer sanPhamId, Integer donHangId);
@@ -1,5 +1,6 @@
 package com.example.petlorshop.repositories;
 
+import com.example.petlorshop.models.DanhMucDichVu;
 import com.example.petlorshop.models.DichVu;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -8,6 +9,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -25,6 +27,12 @@ public interface DichVuRepository extends JpaRepository<DichVu, Integer> {
     @Query("SELECT d FROM DichVu d WHERE (LOWER(d.tenDichVu) LIKE LOWER(CONCAT('%', :keyword, '%')) OR LOWER(d.moTa) LIKE LOWER(CONCAT('%', :keyword, '%'))) AND d.danhMucDichVu.danhMucDvId = :categoryId")
     Page<DichVu> searchByKeywordAndCategory(@Param("keyword") String keyword, @Param("categoryId") Integer categoryId, Pageable pageable);
 
+    // Danh mục dịch vụ đầy đủ cho cache (một truy vấn)
+    @Query("SELECT d FROM DichVu d LEFT JOIN FETCH d.danhMucDichVu")
+    List<DichVu> findAllWithDanhMuc();
+
+    List<DichVu> findByDanhMucDichVuIn(Collection<DanhMucDichVu> danhMucs);
+
     // Page Search (Category only)
     Page<DichVu> findByDanhMucDichVu_DanhMucDvId(Integer danhMucDvId, Pageable pageable);
 }
@@ -0,0 +1,83 @@
+package com.example.petlorshop.repositories;
+
+import com.example.petlorshop.models.DoanhThuNgay;
+import com.example.petlorshop.models.DonHang;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface DoanhThuNgayRepository extends JpaRepository<DoanhThuNgay, Long> {
+
+    List<DoanhThuNgay> findByLoaiAndNgayBetween(DoanhThuNgay.LoaiThongKe loai, LocalDate tuNgay, LocalDate denNgay);
+
+    // Cộng dồn (có thể âm) vào một dòng tổng hợp, tạo dòng nếu chưa có - một câu lệnh, an toàn khi chạy song song
+    @Modifying
+    @Query(value = "INSERT INTO doanh_thu_ngay (ngay, loai, doi_tuong_id, so_don, doanh_thu, so_luong, tien_giam, " +
+                   "phi_van_chuyen, so_don_da_thanh_toan, so_don_da_giao, so_don_huy) " +
+                   "VALUES (:ngay, :loai, :doiTuongId, :soDon, :doanhThu, :soLuong, :tienGiam, " +
+                   ":phiVanChuyen, :soDonDaThanhToan, :soDonDaGiao, :soDonHuy) " +
+                   "ON DUPLICATE KEY UPDATE so_don = so_don + VALUES(so_don), doanh_thu = doanh_thu + VALUES(doanh_thu), " +
+                   "so_luong = so_luong + VALUES(so_luong), tien_giam = tien_giam + VALUES(tien_giam), " +
+                   "phi_van_chuyen = phi_van_chuyen + VALUES(phi_van_chuyen), " +
+                   "so_don_da_thanh_toan = so_don_da_thanh_toan + VALUES(so_don_da_thanh_toan), " +
+                   "so_don_da_giao = so_don_da_giao + VALUES(so_don_da_giao), so_don_huy = so_don_huy + VALUES(so_don_huy)",
+           nativeQuery = true)
+    int congDon(@Param("ngay") LocalDate ngay,
+                @Param("loai") String loai,
+                @Param("doiTuongId") int doiTuongId,
+                @Param("soDon") long soDon,
+                @Param("doanhThu") BigDecimal doanhThu,
+                @Param("soLuong") long soLuong,
+                @Param("tienGiam") BigDecimal tienGiam,
+                @Param("phiVanChuyen") BigDecimal phiVanChuyen,
+                @Param("soDonDaThanhToan") long soDonDaThanhToan,
+                @Param("soDonDaGiao") long soDonDaGiao,
+                @Param("soDonHuy") long soDonHuy);
+
+    @Modifying
+    @Query("DELETE FROM DoanhThuNgay d WHERE d.ngay BETWEEN :tuNgay AND :denNgay")
+    int deleteByNgayBetween(@Param("tuNgay") LocalDate tuNgay, @Param("denNgay") LocalDate denNgay);
+
+    // --- Tổng hợp lại từ đơn hàng (dùng khi dựng lại bảng) ---
+
+    // [ngày, số đơn, doanh thu, tiền giảm, phí vận chuyển, số đơn đã thanh toán, số đơn đã giao, số đơn hủy]
+    @Query("SELECT extract(date from d.ngayDatHang), " +
+           "SUM(CASE WHEN d.trangThai <> :huy THEN 1 ELSE 0 END), " +
+           "SUM(CASE WHEN d.trangThai <> :huy THEN d.tongThanhToan ELSE 0 END), " +
+           "SUM(CASE WHEN d.trangThai <> :huy THEN COALESCE(d.soTienGiam, 0) ELSE 0 END), " +
+           "SUM(CASE WHEN d.trangThai <> :huy THEN COALESCE(d.phiVanChuyen, 0) ELSE 0 END), " +
+           "SUM(CASE WHEN d.trangThaiThanhToan = :daThanhToan THEN 1 ELSE 0 END), " +
+           "SUM(CASE WHEN d.trangThai = :daGiao THEN 1 ELSE 0 END), " +
+           "SUM(CASE WHEN d.trangThai = :huy THEN 1 ELSE 0 END) " +
+           "FROM DonHang d WHERE d.ngayDatHang >= :tu AND d.ngayDatHang < :den " +
+           "GROUP BY extract(date from d.ngayDatHang)")
+    List<Object[]> tongHopDonHangTheoNgay(@Param("tu") LocalDateTime tu, @Param("den") LocalDateTime den,
+                                          @Param("huy") DonHang.TrangThaiDonHang huy,
+                                          @Param("daGiao") DonHang.TrangThaiDonHang daGiao,
+                                          @Param("daThanhToan") DonHang.TrangThaiThanhToan daThanhToan);
+
+    // [ngày, sanPhamId, danhMucId (có thể null), số đơn, số lượng, doanh thu] cho các đơn chưa hủy
+    @Query("SELECT extract(date from d.ngayDatHang), sp.sanPhamId, dm.danhMucId, " +
+           "COUNT(DISTINCT d.donHangId), SUM(ct.soLuong), SUM(ct.donGia * ct.soLuong) " +
+           "FROM ChiTietDonHang ct JOIN ct.donHang d JOIN ct.sanPham sp LEFT JOIN sp.danhMucSanPham dm " +
+           "WHERE d.ngayDatHang >= :tu AND d.ngayDatHang < :den AND d.trangThai <> :huy " +
+           "GROUP BY extract(date from d.ngayDatHang), sp.sanPhamId, dm.danhMucId")
+    List<Object[]> tongHopSanPhamTheoNgay(@Param("tu") LocalDateTime tu, @Param("den") LocalDateTime den,
+                                          @Param("huy") DonHang.TrangThaiDonHang huy);
+
+    // [ngày, danhMucId, số đơn] - số đơn phân biệt theo danh mục (một đơn có nhiều sản phẩm cùng danh mục tính một lần)
+    @Query("SELECT extract(date from d.ngayDatHang), dm.danhMucId, COUNT(DISTINCT d.donHangId) " +
+           "FROM ChiTietDonHang ct JOIN ct.donHang d JOIN ct.sanPham sp JOIN sp.danhMucSanPham dm " +
+           "WHERE d.ngayDatHang >= :tu AND d.ngayDatHang < :den AND d.trangThai <> :huy " +
+           "GROUP BY extract(date from d.ngayDatHang), dm.danhMucId")
+    List<Object[]> demDonDanhMucTheoNgay(@Param("tu") LocalDateTime tu, @Param("den") LocalDateTime den,
+                                         @Param("huy") DonHang.TrangThaiDonHang huy);
+}
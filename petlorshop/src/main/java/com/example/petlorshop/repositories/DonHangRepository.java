@@ -1,25 +1,85 @@
 package com.example.petlorshop.repositories;
 
+import com.example.petlorshop.dto.DonHangExportRow;
 import com.example.petlorshop.models.DonHang;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
-public interface DonHangRepository extends JpaRepository<DonHang, Integer> {
+public interface DonHangRepository extends JpaRepository<DonHang, Integer>, JpaSpecificationExecutor<DonHang> {
     
     // Global Search (List)
     @Query("SELECT d FROM DonHang d WHERE LOWER(d.trangThai) LIKE LOWER(CONCAT('%', :keyword, '%')) OR LOWER(d.diaChiGiaoHang) LIKE LOWER(CONCAT('%', :keyword, '%'))")
     List<DonHang> searchByKeyword(@Param("keyword") String keyword);
 
-    // Page Search
-    @Query("SELECT d FROM DonHang d WHERE LOWER(d.trangThai) LIKE LOWER(CONCAT('%', :keyword, '%')) OR LOWER(d.diaChiGiaoHang) LIKE LOWER(CONCAT('%', :keyword, '%'))")
-    Page<DonHang> searchByKeyword(@Param("keyword") String keyword, Pageable pageable);
-
     List<DonHang> findByNguoiDung_Email(String email);
+
+    // Nạp sẵn chi tiết, sản phẩm, danh mục, người dùng và khuyến mãi cho một nhóm đơn hàng (tránh lazy load từng đơn)
+    @Query("SELECT DISTINCT d FROM DonHang d " +
+           "LEFT JOIN FETCH d.nguoiDung " +
+           "LEFT JOIN FETCH d.khuyenMai " +
+           "LEFT JOIN FETCH d.chiTietDonHangs ct " +
+           "LEFT JOIN FETCH ct.sanPham sp " +
+           "LEFT JOIN FETCH sp.danhMucSanPham " +
+           "WHERE d.donHangId IN :ids ORDER BY d.donHangId, ct.id")
+    List<DonHang> findAllWithChiTietByIdIn(@Param("ids") Collection<Integer> ids);
+
+    // Hủy hàng loạt các đơn online quá hạn thanh toán (chỉ những đơn chưa giao xong, chưa hủy và chưa thanh toán)
+    @Modifying
+    @Query("UPDATE DonHang d SET d.trangThai = com.example.petlorshop.models.DonHang.TrangThaiDonHang.DA_HUY, " +
+           "d.trangThaiThanhToan = com.example.petlorshop.models.DonHang.TrangThaiThanhToan.THAT_BAI, d.lyDoHuy = :lyDoHuy, " +
+           "d.phienBan = d.phienBan + 1 " +
+           "WHERE d.donHangId IN :ids " +
+           "AND d.trangThai NOT IN (com.example.petlorshop.models.DonHang.TrangThaiDonHang.DA_GIAO, " +
+           "com.example.petlorshop.models.DonHang.TrangThaiDonHang.DA_HUY) " +
+           "AND d.trangThaiThanhToan <> com.example.petlorshop.models.DonHang.TrangThaiThanhToan.DA_THANH_TOAN")
+    int huyDonQuaHanThanhToan(@Param("ids") Collection<Integer> ids, @Param("lyDoHuy") String lyDoHuy);
+
+    // Chuyển trạng thái hàng loạt có điều kiện (chỉ những đơn vẫn đang ở trạng thái cũ), tăng phiên bản để khóa lạc quan nhận biết.
+    // canDaThanhToan = true (xác nhận/giao hàng): đơn thanh toán online (mọi phương thức khác COD, kể cả trống) phải đã thanh toán,
+    // như TrangThaiDonHang.coTheChuyenSang
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE DonHang d SET d.trangThai = :moi, d.phienBan = d.phienBan + 1 " +
+           "WHERE d.donHangId IN :ids AND d.trangThai = :cu " +
+           "AND (:canDaThanhToan = false " +
+           "OR d.phuongThucThanhToan = com.example.petlorshop.models.DonHang.PhuongThucThanhToan.COD " +
+           "OR d.trangThaiThanhToan = com.example.petlorshop.models.DonHang.TrangThaiThanhToan.DA_THANH_TOAN)")
+    int chuyenTrangThaiHangLoat(@Param("ids") Collection<Integer> ids,
+                                @Param("cu") DonHang.TrangThaiDonHang cu,
+                                @Param("moi") DonHang.TrangThaiDonHang moi,
+                                @Param("canDaThanhToan") boolean canDaThanhToan);
+
+    // [donHangId, trangThai, ngayDatHang, phuongThucThanhToan, trangThaiThanhToan]
+    @Query("SELECT d.donHangId, d.trangThai, d.ngayDatHang, d.phuongThucThanhToan, d.trangThaiThanhToan " +
+           "FROM DonHang d WHERE d.donHangId IN :ids")
+    List<Object[]> findTrangThaiByIdIn(@Param("ids") Collection<Integer> ids);
+
+    // Xuất đơn hàng theo khoảng ngày: đọc tuần tự bằng cursor phía server (fetch size giới hạn, cần useCursorFetch=true),
+    // kết quả là DTO nên không giữ entity trong persistence context. Phải dùng trong transaction và đóng Stream sau khi đọc.
+    @QueryHints({
+            @QueryHint(name = "org.hibernate.fetchSize", value = "500"),
+            @QueryHint(name = "org.hibernate.readOnly", value = "true")
+    })
+    @Query("SELECT new com.example.petlorshop.dto.DonHangExportRow(" +
+           "d.donHangId, d.ngayDatHang, d.trangThai, d.phuongThucThanhToan, d.trangThaiThanhToan, d.ngayThanhToan, d.maGiaoDich, " +
+           "d.tongTienHang, d.soTienGiam, d.phiVanChuyen, d.tongThanhToan, km.maCode, nd.userId, " +
+           "COALESCE(d.hoTenNguoiNhan, nd.hoTen), d.soDienThoaiNhan, d.diaChiGiaoHang) " +
+           "FROM DonHang d LEFT JOIN d.nguoiDung nd LEFT JOIN d.khuyenMai km " +
+           "WHERE d.ngayDatHang >= :tu AND d.ngayDatHang < :den " +
+           "AND (:trangThai IS NULL OR d.trangThai = :trangThai) " +
+           "ORDER BY d.ngayDatHang, d.donHangId")
+    Stream<DonHangExportRow> streamForExport(@Param("tu") LocalDateTime tu,
+                                             @Param("den") LocalDateTime den,
+                                             @Param("trangThai") DonHang.TrangThaiDonHang trangThai);
 }
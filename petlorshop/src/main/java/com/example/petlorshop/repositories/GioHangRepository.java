@@ -2,6 +2,8 @@ package com.example.petlorshop.repositories;
 
 import com.example.petlorshop.models.GioHang;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
@@ -9,4 +11,12 @@ import java.util.Optional;
 @Repository
 public interface GioHangRepository extends JpaRepository<GioHang, Integer> {
     Optional<GioHang> findByNguoiDung_UserId(Integer userId);
+
+    // Nạp giỏ hàng cùng các dòng và sản phẩm trong một truy vấn (tránh lazy load từng dòng)
+    @Query("SELECT DISTINCT g FROM GioHang g " +
+           "JOIN FETCH g.nguoiDung nd " +
+           "LEFT JOIN FETCH g.chiTietGioHangList ct " +
+           "LEFT JOIN FETCH ct.sanPham " +
+           "WHERE nd.userId = :userId")
+    Optional<GioHang> findWithChiTietByUserId(@Param("userId") Integer userId);
 }
@@ -0,0 +1,38 @@
+package com.example.petlorshop.repositories;
+
+import com.example.petlorshop.models.GiuChoTonKho;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface GiuChoTonKhoRepository extends JpaRepository<GiuChoTonKho, Integer> {
+
+    // Khóa (SELECT ... FOR UPDATE) toàn bộ sổ giữ chỗ của một đơn
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT g FROM GiuChoTonKho g WHERE g.donHang.donHangId = :donHangId")
+    List<GiuChoTonKho> findByDonHangForUpdate(@Param("donHangId") Integer donHangId);
+
+    // Lấy một lô giữ chỗ đã hết hạn và khóa lại; bỏ qua dòng đang bị khóa (SKIP LOCKED) để không chờ giao dịch thanh toán
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("SELECT g FROM GiuChoTonKho g WHERE g.trangThai = :trangThai AND g.hetHan < :now ORDER BY g.hetHan")
+    List<GiuChoTonKho> findHetHanForUpdate(@Param("trangThai") GiuChoTonKho.TrangThaiGiuCho trangThai,
+                                           @Param("now") LocalDateTime now,
+                                           Pageable pageable);
+
+    @Modifying
+    @Query("UPDATE GiuChoTonKho g SET g.trangThai = :trangThai WHERE g.giuChoId IN :ids")
+    int updateTrangThai(@Param("ids") Collection<Integer> ids, @Param("trangThai") GiuChoTonKho.TrangThaiGiuCho trangThai);
+}
@@ -1,25 +1,33 @@
 package com.example.petlorshop.repositories;
 
 import com.example.petlorshop.models.KhuyenMai;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface KhuyenMaiRepository extends JpaRepository<KhuyenMai, Integer> {
+public interface KhuyenMaiRepository extends JpaRepository<KhuyenMai, Integer>, JpaSpecificationExecutor<KhuyenMai> {
     Optional<KhuyenMai> findByMaCode(String maCode);
 
+    // Các mã chưa hết hạn (nạp vào KhuyenMaiCache)
+    List<KhuyenMai> findByNgayKetThucAfter(LocalDateTime thoiDiem);
+
     // Global Search (List) - Bỏ tenKhuyenMai
     @Query("SELECT k FROM KhuyenMai k WHERE LOWER(k.maCode) LIKE LOWER(CONCAT('%', :keyword, '%')) OR LOWER(k.moTa) LIKE LOWER(CONCAT('%', :keyword, '%'))")
     List<KhuyenMai> searchByKeyword(@Param("keyword") String keyword);
 
-    // Page Search - Bỏ tenKhuyenMai
-    @Query("SELECT k FROM KhuyenMai k WHERE LOWER(k.maCode) LIKE LOWER(CONCAT('%', :keyword, '%')) OR LOWER(k.moTa) LIKE LOWER(CONCAT('%', :keyword, '%'))")
-    Page<KhuyenMai> searchByKeyword(@Param("keyword") String keyword, Pageable pageable);
+    // Trừ một lượt sử dụng có điều kiện (chỉ thành công khi còn lượt) - trả về số dòng bị ảnh hưởng
+    @Modifying
+    @Query("UPDATE KhuyenMai k SET k.soLuongGioiHan = k.soLuongGioiHan - 1 WHERE k.maCode = :maCode AND k.soLuongGioiHan > 0")
+    int truLuotSuDungNeuCon(@Param("maCode") String maCode);
+
+    // Mã không giới hạn số lượt (soLuongGioiHan = null)
+    boolean existsByMaCodeAndSoLuongGioiHanIsNull(String maCode);
 }
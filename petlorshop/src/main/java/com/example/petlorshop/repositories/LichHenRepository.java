@@ -1,24 +1,60 @@
 package com.example.petlorshop.repositories;
 
 import com.example.petlorshop.models.LichHen;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
-public interface LichHenRepository extends JpaRepository<LichHen, Integer> {
+public interface LichHenRepository extends JpaRepository<LichHen, Integer>, JpaSpecificationExecutor<LichHen> {
 
     @Query("SELECT lh FROM LichHen lh WHERE lh.nhanVien.nhanVienId = :nhanVienId AND NOT (lh.thoiGianKetThuc <= :newStart OR lh.thoiGianBatDau >= :newEnd)")
     List<LichHen> findOverlappingAppointments(@Param("nhanVienId") Integer nhanVienId,
                                             @Param("newStart") LocalDateTime newStart,
                                             @Param("newEnd") LocalDateTime newEnd);
 
+    // Có lịch hẹn còn chiếm lịch (theo trạng thái) giao với [start, end) không, bỏ qua lịch hẹn đang sửa nếu có
+    @Query("SELECT COUNT(lh) > 0 FROM LichHen lh WHERE lh.nhanVien.nhanVienId = :nhanVienId AND lh.trangThai IN :trangThais " +
+           "AND lh.thoiGianKetThuc > :start AND lh.thoiGianBatDau < :end AND (:boQuaId IS NULL OR lh.lichHenId <> :boQuaId)")
+    boolean existsTrungLich(@Param("nhanVienId") Integer nhanVienId,
+                            @Param("start") LocalDateTime start,
+                            @Param("end") LocalDateTime end,
+                            @Param("boQuaId") Integer boQuaId,
+                            @Param("trangThais") Collection<LichHen.TrangThai> trangThais);
+
+    // Như existsTrungLich nhưng là đọc có khóa: luôn thấy các lịch vừa được commit (không đọc snapshot của transaction)
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT lh FROM LichHen lh WHERE lh.nhanVien.nhanVienId = :nhanVienId AND lh.trangThai IN :trangThais " +
+           "AND lh.thoiGianKetThuc > :start AND lh.thoiGianBatDau < :end AND (:boQuaId IS NULL OR lh.lichHenId <> :boQuaId)")
+    List<LichHen> findTrungLichForUpdate(@Param("nhanVienId") Integer nhanVienId,
+                                         @Param("start") LocalDateTime start,
+                                         @Param("end") LocalDateTime end,
+                                         @Param("boQuaId") Integer boQuaId,
+                                         @Param("trangThais") Collection<LichHen.TrangThai> trangThais);
+
+    // Nạp chỉ mục lịch nhân viên: [lichHenId, nhanVienId, thoiGianBatDau, thoiGianKetThuc, trangThai] của các lịch kết thúc sau :tu
+    @Query("SELECT lh.lichHenId, lh.nhanVien.nhanVienId, lh.thoiGianBatDau, lh.thoiGianKetThuc, lh.trangThai FROM LichHen lh " +
+           "WHERE lh.nhanVien IS NOT NULL AND lh.thoiGianKetThuc > :tu AND lh.trangThai IN :trangThais")
+    List<Object[]> findKhoangChiemLich(@Param("tu") LocalDateTime tu,
+                                       @Param("trangThais") Collection<LichHen.TrangThai> trangThais);
+
+    // Như trên nhưng chỉ các lịch giao với [tu, den) (tìm khung giờ trống khi chỉ mục không bao phủ khoảng này)
+    @Query("SELECT lh.lichHenId, lh.nhanVien.nhanVienId, lh.thoiGianBatDau, lh.thoiGianKetThuc FROM LichHen lh " +
+           "WHERE lh.nhanVien IS NOT NULL AND lh.thoiGianKetThuc > :tu AND lh.thoiGianBatDau < :den AND lh.trangThai IN :trangThais")
+    List<Object[]> findKhoangChiemLichGiao(@Param("tu") LocalDateTime tu,
+                                           @Param("den") LocalDateTime den,
+                                           @Param("trangThais") Collection<LichHen.TrangThai> trangThais);
+
     // Sửa lại query này để dùng BETWEEN cho chuẩn JPA và tránh lỗi FUNCTION('DATE') trên một số DB
     @Query("SELECT lh FROM LichHen lh WHERE lh.nhanVien.nhanVienId = :nhanVienId AND lh.thoiGianBatDau BETWEEN :start AND :end ORDER BY lh.thoiGianBatDau")
     List<LichHen> findByNhanVienIdAndDateRange(@Param("nhanVienId") Integer nhanVienId,
@@ -33,10 +69,6 @@ public interface LichHenRepository extends JpaRepository<LichHen, Integer> {
     @Query("SELECT l FROM LichHen l WHERE LOWER(l.ghiChu) LIKE LOWER(CONCAT('%', :keyword, '%'))")
     List<LichHen> searchByKeyword(@Param("keyword") String keyword);
 
-    // Page Search
-    @Query("SELECT l FROM LichHen l WHERE LOWER(l.ghiChu) LIKE LOWER(CONCAT('%', :keyword, '%'))")
-    Page<LichHen> searchByKeyword(@Param("keyword") String keyword, Pageable pageable);
-
     List<LichHen> findByNguoiDung_Email(String email);
     
     // Tìm lịch hẹn theo ID nhân viên
@@ -1,9 +1,8 @@
 package com.example.petlorshop.repositories;
 
 import com.example.petlorshop.models.NguoiDung;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -12,7 +11,7 @@ import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface NguoiDungRepository extends JpaRepository<NguoiDung, Integer> {
+public interface NguoiDungRepository extends JpaRepository<NguoiDung, Integer>, JpaSpecificationExecutor<NguoiDung> {
     Optional<NguoiDung> findByEmail(String email);
 
     Optional<NguoiDung> findBySoDienThoai(String soDienThoai);
@@ -20,8 +19,4 @@ public interface NguoiDungRepository extends JpaRepository<NguoiDung, Integer> {
     // Global Search (List)
     @Query("SELECT u FROM NguoiDung u WHERE LOWER(u.hoTen) LIKE LOWER(CONCAT('%', :keyword, '%')) OR LOWER(u.email) LIKE LOWER(CONCAT('%', :keyword, '%')) OR u.soDienThoai LIKE CONCAT('%', :keyword, '%')")
     List<NguoiDung> searchByKeyword(@Param("keyword") String keyword);
-
-    // Page Search
-    @Query("SELECT u FROM NguoiDung u WHERE LOWER(u.hoTen) LIKE LOWER(CONCAT('%', :keyword, '%')) OR LOWER(u.email) LIKE LOWER(CONCAT('%', :keyword, '%')) OR u.soDienThoai LIKE CONCAT('%', :keyword, '%')")
-    Page<NguoiDung> searchByKeyword(@Param("keyword") String keyword, Pageable pageable);
 }
@@ -1,10 +1,13 @@
 package com.example.petlorshop.repositories;
 
 import com.example.petlorshop.models.NhanVien;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
@@ -12,7 +15,7 @@ import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface NhanVienRepository extends JpaRepository<NhanVien, Integer> {
+public interface NhanVienRepository extends JpaRepository<NhanVien, Integer>, JpaSpecificationExecutor<NhanVien> {
 
     Optional<NhanVien> findByEmail(String email);
 
@@ -23,9 +26,20 @@ public interface NhanVienRepository extends JpaRepository<NhanVien, Integer> {
     @Query("SELECT n FROM NhanVien n WHERE LOWER(n.hoTen) LIKE LOWER(CONCAT('%', :keyword, '%')) OR LOWER(n.chucVu) LIKE LOWER(CONCAT('%', :keyword, '%')) OR n.soDienThoai LIKE CONCAT('%', :keyword, '%') OR LOWER(n.email) LIKE LOWER(CONCAT('%', :keyword, '%')) OR LOWER(n.chuyenKhoa) LIKE LOWER(CONCAT('%', :keyword, '%'))")
     List<NhanVien> searchByKeyword(@Param("keyword") String keyword);
 
-    // Page Search
-    @Query("SELECT n FROM NhanVien n WHERE LOWER(n.hoTen) LIKE LOWER(CONCAT('%', :keyword, '%')) OR LOWER(n.chucVu) LIKE LOWER(CONCAT('%', :keyword, '%')) OR n.soDienThoai LIKE CONCAT('%', :keyword, '%') OR LOWER(n.email) LIKE LOWER(CONCAT('%', :keyword, '%')) OR LOWER(n.chuyenKhoa) LIKE LOWER(CONCAT('%', :keyword, '%'))")
-    Page<NhanVien> searchByKeyword(@Param("keyword") String keyword, Pageable pageable);
+    // Khóa (SELECT ... FOR UPDATE) hồ sơ nhân viên để tuần tự hóa việc đặt lịch cho cùng một nhân viên
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT nv FROM NhanVien nv WHERE nv.nhanVienId = :nhanVienId")
+    Optional<NhanVien> findByIdForUpdate(@Param("nhanVienId") Integer nhanVienId);
+
+    // Như trên nhưng không chờ: dòng đang bị giao dịch khác khóa thì trả rỗng (SKIP LOCKED), dùng khi tự phân công
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("SELECT nv FROM NhanVien nv WHERE nv.nhanVienId = :nhanVienId")
+    Optional<NhanVien> findByIdForUpdateSkipLocked(@Param("nhanVienId") Integer nhanVienId);
+
+    // [nhanVienId, hoTen, anhDaiDien, role] của mọi nhân viên có tài khoản (chỉ mục theo vai trò)
+    @Query("SELECT nv.nhanVienId, nv.hoTen, nv.anhDaiDien, nd.role FROM NhanVien nv JOIN nv.nguoiDung nd ORDER BY nv.nhanVienId")
+    List<Object[]> findAllVaiTro();
 
     // Tìm nhân viên theo User ID
     Optional<NhanVien> findByNguoiDung_UserId(Integer userId);
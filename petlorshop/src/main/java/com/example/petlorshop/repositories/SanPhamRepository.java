@@ -4,10 +4,12 @@ import com.example.petlorshop.models.SanPham;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -25,4 +27,42 @@ public interface SanPhamRepository extends JpaRepository<SanPham, Integer> {
 
     // Search by Name AND Category
     Page<SanPham> findByTenSanPhamContainingIgnoreCaseAndDanhMucSanPham_DanhMucId(String tenSanPham, Integer danhMucId, Pageable pageable);
+
+    // Trừ tồn kho có điều kiện (chỉ thành công khi số lượng có thể bán còn đủ) - trả về số dòng bị ảnh hưởng
+    @Modifying
+    @Query("UPDATE SanPham s SET s.soLuongTonKho = s.soLuongTonKho - :soLuong WHERE s.sanPhamId = :sanPhamId AND s.soLuongTonKho - s.soLuongGiuCho >= :soLuong")
+    int truTonKhoNeuDu(@Param("sanPhamId") Integer sanPhamId, @Param("soLuong") int soLuong);
+
+    // Hoàn lại tồn kho (khi hủy đơn)
+    @Modifying
+    @Query("UPDATE SanPham s SET s.soLuongTonKho = s.soLuongTonKho + :soLuong WHERE s.sanPhamId = :sanPhamId")
+    int congTonKho(@Param("sanPhamId") Integer sanPhamId, @Param("soLuong") int soLuong);
+
+    // Giữ chỗ có điều kiện cho đơn thanh toán online (tồn kho thật chưa bị trừ)
+    @Modifying
+    @Query("UPDATE SanPham s SET s.soLuongGiuCho = s.soLuongGiuCho + :soLuong WHERE s.sanPhamId = :sanPhamId AND s.soLuongTonKho - s.soLuongGiuCho >= :soLuong")
+    int giuChoNeuDu(@Param("sanPhamId") Integer sanPhamId, @Param("soLuong") int soLuong);
+
+    // Xác nhận giữ chỗ khi đã thanh toán: chuyển số lượng giữ chỗ thành trừ tồn kho thật
+    @Modifying
+    @Query("UPDATE SanPham s SET s.soLuongTonKho = s.soLuongTonKho - :soLuong, s.soLuongGiuCho = s.soLuongGiuCho - :soLuong WHERE s.sanPhamId = :sanPhamId")
+    int xacNhanGiuCho(@Param("sanPhamId") Integer sanPhamId, @Param("soLuong") int soLuong);
+
+    // Giải phóng giữ chỗ (hủy đơn hoặc quá hạn thanh toán)
+    @Modifying
+    @Query("UPDATE SanPham s SET s.soLuongGiuCho = s.soLuongGiuCho - :soLuong WHERE s.sanPhamId = :sanPhamId")
+    int giaiPhongGiuCho(@Param("sanPhamId") Integer sanPhamId, @Param("soLuong") int soLuong);
+
+    // Cộng số lượng đã bán khi đơn được giao
+    @Modifying
+    @Query("UPDATE SanPham s SET s.soLuongDaBan = s.soLuongDaBan + :soLuong WHERE s.sanPhamId = :sanPhamId")
+    int congDaBan(@Param("sanPhamId") Integer sanPhamId, @Param("soLuong") int soLuong);
+
+    // ID các sản phẩm bán chạy nhất (chưa xóa, đã bán ít nhất một)
+    @Query("SELECT s.sanPhamId FROM SanPham s WHERE s.daXoa = false AND s.soLuongDaBan > 0 ORDER BY s.soLuongDaBan DESC, s.sanPhamId")
+    List<Integer> findTopBanChayIds(Pageable pageable);
+
+    // Nạp một nhóm sản phẩm kèm danh mục (tránh lazy load từng sản phẩm khi map sang DTO)
+    @Query("SELECT s FROM SanPham s LEFT JOIN FETCH s.danhMucSanPham WHERE s.sanPhamId IN :ids")
+    List<SanPham> findAllWithDanhMucByIdIn(@Param("ids") Collection<Integer> ids);
 }
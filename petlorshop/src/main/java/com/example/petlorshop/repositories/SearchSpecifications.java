@@ -0,0 +1,56 @@
+package com.example.petlorshop.repositories;
+
+import jakarta.persistence.criteria.From;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Specification dùng chung cho các trang danh sách admin.
+ * Lọc theo từ khóa, sắp xếp, đếm và phân trang đều được đẩy xuống SQL
+ * thông qua JpaSpecificationExecutor.findAll(spec, pageable).
+ */
+public final class SearchSpecifications {
+
+    private SearchSpecifications() {
+    }
+
+    /**
+     * Tìm không phân biệt hoa thường: ít nhất một trong các trường chứa từ khóa.
+     * Trường có thể đi qua quan hệ bằng dấu chấm (ví dụ "nhaCungCap.tenNcc"), quan hệ được LEFT JOIN.
+     * Từ khóa rỗng thì không lọc.
+     */
+    public static <T> Specification<T> keyword(String keyword, String... fields) {
+        return (root, query, cb) -> {
+            if (!StringUtils.hasText(keyword)) {
+                return null;
+            }
+            String pattern = "%" + keyword.trim().toLowerCase() + "%";
+            List<Predicate> predicates = new ArrayList<>();
+            for (String field : fields) {
+                Path<?> path = resolvePath(root, field);
+                predicates.add(cb.like(cb.lower(path.as(String.class)), pattern));
+            }
+            return cb.or(predicates.toArray(new Predicate[0]));
+        };
+    }
+
+    // Điều kiện bằng trên một trường (có thể đi qua quan hệ), giá trị null thì không lọc
+    public static <T> Specification<T> equal(String field, Object value) {
+        return (root, query, cb) -> value == null ? null : cb.equal(resolvePath(root, field), value);
+    }
+
+    private static Path<?> resolvePath(From<?, ?> root, String field) {
+        String[] parts = field.split("\\.");
+        From<?, ?> from = root;
+        for (int i = 0; i < parts.length - 1; i++) {
+            from = from.join(parts[i], JoinType.LEFT);
+        }
+        return from.get(parts[parts.length - 1]);
+    }
+}
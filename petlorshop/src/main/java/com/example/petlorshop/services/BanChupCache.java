@@ -0,0 +1,92 @@
+package com.example.petlorshop.services;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Bản chụp bất biến nạp từ DB, dùng chung cho các cache đọc nhiều ghi ít (khuyến mãi, dịch vụ, nhân viên).
+ * - Đọc: trả bản chụp hiện tại nếu còn trong TTL, nếu không thì nạp lại (một luồng nạp, các luồng khác chờ).
+ * - invalidateAfterCommit(): xóa bản chụp sau khi transaction hiện tại commit.
+ * Mỗi lần xóa tăng số thế hệ; bản chụp mang thế hệ lúc bắt đầu đọc DB, bản nào khác thế hệ hiện tại bị bỏ qua.
+ * Nhờ vậy lần nạp có câu SELECT chạy trước commit nhưng ghi bản chụp sau khi đã xóa không ghi đè được việc xóa.
+ */
+public class BanChupCache<T> {
+
+    private final Supplier<T> loader;
+    private final long ttlMillis;
+    private final AtomicLong theHe = new AtomicLong();
+
+    private volatile BanChup<T> banChup;
+
+    public BanChupCache(Supplier<T> loader, long ttlSeconds) {
+        this.loader = loader;
+        this.ttlMillis = TimeUnit.SECONDS.toMillis(ttlSeconds);
+    }
+
+    public T get() {
+        BanChup<T> current = banChup;
+        if (conHieuLuc(current)) {
+            return current.giaTri();
+        }
+        return reload();
+    }
+
+    // Sửa bản chụp hiện tại (ví dụ đọc lại một phần tử), giữ nguyên thế hệ và thời điểm nạp
+    public synchronized T update(UnaryOperator<T> capNhat) {
+        T current = get();
+        BanChup<T> goc = banChup;
+        T updated = capNhat.apply(current);
+        banChup = new BanChup<>(updated, goc.theHe(), goc.loadedAt());
+        return updated;
+    }
+
+    public void invalidate() {
+        theHe.incrementAndGet();
+    }
+
+    // Xóa bản chụp sau khi transaction hiện tại commit
+    public void invalidateAfterCommit() {
+        afterCommit(this::invalidate);
+    }
+
+    // Chạy sau khi transaction hiện tại commit, chạy ngay nếu không có transaction
+    public static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private boolean conHieuLuc(BanChup<T> current) {
+        return current != null
+                && current.theHe() == theHe.get()
+                && System.currentTimeMillis() - current.loadedAt() < ttlMillis;
+    }
+
+    private synchronized T reload() {
+        BanChup<T> current = banChup;
+        if (conHieuLuc(current)) {
+            return current.giaTri();
+        }
+        // Đọc thế hệ trước khi đọc DB: nếu bị xóa trong lúc đọc, bản chụp này đã cũ ngay khi ghi
+        long theHeLucDoc = theHe.get();
+        long now = System.currentTimeMillis();
+        T loaded = loader.get();
+        banChup = new BanChup<>(loaded, theHeLucDoc, now);
+        return loaded;
+    }
+
+    private record BanChup<T>(T giaTri, long theHe, long loadedAt) {
+    }
+}
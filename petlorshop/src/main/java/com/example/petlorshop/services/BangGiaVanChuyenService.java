@@ -0,0 +1,99 @@
+package com.example.petlorshop.services;
+
+import com.example.petlorshop.models.BangGiaVanChuyen;
+import com.example.petlorshop.repositories.BangGiaVanChuyenRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Bảng giá vận chuyển nội bộ: ghi nhận phí từ các lần gọi GHTK thành công (lưu DB)
+ * và trả lời tức thì từ bản sao trong bộ nhớ khi được cấu hình ưu tiên hoặc khi GHTK lỗi/đang ngắt.
+ * Khóa theo khu vực + bậc khối lượng + bậc giá trị khai báo.
+ * - traPhi: chỉ trả phí được GHTK xác nhận trong ghtk.bang-gia-noi-bo.tuoi-toi-da-gio, cũ hơn thì để gọi lại GHTK.
+ * - traPhiDuPhong: khi không gọi được GHTK thì phí cũ vẫn tốt hơn phí mặc định.
+ * Tỉnh/thành và quận/huyện truyền vào phải đã chuẩn hóa (GhtkService.chuanHoa).
+ */
+@Service
+public class BangGiaVanChuyenService {
+
+    @Autowired
+    private BangGiaVanChuyenRepository bangGiaVanChuyenRepository;
+
+    private final long tuoiToiDaGio;
+
+    private volatile Map<String, GiaNoiBo> bangGia;
+
+    public BangGiaVanChuyenService(@Value("${ghtk.bang-gia-noi-bo.tuoi-toi-da-gio:24}") long tuoiToiDaGio) {
+        this.tuoiToiDaGio = tuoiToiDaGio;
+    }
+
+    public Optional<BigDecimal> traPhi(String tinhThanh, String quanHuyen, int bacKhoiLuong, int bacGiaTri) {
+        LocalDateTime hanXacNhan = LocalDateTime.now().minusHours(tuoiToiDaGio);
+        return Optional.ofNullable(bangGia().get(key(tinhThanh, quanHuyen, bacKhoiLuong, bacGiaTri)))
+                .filter(gia -> gia.ngayXacNhan() != null && gia.ngayXacNhan().isAfter(hanXacNhan))
+                .map(GiaNoiBo::phi);
+    }
+
+    public Optional<BigDecimal> traPhiDuPhong(String tinhThanh, String quanHuyen, int bacKhoiLuong, int bacGiaTri) {
+        return Optional.ofNullable(bangGia().get(key(tinhThanh, quanHuyen, bacKhoiLuong, bacGiaTri)))
+                .map(GiaNoiBo::phi);
+    }
+
+    // Ghi mỗi lần GHTK trả phí (kể cả phí không đổi) để cập nhật ngày xác nhận;
+    // ShippingFeeCache đứng trước nên mỗi khóa chỉ ghi tối đa một lần mỗi TTL của cache phí
+    public void ghiNhan(String tinhThanh, String quanHuyen, int bacKhoiLuong, int bacGiaTri, BigDecimal phiVanChuyen) {
+        LocalDateTime now = LocalDateTime.now();
+        BangGiaVanChuyen banGhi = bangGiaVanChuyenRepository
+                .findByTinhThanhAndQuanHuyenAndBacKhoiLuongAndBacGiaTri(tinhThanh, quanHuyen, bacKhoiLuong, bacGiaTri)
+                .orElseGet(() -> {
+                    BangGiaVanChuyen moi = new BangGiaVanChuyen();
+                    moi.setTinhThanh(tinhThanh);
+                    moi.setQuanHuyen(quanHuyen);
+                    moi.setBacKhoiLuong(bacKhoiLuong);
+                    moi.setBacGiaTri(bacGiaTri);
+                    return moi;
+                });
+        banGhi.setPhiVanChuyen(phiVanChuyen);
+        banGhi.setNgayXacNhan(now);
+        banGhi.setSoLanGhiNhan(banGhi.getSoLanGhiNhan() + 1);
+        try {
+            bangGiaVanChuyenRepository.save(banGhi);
+        } catch (DataIntegrityViolationException e) {
+            // Request khác vừa thêm cùng khu vực - giữ bản ghi đó
+        }
+        bangGia().put(key(tinhThanh, quanHuyen, bacKhoiLuong, bacGiaTri), new GiaNoiBo(phiVanChuyen, now));
+    }
+
+    private Map<String, GiaNoiBo> bangGia() {
+        Map<String, GiaNoiBo> current = bangGia;
+        if (current == null) {
+            synchronized (this) {
+                if (bangGia == null) {
+                    Map<String, GiaNoiBo> loaded = new ConcurrentHashMap<>();
+                    for (BangGiaVanChuyen banGhi : bangGiaVanChuyenRepository.findAll()) {
+                        loaded.put(key(banGhi.getTinhThanh(), banGhi.getQuanHuyen(), banGhi.getBacKhoiLuong(), banGhi.getBacGiaTri()),
+                                new GiaNoiBo(banGhi.getPhiVanChuyen(), banGhi.getNgayXacNhan()));
+                    }
+                    bangGia = loaded;
+                }
+                current = bangGia;
+            }
+        }
+        return current;
+    }
+
+    private static String key(String tinhThanh, String quanHuyen, int bacKhoiLuong, int bacGiaTri) {
+        return tinhThanh + "|" + quanHuyen + "|" + bacKhoiLuong + "|" + bacGiaTri;
+    }
+
+    private record GiaNoiBo(BigDecimal phi, LocalDateTime ngayXacNhan) {
+    }
+}
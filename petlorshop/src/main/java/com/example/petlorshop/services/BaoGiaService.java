@@ -0,0 +1,223 @@
+package com.example.petlorshop.services;
+
+import com.example.petlorshop.dto.BaoGiaRequest;
+import com.example.petlorshop.dto.BaoGiaResponse;
+import com.example.petlorshop.dto.ChiTietDonHangRequest;
+import com.example.petlorshop.dto.OrderCalculationResult;
+import com.example.petlorshop.models.ChiTietDonHang;
+import com.example.petlorshop.models.KhuyenMai;
+import com.example.petlorshop.models.SanPham;
+import com.example.petlorshop.repositories.SanPhamRepository;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import javax.crypto.SecretKey;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Báo giá có chữ ký (JWT HS256, sống ngắn) cho trang thanh toán.
+ * Token ghi lại tổng tiền hàng, tiền giảm, phí vận chuyển và đơn giá của từng sản phẩm tại thời điểm báo giá.
+ * Khi đặt hàng kèm token còn hạn, nếu giỏ hàng/địa chỉ/mã khuyến mãi không đổi và giá, tồn kho vẫn như cũ
+ * thì dùng lại kết quả (không gọi GHTK); ngược lại tính lại toàn bộ như bình thường.
+ */
+@Service
+public class BaoGiaService {
+
+    private static final Logger log = LoggerFactory.getLogger(BaoGiaService.class);
+
+    private static final String SUBJECT = "bao-gia";
+
+    @Autowired
+    private OrderCalculationService orderCalculationService;
+
+    @Autowired
+    private SanPhamRepository sanPhamRepository;
+
+    @Autowired
+    private KhuyenMaiService khuyenMaiService;
+
+    @Autowired
+    private DiaChiHanhChinhService diaChiHanhChinhService;
+
+    private final SecretKey signingKey;
+    private final long thoiHanMillis;
+
+    // Không cấu hình khóa thì sinh khóa ngẫu nhiên cho tiến trình này: báo giá chỉ sống vài phút nên chỉ mất khả năng
+    // dùng lại báo giá qua lần khởi động lại hoặc giữa nhiều instance (đơn hàng khi đó được tính giá lại như bình thường)
+    public BaoGiaService(@Value("${bao-gia.signing-key:}") String signingKey,
+                         @Value("${bao-gia.ttl-minutes:15}") long ttlMinutes) {
+        if (StringUtils.hasText(signingKey)) {
+            this.signingKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(signingKey));
+        } else {
+            log.warn("Chưa cấu hình bao-gia.signing-key (biến môi trường BAO_GIA_SIGNING_KEY): dùng khóa ngẫu nhiên, "
+                    + "báo giá không dùng lại được sau khi khởi động lại hoặc giữa các instance.");
+            this.signingKey = Jwts.SIG.HS256.key().build();
+        }
+        this.thoiHanMillis = TimeUnit.MINUTES.toMillis(ttlMinutes);
+    }
+
+    public BaoGiaResponse taoBaoGia(BaoGiaRequest request) {
+        DiaChiHanhChinhService.DiaChiChuan diaChiChuan = diaChiHanhChinhService.chuanHoa(
+                request.getTinhThanh(), request.getQuanHuyen(), request.getPhuongXa());
+        request.setTinhThanh(diaChiChuan.tinhThanh());
+        request.setQuanHuyen(diaChiChuan.quanHuyen());
+        request.setPhuongXa(diaChiChuan.phuongXa());
+
+        OrderCalculationResult result = orderCalculationService.calculateOrder(
+                request.getItems(),
+                request.getMaKhuyenMai(),
+                request.getTinhThanh(),
+                request.getQuanHuyen(),
+                request.getPhuongXa()
+        );
+
+        Date hetHan = new Date(System.currentTimeMillis() + thoiHanMillis);
+        String token = Jwts.builder()
+                .subject(SUBJECT)
+                .claim("sp", maHoaDonGia(result.getChiTietDonHangs()))
+                .claim("km", chuanHoaMa(request.getMaKhuyenMai()))
+                .claim("dc", diaChiKey(request.getTinhThanh(), request.getQuanHuyen(), request.getPhuongXa()))
+                .claim("ship", result.getPhiVanChuyen().toPlainString())
+                .issuedAt(new Date())
+                .expiration(hetHan)
+                .signWith(signingKey, Jwts.SIG.HS256)
+                .compact();
+
+        return new BaoGiaResponse(result.getTongTienHang(), result.getSoTienGiam(), result.getPhiVanChuyen(),
+                result.getTongThanhToan(), token, LocalDateTime.ofInstant(hetHan.toInstant(), ZoneId.systemDefault()));
+    }
+
+    /**
+     * Kết quả tính toán cho đơn hàng: dùng lại báo giá nếu hợp lệ, nếu không thì tính lại đầy đủ.
+     */
+    public OrderCalculationResult tinhDonHang(String maBaoGia, List<ChiTietDonHangRequest> items, String maKhuyenMai,
+                                              String province, String district, String ward) {
+        return dungLaiBaoGia(maBaoGia, items, maKhuyenMai, province, district, ward)
+                .orElseGet(() -> orderCalculationService.calculateOrder(items, maKhuyenMai, province, district, ward));
+    }
+
+    private Optional<OrderCalculationResult> dungLaiBaoGia(String maBaoGia, List<ChiTietDonHangRequest> items, String maKhuyenMai,
+                                                           String province, String district, String ward) {
+        if (!StringUtils.hasText(maBaoGia) || items == null || items.isEmpty()) {
+            return Optional.empty();
+        }
+
+        Claims claims;
+        try {
+            claims = Jwts.parser().verifyWith(signingKey).build().parseSignedClaims(maBaoGia).getPayload();
+        } catch (JwtException | IllegalArgumentException e) {
+            return Optional.empty(); // Token sai chữ ký hoặc hết hạn -> tính lại
+        }
+
+        if (!SUBJECT.equals(claims.getSubject())
+                || !chuanHoaMa(maKhuyenMai).equals(claims.get("km", String.class))
+                || !diaChiKey(province, district, ward).equals(claims.get("dc", String.class))) {
+            return Optional.empty();
+        }
+
+        // Giỏ hàng phải đúng như lúc báo giá; gộp dòng trùng sản phẩm như calculateOrder
+        Map<Integer, Integer> soLuongTheoSanPham = OrderCalculationService.gopTheoSanPham(items);
+        if (soLuongTheoSanPham.containsKey(null)) {
+            return Optional.empty();
+        }
+        Map<Integer, DonGiaBaoGia> donGiaBaoGia = giaiMaDonGia(claims.get("sp", String.class));
+        if (!soLuongTheoSanPham.keySet().equals(donGiaBaoGia.keySet())) {
+            return Optional.empty();
+        }
+        for (Map.Entry<Integer, Integer> entry : soLuongTheoSanPham.entrySet()) {
+            if (donGiaBaoGia.get(entry.getKey()).soLuong != entry.getValue()) {
+                return Optional.empty();
+            }
+        }
+
+        // Giá và tồn kho hiện tại (một truy vấn) phải không đổi so với báo giá
+        Map<Integer, SanPham> sanPhamMap = sanPhamRepository.findAllById(soLuongTheoSanPham.keySet()).stream()
+                .collect(Collectors.toMap(SanPham::getSanPhamId, Function.identity()));
+        BigDecimal tongTienHang = BigDecimal.ZERO;
+        List<ChiTietDonHang> chiTietItems = new ArrayList<>();
+        for (Map.Entry<Integer, Integer> entry : soLuongTheoSanPham.entrySet()) {
+            SanPham sanPham = sanPhamMap.get(entry.getKey());
+            BigDecimal donGia = donGiaBaoGia.get(entry.getKey()).donGia;
+            if (sanPham == null
+                    || sanPham.getSoLuongCoTheBan() < entry.getValue()
+                    || Optional.ofNullable(sanPham.getGiaGiam()).orElse(sanPham.getGia()).compareTo(donGia) != 0) {
+                return Optional.empty();
+            }
+
+            ChiTietDonHang chiTiet = new ChiTietDonHang();
+            chiTiet.setSanPham(sanPham);
+            chiTiet.setSoLuong(entry.getValue());
+            chiTiet.setDonGia(donGia);
+            chiTietItems.add(chiTiet);
+            tongTienHang = tongTienHang.add(donGia.multiply(BigDecimal.valueOf(entry.getValue())));
+        }
+
+        // Mã khuyến mãi kiểm tra lại trên cache (trong bộ nhớ), phí vận chuyển lấy từ báo giá
+        BigDecimal soTienGiam = BigDecimal.ZERO;
+        KhuyenMai khuyenMai = null;
+        if (StringUtils.hasText(maKhuyenMai)) {
+            khuyenMai = khuyenMaiService.layKhuyenMaiHopLe(maKhuyenMai, tongTienHang);
+            soTienGiam = orderCalculationService.tinhTienGiam(khuyenMai, tongTienHang);
+        }
+        BigDecimal phiVanChuyen = new BigDecimal(claims.get("ship", String.class));
+        BigDecimal tongThanhToan = tongTienHang.subtract(soTienGiam).add(phiVanChuyen);
+
+        return Optional.of(new OrderCalculationResult(tongTienHang, soTienGiam, phiVanChuyen, tongThanhToan, khuyenMai, chiTietItems));
+    }
+
+    // "sanPhamId:soLuong:donGia;..." - mỗi sản phẩm một dòng (calculateOrder đã gộp dòng trùng)
+    private String maHoaDonGia(List<ChiTietDonHang> chiTietItems) {
+        Map<Integer, DonGiaBaoGia> gop = new TreeMap<>();
+        for (ChiTietDonHang chiTiet : chiTietItems) {
+            gop.merge(chiTiet.getSanPham().getSanPhamId(),
+                    new DonGiaBaoGia(chiTiet.getSoLuong(), chiTiet.getDonGia()),
+                    (a, b) -> new DonGiaBaoGia(a.soLuong + b.soLuong, a.donGia));
+        }
+        return gop.entrySet().stream()
+                .map(e -> e.getKey() + ":" + e.getValue().soLuong + ":" + e.getValue().donGia.toPlainString())
+                .collect(Collectors.joining(";"));
+    }
+
+    private Map<Integer, DonGiaBaoGia> giaiMaDonGia(String value) {
+        Map<Integer, DonGiaBaoGia> result = new TreeMap<>();
+        if (!StringUtils.hasText(value)) {
+            return result;
+        }
+        for (String dong : value.split(";")) {
+            String[] parts = dong.split(":");
+            result.put(Integer.valueOf(parts[0]), new DonGiaBaoGia(Integer.parseInt(parts[1]), new BigDecimal(parts[2])));
+        }
+        return result;
+    }
+
+    private static String chuanHoaMa(String maKhuyenMai) {
+        return StringUtils.hasText(maKhuyenMai) ? KhuyenMaiCache.normalize(maKhuyenMai) : "";
+    }
+
+    private static String diaChiKey(String province, String district, String ward) {
+        return String.join("|", GhtkService.chuanHoa(province), GhtkService.chuanHoa(district), GhtkService.chuanHoa(ward));
+    }
+
+    private record DonGiaBaoGia(int soLuong, BigDecimal donGia) {
+    }
+}
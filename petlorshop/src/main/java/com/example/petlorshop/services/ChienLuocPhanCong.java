@@ -0,0 +1,17 @@
+package com.example.petlorshop.services;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Chiến lược tự phân công nhân viên khi khách không chọn người thực hiện.
+ * Mỗi cài đặt là một bean có tên; lich-hen.chien-luoc-phan-cong chọn bean được dùng.
+ */
+public interface ChienLuocPhanCong {
+
+    /**
+     * Sắp xếp các ứng viên (đã rảnh theo chỉ mục lịch, đúng vai trò, theo ID tăng dần) theo thứ tự ưu tiên.
+     * Nhân viên đầu tiên khóa được (không bị yêu cầu khác giữ) và được DB xác nhận rảnh sẽ nhận lịch.
+     */
+    List<Integer> sapXep(List<Integer> ungVien, LocalDateTime start, LocalDateTime end);
+}
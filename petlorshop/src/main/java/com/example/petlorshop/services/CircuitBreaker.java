@@ -0,0 +1,68 @@
+package com.example.petlorshop.services;
+
+/**
+ * Circuit breaker đơn giản cho lời gọi ra dịch vụ ngoài.
+ * - CLOSED: cho phép gọi; lỗi liên tiếp đạt ngưỡng thì chuyển OPEN.
+ * - OPEN: từ chối ngay trong khoảng thời gian mở; hết thời gian thì chuyển HALF_OPEN.
+ * - HALF_OPEN: cho một lời gọi thử; thành công thì CLOSED, lỗi thì OPEN lại.
+ */
+public class CircuitBreaker {
+
+    public enum TrangThai {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long openMillis;
+
+    private TrangThai trangThai = TrangThai.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean trialInFlight;
+
+    public CircuitBreaker(int failureThreshold, long openMillis) {
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+    }
+
+    public synchronized boolean allowRequest() {
+        if (trangThai == TrangThai.OPEN) {
+            if (System.currentTimeMillis() - openedAt < openMillis) {
+                return false;
+            }
+            trangThai = TrangThai.HALF_OPEN;
+            trialInFlight = false;
+        }
+        if (trangThai == TrangThai.HALF_OPEN) {
+            if (trialInFlight) {
+                return false;
+            }
+            trialInFlight = true;
+        }
+        return true;
+    }
+
+    public synchronized void onSuccess() {
+        consecutiveFailures = 0;
+        trialInFlight = false;
+        trangThai = TrangThai.CLOSED;
+    }
+
+    public synchronized void onFailure() {
+        trialInFlight = false;
+        consecutiveFailures++;
+        if (trangThai == TrangThai.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            trangThai = TrangThai.OPEN;
+            openedAt = System.currentTimeMillis();
+        }
+    }
+
+    // Lời gọi đã được cho phép nhưng không thực hiện (ví dụ bị bulkhead từ chối)
+    public synchronized void onSkipped() {
+        trialInFlight = false;
+    }
+
+    public synchronized TrangThai getTrangThai() {
+        return trangThai;
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.petlorshop.services;
 
+import com.example.petlorshop.dto.CursorPageResponse;
 import com.example.petlorshop.dto.DanhGiaBulkRequest;
 import com.example.petlorshop.dto.DanhGiaItemRequest;
 import com.example.petlorshop.dto.DanhGiaRequest;
@@ -39,10 +40,18 @@ public class DanhGiaService {
     @Autowired
     private NguoiDungRepository nguoiDungRepository;
 
+    private static final KeysetPagination<DanhGia> KEYSET =
+            new KeysetPagination<>("ngayDanhGia", "danhGiaId", DanhGia::getNgayDanhGia, DanhGia::getDanhGiaId);
+
     public Page<DanhGiaResponse> getAllDanhGia(Pageable pageable) {
         return danhGiaRepository.findAll(pageable).map(this::convertToResponse);
     }
 
+    // Phân trang theo cursor (ngayDanhGia, danhGiaId) - không dùng OFFSET
+    public CursorPageResponse<DanhGiaResponse> getAllDanhGiaKeyset(String after, int size, boolean withCount) {
+        return KEYSET.fetch(danhGiaRepository, null, after, size, withCount).map(this::convertToResponse);
+    }
+
     @Transactional
     public DanhGiaResponse createDanhGia(String email, DanhGiaRequest request) {
         NguoiDung user = nguoiDungRepository.findByEmail(email)
@@ -0,0 +1,177 @@
+package com.example.petlorshop.services;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Từ điển địa giới hành chính (tỉnh/thành - quận/huyện - phường/xã) nạp một lần từ file JSON
+ * (dia-gioi.data-file, mặc định classpath:dia-gioi-hanh-chinh.json) vào cấu trúc bất biến trong bộ nhớ.
+ * File kèm theo có đủ 63 tỉnh/thành nhưng quận/huyện, phường/xã chỉ có ở một số thành phố lớn;
+ * dữ liệu đầy đủ cùng định dạng có thể trỏ tới bằng dia-gioi.data-file mà không cần build lại.
+ * Tra cứu không phân biệt dấu, hoa thường, dấu câu và tiền tố hành chính
+ * ("Q. Cầu Giấy", "quan cau giay", "Quận Cầu Giấy" đều ra "Quận Cầu Giấy").
+ * Tên không có trong từ điển được giữ nguyên (chỉ bỏ khoảng trắng thừa).
+ */
+@Service
+public class DiaChiHanhChinhService {
+
+    private static final Logger log = LoggerFactory.getLogger(DiaChiHanhChinhService.class);
+
+    private static final Pattern DAU = Pattern.compile("\\p{M}+");
+    private static final Pattern KY_TU_KHAC = Pattern.compile("[^a-z0-9]+");
+    // Tiền tố hành chính (đã bỏ dấu), phải đứng riêng một từ hoặc liền trước số ("q1", "p 12")
+    private static final Pattern TIEN_TO = Pattern.compile(
+            "^(thanh pho|thi xa|thi tran|tinh|quan|huyen|phuong|xa|tp|tx|tt|q|h|p)(\\s+|(?=\\d))");
+
+    private final List<DonVi> tinhThanhList;
+    private final Map<String, DonVi> tinhThanhTheoKhoa;
+
+    public DiaChiHanhChinhService(ObjectMapper objectMapper,
+                                  @Value("${dia-gioi.data-file:classpath:dia-gioi-hanh-chinh.json}") Resource dataFile) {
+        List<TinhThanhData> data;
+        try (InputStream in = dataFile.getInputStream()) {
+            data = objectMapper.readValue(in, new TypeReference<List<TinhThanhData>>() {});
+        } catch (IOException e) {
+            throw new UncheckedIOException("Không đọc được " + dataFile.getDescription(), e);
+        }
+
+        List<DonVi> tinhList = new ArrayList<>();
+        for (TinhThanhData tinh : data) {
+            List<DonVi> huyenList = new ArrayList<>();
+            for (QuanHuyenData huyen : tinh.quanHuyen()) {
+                List<DonVi> xaList = new ArrayList<>();
+                for (String xa : huyen.phuongXa()) {
+                    xaList.add(new DonVi(xa, List.of(), List.of()));
+                }
+                huyenList.add(new DonVi(huyen.ten(), List.of(), xaList));
+            }
+            tinhList.add(new DonVi(tinh.ten(), tinh.bietDanh() != null ? tinh.bietDanh() : List.of(), huyenList));
+        }
+        this.tinhThanhList = List.copyOf(tinhList);
+        this.tinhThanhTheoKhoa = lapChiMuc(tinhThanhList);
+
+        // Ghi lại độ phủ để dễ thấy khi đang chạy với dữ liệu chưa đầy đủ
+        long soTinhCoQuanHuyen = tinhThanhList.stream().filter(tinh -> !tinh.con().isEmpty()).count();
+        long soQuanHuyen = tinhThanhList.stream().mapToLong(tinh -> tinh.con().size()).sum();
+        long soPhuongXa = tinhThanhList.stream().flatMap(tinh -> tinh.con().stream()).mapToLong(huyen -> huyen.con().size()).sum();
+        log.info("Nạp địa giới hành chính từ {}: {} tỉnh/thành ({} có quận/huyện), {} quận/huyện, {} phường/xã",
+                dataFile.getDescription(), tinhThanhList.size(), soTinhCoQuanHuyen, soQuanHuyen, soPhuongXa);
+    }
+
+    /**
+     * Chuẩn hóa một địa chỉ về tên chính thức theo từ điển.
+     * Cấp dưới chỉ được tra khi cấp trên khớp (quận/huyện tra trong tỉnh, phường/xã tra trong quận).
+     */
+    public DiaChiChuan chuanHoa(String tinhThanh, String quanHuyen, String phuongXa) {
+        DonVi tinh = tra(tinhThanhTheoKhoa, tinhThanh);
+        DonVi huyen = tinh != null ? tra(tinh.conTheoKhoa(), quanHuyen) : null;
+        DonVi xa = huyen != null ? tra(huyen.conTheoKhoa(), phuongXa) : null;
+        return new DiaChiChuan(
+                tinh != null ? tinh.ten() : gon(tinhThanh),
+                huyen != null ? huyen.ten() : gon(quanHuyen),
+                xa != null ? xa.ten() : gon(phuongXa));
+    }
+
+    /**
+     * Gợi ý tên cho ô nhập địa chỉ: không có tỉnh -> gợi ý tỉnh/thành; có tỉnh -> quận/huyện; có cả quận -> phường/xã.
+     * Ưu tiên tên bắt đầu bằng từ khóa, sau đó đến tên chứa từ khóa.
+     */
+    public List<String> goiY(String tinhThanh, String quanHuyen, String tuKhoa, int limit) {
+        List<DonVi> danhSach = tinhThanhList;
+        if (StringUtils.hasText(tinhThanh)) {
+            DonVi tinh = tra(tinhThanhTheoKhoa, tinhThanh);
+            danhSach = tinh != null ? tinh.con() : List.of();
+            if (tinh != null && StringUtils.hasText(quanHuyen)) {
+                DonVi huyen = tra(tinh.conTheoKhoa(), quanHuyen);
+                danhSach = huyen != null ? huyen.con() : List.of();
+            }
+        }
+
+        String khoa = khoa(tuKhoa);
+        List<String> batDau = new ArrayList<>();
+        List<String> chua = new ArrayList<>();
+        for (DonVi donVi : danhSach) {
+            if (khoa.isEmpty() || donVi.khoaRutGon().startsWith(khoa) || donVi.khoa().startsWith(khoa)) {
+                batDau.add(donVi.ten());
+            } else if (donVi.khoa().contains(khoa)) {
+                chua.add(donVi.ten());
+            }
+        }
+        batDau.addAll(chua);
+        return batDau.size() > limit ? List.copyOf(batDau.subList(0, limit)) : List.copyOf(batDau);
+    }
+
+    // Thử khóa đầy đủ trước ("quan hoa" có thể là tên thật), sau đó mới bỏ tiền tố
+    private static DonVi tra(Map<String, DonVi> chiMuc, String ten) {
+        if (!StringUtils.hasText(ten)) {
+            return null;
+        }
+        String khoa = khoa(ten);
+        DonVi donVi = chiMuc.get(khoa);
+        return donVi != null ? donVi : chiMuc.get(boTienTo(khoa));
+    }
+
+    private static Map<String, DonVi> lapChiMuc(List<DonVi> danhSach) {
+        Map<String, DonVi> chiMuc = new LinkedHashMap<>();
+        for (DonVi donVi : danhSach) {
+            chiMuc.putIfAbsent(donVi.khoa(), donVi);
+            chiMuc.putIfAbsent(donVi.khoaRutGon(), donVi);
+            for (String bietDanh : donVi.bietDanh()) {
+                chiMuc.putIfAbsent(khoa(bietDanh), donVi);
+            }
+        }
+        return Map.copyOf(chiMuc);
+    }
+
+    // Bỏ dấu, đ -> d, chữ thường, dấu câu thành khoảng trắng
+    private static String khoa(String ten) {
+        if (ten == null) {
+            return "";
+        }
+        String khongDau = DAU.matcher(Normalizer.normalize(ten, Normalizer.Form.NFD)).replaceAll("")
+                .replace('đ', 'd').replace('Đ', 'D')
+                .toLowerCase(Locale.ROOT);
+        return KY_TU_KHAC.matcher(khongDau).replaceAll(" ").trim();
+    }
+
+    private static String boTienTo(String khoa) {
+        return TIEN_TO.matcher(khoa).replaceFirst("");
+    }
+
+    private static String gon(String ten) {
+        return ten == null ? null : ten.trim().replaceAll("\\s+", " ");
+    }
+
+    public record DiaChiChuan(String tinhThanh, String quanHuyen, String phuongXa) {
+    }
+
+    private record DonVi(String ten, List<String> bietDanh, List<DonVi> con,
+                         String khoa, String khoaRutGon, Map<String, DonVi> conTheoKhoa) {
+        private DonVi(String ten, List<String> bietDanh, List<DonVi> con) {
+            this(ten, List.copyOf(bietDanh), List.copyOf(con), khoa(ten), boTienTo(khoa(ten)), lapChiMuc(con));
+        }
+    }
+
+    private record TinhThanhData(String ten, List<String> bietDanh, List<QuanHuyenData> quanHuyen) {
+    }
+
+    private record QuanHuyenData(String ten, List<String> phuongXa) {
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.petlorshop.services;
+
+import com.example.petlorshop.models.DanhMucDichVu;
+import com.example.petlorshop.models.DichVu;
+import com.example.petlorshop.models.Role;
+import com.example.petlorshop.repositories.DanhMucDichVuRepository;
+import com.example.petlorshop.repositories.DichVuRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Cache trong bộ nhớ danh mục dịch vụ dùng khi đặt lịch: thời lượng và vai trò nhân viên thực hiện đã được tính sẵn,
+ * đặt lịch không phải đọc DichVu/DanhMucDichVu hay so khớp chuỗi.
+ * Vai trò lấy theo DichVu.vaiTroThucHien, nếu trống thì theo danh mục, cuối cùng là DOCTOR.
+ * - Tạo/sửa/xóa dịch vụ hoặc danh mục: xóa cache sau khi transaction commit.
+ * - Ngoài ra cache tự nạp lại sau dich-vu.cache-ttl-seconds.
+ */
+@Component
+public class DichVuCache {
+
+    private static final int THOI_LUONG_MAC_DINH = 60;
+
+    @Autowired
+    private DichVuRepository dichVuRepository;
+
+    @Autowired
+    private DanhMucDichVuRepository danhMucDichVuRepository;
+
+    // Bản chụp bất biến, thay cả map khi nạp lại
+    private final BanChupCache<Map<Integer, DichVuInfo>> dichVuTheoId;
+
+    public DichVuCache(@Value("${dich-vu.cache-ttl-seconds:600}") long ttlSeconds) {
+        this.dichVuTheoId = new BanChupCache<>(this::loadAll, ttlSeconds);
+    }
+
+    /**
+     * Gán vai trò cho các danh mục chưa có, theo quy tắc đoán từ tên trước đây, chỉ chạy một lần cho mỗi danh mục.
+     * Dịch vụ trong các danh mục đó có tên kiểu spa/cắt tỉa/tắm/grooming (danh mục không phải SPA) được gán SPA riêng.
+     */
+    @PostConstruct
+    public void ganVaiTroConThieu() {
+        List<DanhMucDichVu> chuaCo = danhMucDichVuRepository.findByVaiTroThucHienIsNull();
+        if (chuaCo.isEmpty()) {
+            return;
+        }
+        Map<Integer, Role> vaiTroDanhMuc = new HashMap<>();
+        for (DanhMucDichVu danhMuc : chuaCo) {
+            danhMuc.setVaiTroThucHien(doanVaiTroDanhMuc(danhMuc.getTenDanhMucDv()));
+            vaiTroDanhMuc.put(danhMuc.getDanhMucDvId(), danhMuc.getVaiTroThucHien());
+        }
+        danhMucDichVuRepository.saveAll(chuaCo);
+
+        List<DichVu> canGan = new ArrayList<>();
+        for (DichVu dichVu : dichVuRepository.findByDanhMucDichVuIn(chuaCo)) {
+            if (dichVu.getVaiTroThucHien() == null
+                    && vaiTroDanhMuc.get(dichVu.getDanhMucDichVu().getDanhMucDvId()) != Role.SPA
+                    && laDichVuSpa(dichVu.getTenDichVu())) {
+                dichVu.setVaiTroThucHien(Role.SPA);
+                canGan.add(dichVu);
+            }
+        }
+        dichVuRepository.saveAll(canGan);
+    }
+
+    public Optional<DichVuInfo> findById(Integer dichVuId) {
+        return Optional.ofNullable(dichVuTheoId.get().get(dichVuId));
+    }
+
+    public DichVuInfo getById(Integer dichVuId) {
+        return findById(dichVuId)
+                .orElseThrow(() -> new RuntimeException("Không tìm thấy dịch vụ với ID: " + dichVuId));
+    }
+
+    // Xóa cache sau khi transaction hiện tại commit (tạo/sửa/xóa dịch vụ hoặc danh mục)
+    public void invalidateAfterCommit() {
+        dichVuTheoId.invalidateAfterCommit();
+    }
+
+    // Vai trò mặc định cho danh mục theo tên (quy tắc cũ của đặt lịch)
+    public static Role doanVaiTroDanhMuc(String tenDanhMuc) {
+        String ten = tenDanhMuc != null ? tenDanhMuc.toLowerCase() : "";
+        return ten.contains("spa") || ten.contains("làm đẹp") || ten.contains("vệ sinh") ? Role.SPA : Role.DOCTOR;
+    }
+
+    public static boolean laDichVuSpa(String tenDichVu) {
+        String ten = tenDichVu != null ? tenDichVu.toLowerCase() : "";
+        return ten.contains("spa") || ten.contains("cắt tỉa") || ten.contains("tắm") || ten.contains("grooming");
+    }
+
+    public static Role vaiTroThucHien(DichVu dichVu) {
+        if (dichVu.getVaiTroThucHien() != null) {
+            return dichVu.getVaiTroThucHien();
+        }
+        DanhMucDichVu danhMuc = dichVu.getDanhMucDichVu();
+        return danhMuc != null && danhMuc.getVaiTroThucHien() != null ? danhMuc.getVaiTroThucHien() : Role.DOCTOR;
+    }
+
+    private Map<Integer, DichVuInfo> loadAll() {
+        Map<Integer, DichVuInfo> loaded = new HashMap<>();
+        for (DichVu dichVu : dichVuRepository.findAllWithDanhMuc()) {
+            loaded.put(dichVu.getDichVuId(), new DichVuInfo(
+                    dichVu.getDichVuId(),
+                    dichVu.getTenDichVu(),
+                    dichVu.getGiaDichVu(),
+                    dichVu.getThoiLuongUocTinh() != null ? dichVu.getThoiLuongUocTinh() : THOI_LUONG_MAC_DINH,
+                    vaiTroThucHien(dichVu)));
+        }
+        return Map.copyOf(loaded);
+    }
+
+    public record DichVuInfo(Integer dichVuId, String tenDichVu, BigDecimal giaDichVu, int thoiLuongPhut, Role vaiTro) {
+    }
+}
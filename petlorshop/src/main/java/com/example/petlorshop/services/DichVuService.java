@@ -4,6 +4,7 @@ import com.example.petlorshop.dto.DichVuRequest;
 import com.example.petlorshop.dto.DichVuResponse;
 import com.example.petlorshop.models.DanhMucDichVu;
 import com.example.petlorshop.models.DichVu;
+import com.example.petlorshop.models.Role;
 import com.example.petlorshop.repositories.DanhMucDichVuRepository;
 import com.example.petlorshop.repositories.DichVuRepository;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -30,6 +31,9 @@ public class DichVuService {
     @Autowired
     private FileStorageService fileStorageService;
 
+    @Autowired
+    private DichVuCache dichVuCache;
+
     public Page<DichVuResponse> getAllDichVu(Pageable pageable, String keyword, Integer categoryId) {
         Page<DichVu> dichVuPage;
 
@@ -61,6 +65,11 @@ public class DichVuService {
         DichVu dichVu = new DichVu();
         mapRequestToEntity(request, dichVu);
         dichVu.setDanhMucDichVu(danhMuc);
+        // Không chỉ định vai trò: dịch vụ kiểu spa trong danh mục không phải SPA được gán SPA, còn lại theo danh mục
+        if (request.getVaiTroThucHien() == null && danhMuc.getVaiTroThucHien() != Role.SPA
+                && DichVuCache.laDichVuSpa(request.getTenDichVu())) {
+            dichVu.setVaiTroThucHien(Role.SPA);
+        }
 
         if (hinhAnh != null && !hinhAnh.isEmpty()) {
             String fileName = fileStorageService.storeFile(hinhAnh);
@@ -68,6 +77,7 @@ public class DichVuService {
         }
         
         DichVu savedDichVu = dichVuRepository.save(dichVu);
+        dichVuCache.invalidateAfterCommit();
         return convertToResponse(savedDichVu);
     }
 
@@ -89,11 +99,13 @@ public class DichVuService {
         }
 
         DichVu updatedDichVu = dichVuRepository.save(dichVu);
+        dichVuCache.invalidateAfterCommit();
         return convertToResponse(updatedDichVu);
     }
 
     public void deleteDichVu(Integer id) {
         dichVuRepository.deleteById(id);
+        dichVuCache.invalidateAfterCommit();
     }
 
     private void mapRequestToEntity(DichVuRequest request, DichVu dichVu) {
@@ -101,6 +113,9 @@ public class DichVuService {
         dichVu.setMoTa(request.getMoTa());
         dichVu.setGiaDichVu(request.getGiaDichVu());
         dichVu.setThoiLuongUocTinh(request.getThoiLuongUocTinh());
+        if (request.getVaiTroThucHien() != null) {
+            dichVu.setVaiTroThucHien(request.getVaiTroThucHien());
+        }
     }
 
     private DichVuResponse convertToResponse(DichVu dichVu) {
@@ -111,6 +126,7 @@ public class DichVuService {
                 dichVu.getGiaDichVu(),
                 dichVu.getThoiLuongUocTinh(),
                 dichVu.getHinhAnh(),
+                DichVuCache.vaiTroThucHien(dichVu),
                 dichVu.getDanhMucDichVu() != null ? dichVu.getDanhMucDichVu().getDanhMucDvId() : null,
                 dichVu.getDanhMucDichVu() != null ? dichVu.getDanhMucDichVu().getTenDanhMucDv() : null
         );
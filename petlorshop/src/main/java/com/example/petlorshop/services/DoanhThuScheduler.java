@@ -0,0 +1,28 @@
+package com.example.petlorshop.services;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+
+/**
+ * Job hằng đêm dựng lại bảng doanh_thu_ngay cho vài ngày gần nhất,
+ * bù các sai lệch mà luồng cộng dồn không bắt được (xóa đơn, sửa dữ liệu tay...).
+ */
+@Component
+public class DoanhThuScheduler {
+
+    @Autowired
+    private DoanhThuService doanhThuService;
+
+    @Value("${bao-cao.dung-lai-so-ngay:7}")
+    private int soNgay;
+
+    @Scheduled(cron = "${bao-cao.dung-lai-cron:0 30 2 * * *}")
+    public void dungLaiGanDay() {
+        LocalDate homNay = LocalDate.now();
+        doanhThuService.dungLai(homNay.minusDays(soNgay), homNay);
+    }
+}
@@ -0,0 +1,272 @@
+package com.example.petlorshop.services;
+
+import com.example.petlorshop.dto.KpiDoanhThuResponse;
+import com.example.petlorshop.models.ChiTietDonHang;
+import com.example.petlorshop.models.DoanhThuNgay;
+import com.example.petlorshop.models.DonHang;
+import com.example.petlorshop.models.SanPham;
+import com.example.petlorshop.repositories.DoanhThuNgayRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Báo cáo doanh số dựa trên bảng tổng hợp doanh_thu_ngay.
+ * - Luồng đơn hàng gọi ghiNhan* trong cùng transaction với thay đổi của đơn, mỗi dòng tổng hợp được cộng dồn
+ *   bằng một câu INSERT ... ON DUPLICATE KEY UPDATE (không đọc lại đơn hàng).
+ * - dungLai(...) tính lại một khoảng ngày từ don_hang/chi_tiet_don_hang (job đêm, hoặc admin gọi tay).
+ * - KPI hôm nay/tuần này/tháng này đọc các dòng TONG và được giữ trong bộ nhớ bao-cao.kpi-cache-seconds giây.
+ */
+@Service
+public class DoanhThuService {
+
+    private static final DoanhThuNgay.LoaiThongKe TONG = DoanhThuNgay.LoaiThongKe.TONG;
+    private static final DoanhThuNgay.LoaiThongKe SAN_PHAM = DoanhThuNgay.LoaiThongKe.SAN_PHAM;
+    private static final DoanhThuNgay.LoaiThongKe DANH_MUC = DoanhThuNgay.LoaiThongKe.DANH_MUC;
+
+    @Autowired
+    private DoanhThuNgayRepository doanhThuNgayRepository;
+
+    private final long kpiCacheMillis;
+    private volatile KpiSnapshot kpiSnapshot;
+
+    public DoanhThuService(@Value("${bao-cao.kpi-cache-seconds:30}") long kpiCacheSeconds) {
+        this.kpiCacheMillis = TimeUnit.SECONDS.toMillis(kpiCacheSeconds);
+    }
+
+    // Đơn vừa tạo; đơn tại quầy có thể đã thanh toán và đã giao ngay khi tạo
+    @Transactional
+    public void ghiNhanDonMoi(DonHang donHang) {
+        if (donHang.getTrangThai() == DonHang.TrangThaiDonHang.DA_HUY) {
+            congTong(ngay(donHang), 0, 0, 0, 0, 1);
+            return;
+        }
+        ghiNhanDon(donHang, 1,
+                donHang.getTrangThaiThanhToan() == DonHang.TrangThaiThanhToan.DA_THANH_TOAN ? 1 : 0,
+                donHang.getTrangThai() == DonHang.TrangThaiDonHang.DA_GIAO ? 1 : 0,
+                0);
+    }
+
+    // Đơn đã chuyển từ trangThaiCu sang trạng thái hiện tại
+    @Transactional
+    public void ghiNhanTrangThai(DonHang donHang, DonHang.TrangThaiDonHang trangThaiCu) {
+        DonHang.TrangThaiDonHang trangThaiMoi = donHang.getTrangThai();
+        if (trangThaiMoi == trangThaiCu) {
+            return;
+        }
+        if (trangThaiMoi == DonHang.TrangThaiDonHang.DA_GIAO) {
+            congTong(ngay(donHang), 0, 0, 0, 1, 0);
+        } else if (trangThaiMoi == DonHang.TrangThaiDonHang.DA_HUY) {
+            ghiNhanHuy(donHang);
+        }
+    }
+
+    // Trừ doanh số của một đơn vừa bị hủy (đơn phải còn đủ chi tiết và giá trị như lúc tạo)
+    @Transactional
+    public void ghiNhanHuy(DonHang donHang) {
+        ghiNhanDon(donHang, -1, 0, 0, 1);
+    }
+
+    // Đổi trạng thái thanh toán: vào DA_THANH_TOAN thì +1, rời DA_THANH_TOAN (hoàn tiền) thì -1
+    @Transactional
+    public void ghiNhanThanhToan(DonHang donHang, DonHang.TrangThaiThanhToan trangThaiCu) {
+        int truoc = trangThaiCu == DonHang.TrangThaiThanhToan.DA_THANH_TOAN ? 1 : 0;
+        int sau = donHang.getTrangThaiThanhToan() == DonHang.TrangThaiThanhToan.DA_THANH_TOAN ? 1 : 0;
+        if (sau != truoc) {
+            congTong(ngay(donHang), 0, 0, sau - truoc, 0, 0);
+        }
+    }
+
+    // Chuyển trạng thái hàng loạt sang DA_GIAO: số đơn theo ngày đặt
+    @Transactional
+    public void ghiNhanDaGiao(Map<LocalDate, Integer> soDonTheoNgay) {
+        new TreeMap<>(soDonTheoNgay).forEach((ngay, soDon) -> congTong(ngay, 0, 0, 0, soDon, 0));
+    }
+
+    /**
+     * Dựng lại các dòng tổng hợp trong [tuNgay, denNgay] từ dữ liệu đơn hàng. Xóa trước rồi mới tổng hợp
+     * để các lần cộng dồn chạy song song chờ transaction này và được cộng lên kết quả mới.
+     * Trả về số dòng tổng hợp đã ghi.
+     */
+    @Transactional
+    public int dungLai(LocalDate tuNgay, LocalDate denNgay) {
+        doanhThuNgayRepository.deleteByNgayBetween(tuNgay, denNgay);
+
+        LocalDateTime tu = tuNgay.atStartOfDay();
+        LocalDateTime den = denNgay.plusDays(1).atStartOfDay();
+        Map<String, DoanhThuNgay> dongMap = new LinkedHashMap<>();
+
+        for (Object[] r : doanhThuNgayRepository.tongHopDonHangTheoNgay(tu, den, DonHang.TrangThaiDonHang.DA_HUY,
+                DonHang.TrangThaiDonHang.DA_GIAO, DonHang.TrangThaiThanhToan.DA_THANH_TOAN)) {
+            DoanhThuNgay dong = dong(dongMap, (LocalDate) r[0], TONG, 0);
+            dong.setSoDon(so(r[1]));
+            dong.setDoanhThu(tien(r[2]));
+            dong.setTienGiam(tien(r[3]));
+            dong.setPhiVanChuyen(tien(r[4]));
+            dong.setSoDonDaThanhToan(so(r[5]));
+            dong.setSoDonDaGiao(so(r[6]));
+            dong.setSoDonHuy(so(r[7]));
+        }
+
+        for (Object[] r : doanhThuNgayRepository.tongHopSanPhamTheoNgay(tu, den, DonHang.TrangThaiDonHang.DA_HUY)) {
+            LocalDate ngay = (LocalDate) r[0];
+            long soLuong = so(r[4]);
+            BigDecimal doanhThu = tien(r[5]);
+
+            DoanhThuNgay sanPham = dong(dongMap, ngay, SAN_PHAM, (Integer) r[1]);
+            sanPham.setSoDon(so(r[3]));
+            sanPham.setSoLuong(soLuong);
+            sanPham.setDoanhThu(doanhThu);
+
+            DoanhThuNgay tong = dong(dongMap, ngay, TONG, 0);
+            tong.setSoLuong(tong.getSoLuong() + soLuong);
+
+            if (r[2] != null) {
+                DoanhThuNgay danhMuc = dong(dongMap, ngay, DANH_MUC, (Integer) r[2]);
+                danhMuc.setSoLuong(danhMuc.getSoLuong() + soLuong);
+                danhMuc.setDoanhThu(danhMuc.getDoanhThu().add(doanhThu));
+            }
+        }
+
+        for (Object[] r : doanhThuNgayRepository.demDonDanhMucTheoNgay(tu, den, DonHang.TrangThaiDonHang.DA_HUY)) {
+            dong(dongMap, (LocalDate) r[0], DANH_MUC, (Integer) r[1]).setSoDon(so(r[2]));
+        }
+
+        doanhThuNgayRepository.saveAll(dongMap.values());
+        kpiSnapshot = null;
+        return dongMap.size();
+    }
+
+    // KPI hôm nay / tuần này (từ thứ Hai) / tháng này, chỉ đọc các dòng TONG
+    @Transactional(readOnly = true)
+    public KpiDoanhThuResponse getKpi() {
+        long now = System.currentTimeMillis();
+        LocalDate homNay = LocalDate.now();
+        KpiSnapshot snapshot = kpiSnapshot;
+        if (snapshot != null && snapshot.hetHan > now && snapshot.ngay.equals(homNay)) {
+            return snapshot.kpi;
+        }
+
+        LocalDate dauTuan = homNay.with(DayOfWeek.MONDAY);
+        LocalDate dauThang = homNay.withDayOfMonth(1);
+        LocalDate tuNgay = dauTuan.isBefore(dauThang) ? dauTuan : dauThang;
+        List<DoanhThuNgay> dongList = doanhThuNgayRepository.findByLoaiAndNgayBetween(TONG, tuNgay, homNay);
+
+        KpiDoanhThuResponse kpi = new KpiDoanhThuResponse(
+                cong(dongList, homNay, homNay),
+                cong(dongList, dauTuan, homNay),
+                cong(dongList, dauThang, homNay),
+                LocalDateTime.now());
+        kpiSnapshot = new KpiSnapshot(homNay, now + kpiCacheMillis, kpi);
+        return kpi;
+    }
+
+    // dau = 1 khi cộng đơn, -1 khi trừ đơn hủy; mỗi sản phẩm/danh mục trong đơn được tính một đơn
+    private void ghiNhanDon(DonHang donHang, int dau, long daThanhToan, long daGiao, long huy) {
+        LocalDate ngay = ngay(donHang);
+        BigDecimal heSo = BigDecimal.valueOf(dau);
+        Map<Integer, DongTam> theoSanPham = new TreeMap<>();
+        Map<Integer, DongTam> theoDanhMuc = new TreeMap<>();
+        long tongSoLuong = 0;
+
+        if (donHang.getChiTietDonHangs() != null) {
+            for (ChiTietDonHang chiTiet : donHang.getChiTietDonHangs()) {
+                SanPham sanPham = chiTiet.getSanPham();
+                long soLuong = chiTiet.getSoLuong();
+                BigDecimal thanhTien = chiTiet.getDonGia().multiply(BigDecimal.valueOf(soLuong));
+                tongSoLuong += soLuong;
+                theoSanPham.computeIfAbsent(sanPham.getSanPhamId(), k -> new DongTam()).cong(soLuong, thanhTien);
+                if (sanPham.getDanhMucSanPham() != null) {
+                    theoDanhMuc.computeIfAbsent(sanPham.getDanhMucSanPham().getDanhMucId(), k -> new DongTam()).cong(soLuong, thanhTien);
+                }
+            }
+        }
+
+        doanhThuNgayRepository.congDon(ngay, TONG.name(), 0, dau,
+                giaTri(donHang.getTongThanhToan()).multiply(heSo), dau * tongSoLuong,
+                giaTri(donHang.getSoTienGiam()).multiply(heSo), giaTri(donHang.getPhiVanChuyen()).multiply(heSo),
+                daThanhToan, daGiao, huy);
+        theoSanPham.forEach((id, dong) -> doanhThuNgayRepository.congDon(ngay, SAN_PHAM.name(), id, dau,
+                dong.doanhThu.multiply(heSo), dau * dong.soLuong, BigDecimal.ZERO, BigDecimal.ZERO, 0, 0, 0));
+        theoDanhMuc.forEach((id, dong) -> doanhThuNgayRepository.congDon(ngay, DANH_MUC.name(), id, dau,
+                dong.doanhThu.multiply(heSo), dau * dong.soLuong, BigDecimal.ZERO, BigDecimal.ZERO, 0, 0, 0));
+    }
+
+    private void congTong(LocalDate ngay, long soDon, long soLuong, long daThanhToan, long daGiao, long huy) {
+        doanhThuNgayRepository.congDon(ngay, TONG.name(), 0, soDon, BigDecimal.ZERO, soLuong,
+                BigDecimal.ZERO, BigDecimal.ZERO, daThanhToan, daGiao, huy);
+    }
+
+    private static KpiDoanhThuResponse.ChiSoDoanhThu cong(List<DoanhThuNgay> dongList, LocalDate tuNgay, LocalDate denNgay) {
+        KpiDoanhThuResponse.ChiSoDoanhThu chiSo = new KpiDoanhThuResponse.ChiSoDoanhThu();
+        chiSo.setTuNgay(tuNgay);
+        chiSo.setDenNgay(denNgay);
+        for (DoanhThuNgay dong : dongList) {
+            if (dong.getNgay().isBefore(tuNgay) || dong.getNgay().isAfter(denNgay)) {
+                continue;
+            }
+            chiSo.setSoDon(chiSo.getSoDon() + dong.getSoDon());
+            chiSo.setDoanhThu(chiSo.getDoanhThu().add(dong.getDoanhThu()));
+            chiSo.setSoLuong(chiSo.getSoLuong() + dong.getSoLuong());
+            chiSo.setTienGiam(chiSo.getTienGiam().add(dong.getTienGiam()));
+            chiSo.setPhiVanChuyen(chiSo.getPhiVanChuyen().add(dong.getPhiVanChuyen()));
+            chiSo.setSoDonDaThanhToan(chiSo.getSoDonDaThanhToan() + dong.getSoDonDaThanhToan());
+            chiSo.setSoDonDaGiao(chiSo.getSoDonDaGiao() + dong.getSoDonDaGiao());
+            chiSo.setSoDonHuy(chiSo.getSoDonHuy() + dong.getSoDonHuy());
+        }
+        return chiSo;
+    }
+
+    private static DoanhThuNgay dong(Map<String, DoanhThuNgay> dongMap, LocalDate ngay, DoanhThuNgay.LoaiThongKe loai, int doiTuongId) {
+        return dongMap.computeIfAbsent(ngay + "|" + loai + "|" + doiTuongId, k -> {
+            DoanhThuNgay dong = new DoanhThuNgay();
+            dong.setNgay(ngay);
+            dong.setLoai(loai);
+            dong.setDoiTuongId(doiTuongId);
+            return dong;
+        });
+    }
+
+    private static LocalDate ngay(DonHang donHang) {
+        return donHang.getNgayDatHang() != null ? donHang.getNgayDatHang().toLocalDate() : LocalDate.now();
+    }
+
+    private static long so(Object value) {
+        return value == null ? 0 : ((Number) value).longValue();
+    }
+
+    private static BigDecimal tien(Object value) {
+        if (value == null) {
+            return BigDecimal.ZERO;
+        }
+        return value instanceof BigDecimal bigDecimal ? bigDecimal : new BigDecimal(value.toString());
+    }
+
+    private static BigDecimal giaTri(BigDecimal value) {
+        return value != null ? value : BigDecimal.ZERO;
+    }
+
+    private static class DongTam {
+        private long soLuong;
+        private BigDecimal doanhThu = BigDecimal.ZERO;
+
+        private void cong(long soLuong, BigDecimal thanhTien) {
+            this.soLuong += soLuong;
+            this.doanhThu = this.doanhThu.add(thanhTien);
+        }
+    }
+
+    private record KpiSnapshot(LocalDate ngay, long hetHan, KpiDoanhThuResponse kpi) {
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.petlorshop.services;
+
+import com.example.petlorshop.dto.DonHangExportRow;
+import com.example.petlorshop.models.DonHang;
+import com.example.petlorshop.repositories.DonHangRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Xuất đơn hàng cho kế toán dưới dạng CSV hoặc NDJSON.
+ * Dữ liệu được đọc qua cursor một chiều (DonHangRepository.streamForExport) và ghi thẳng ra Writer từng dòng,
+ * nên bộ nhớ sử dụng không phụ thuộc số lượng đơn.
+ */
+@Service
+public class DonHangExportService {
+
+    private static final String[] CSV_HEADER = {
+            "don_hang_id", "ngay_dat_hang", "trang_thai", "phuong_thuc_thanh_toan", "trang_thai_thanh_toan",
+            "ngay_thanh_toan", "ma_giao_dich", "tong_tien_hang", "so_tien_giam", "phi_van_chuyen", "tong_thanh_toan",
+            "ma_khuyen_mai", "user_id", "ten_nguoi_nhan", "so_dien_thoai_nhan", "dia_chi_giao_hang"
+    };
+
+    public enum DinhDang {
+        CSV, NDJSON
+    }
+
+    @Autowired
+    private DonHangRepository donHangRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // Xuất các đơn có ngày đặt trong [tuNgay, denNgay] (tính cả ngày cuối), trangThai null thì lấy mọi trạng thái
+    @Transactional(readOnly = true)
+    public long export(LocalDate tuNgay, LocalDate denNgay, DonHang.TrangThaiDonHang trangThai,
+                       DinhDang dinhDang, Writer writer) throws IOException {
+        if (dinhDang == DinhDang.CSV) {
+            writer.write('\uFEFF'); // BOM để Excel nhận đúng UTF-8
+            ghiDongCsv(writer, CSV_HEADER);
+        }
+
+        long soDong = 0;
+        try (Stream<DonHangExportRow> rows = donHangRepository.streamForExport(
+                tuNgay.atStartOfDay(), denNgay.plusDays(1).atStartOfDay(), trangThai)) {
+            Iterator<DonHangExportRow> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                DonHangExportRow row = iterator.next();
+                if (dinhDang == DinhDang.CSV) {
+                    ghiDongCsv(writer, toCsv(row));
+                } else {
+                    writer.write(objectMapper.writeValueAsString(row));
+                    writer.write('\n');
+                }
+                soDong++;
+            }
+        }
+        writer.flush();
+        return soDong;
+    }
+
+    private static String[] toCsv(DonHangExportRow row) {
+        return new String[]{
+                String.valueOf(row.getDonHangId()),
+                str(row.getNgayDatHang()),
+                str(row.getTrangThai()),
+                str(row.getPhuongThucThanhToan()),
+                str(row.getTrangThaiThanhToan()),
+                str(row.getNgayThanhToan()),
+                row.getMaGiaoDich(),
+                tien(row.getTongTienHang()),
+                tien(row.getSoTienGiam()),
+                tien(row.getPhiVanChuyen()),
+                tien(row.getTongThanhToan()),
+                row.getMaKhuyenMai(),
+                str(row.getUserId()),
+                row.getTenNguoiNhan(),
+                row.getSoDienThoaiNhan(),
+                row.getDiaChiGiaoHang()
+        };
+    }
+
+    private static void ghiDongCsv(Writer writer, String[] values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writer.write(csv(values[i]));
+        }
+        writer.write("\r\n");
+    }
+
+    // Bọc trong dấu nháy kép khi có dấu phẩy, nháy kép hoặc xuống dòng (RFC 4180)
+    private static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private static String str(Object value) {
+        return value == null ? null : value.toString();
+    }
+
+    private static String tien(BigDecimal value) {
+        return value == null ? null : value.toPlainString();
+    }
+}
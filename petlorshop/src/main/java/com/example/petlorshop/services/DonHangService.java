@@ -5,18 +5,27 @@ import com.example.petlorshop.models.*;
 import com.example.petlorshop.repositories.*;
 import jakarta.transaction.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.StringUtils;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -27,8 +36,6 @@ public class DonHangService {
     @Autowired
     private NguoiDungRepository nguoiDungRepository;
     @Autowired
-    private SanPhamRepository sanPhamRepository;
-    @Autowired
     private KhuyenMaiRepository khuyenMaiRepository;
     @Autowired
     private GioHangService gioHangService;
@@ -37,32 +44,40 @@ public class DonHangService {
     @Autowired
     private OrderCalculationService orderCalculationService;
     @Autowired
+    private BaoGiaService baoGiaService;
+    @Autowired
+    private DiaChiHanhChinhService diaChiHanhChinhService;
+    @Autowired
     private DonThuocRepository donThuocRepository;
     @Autowired
     private DanhGiaRepository danhGiaRepository;
+    @Autowired
+    private TonKhoService tonKhoService;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private DoanhThuService doanhThuService;
+    @Autowired
+    private XepHangSanPhamService xepHangSanPhamService;
+
+    @Value("${don-hang.chuyen-trang-thai-batch-size:200}")
+    private int chuyenTrangThaiBatchSize;
+
+    private static final String XUNG_DOT = "Đơn hàng vừa được người khác cập nhật, vui lòng tải lại.";
+
+    private static final KeysetPagination<DonHang> KEYSET =
+            new KeysetPagination<>("ngayDatHang", "donHangId", DonHang::getNgayDatHang, DonHang::getDonHangId);
 
     public Page<DonHangResponse> getAllDonHang(Pageable pageable, String keyword) {
-        if (StringUtils.hasText(keyword)) {
-            List<DonHang> allMatches = donHangRepository.searchByKeyword(keyword);
-            
-            String lowerKeyword = keyword.toLowerCase();
-            List<DonHangResponse> filteredList = allMatches.stream()
-                    .filter(d -> (d.getTrangThai() != null && d.getTrangThai().name().toLowerCase().contains(lowerKeyword)) || 
-                                 (d.getDiaChiGiaoHang() != null && d.getDiaChiGiaoHang().toLowerCase().contains(lowerKeyword)))
-                    .map(this::convertToResponse)
-                    .collect(Collectors.toList());
-
-            int start = (int) pageable.getOffset();
-            int end = Math.min((start + pageable.getPageSize()), filteredList.size());
-            
-            if (start > filteredList.size()) {
-                return new PageImpl<>(List.of(), pageable, filteredList.size());
-            }
-            
-            List<DonHangResponse> pageContent = filteredList.subList(start, end);
-            return new PageImpl<>(pageContent, pageable, filteredList.size());
-        }
-        return donHangRepository.findAll(pageable).map(this::convertToResponse);
+        Page<DonHang> page = donHangRepository.findAll(SearchSpecifications.keyword(keyword, "trangThai", "diaChiGiaoHang"), pageable);
+        return new PageImpl<>(convertToResponses(page.getContent()), pageable, page.getTotalElements());
+    }
+
+    // Phân trang theo cursor (ngayDatHang, donHangId) cho trang admin - không dùng OFFSET
+    public CursorPageResponse<DonHangResponse> getAllDonHangKeyset(String after, int size, String keyword, boolean withCount) {
+        CursorPageResponse<DonHang> page = KEYSET.fetch(donHangRepository,
+                SearchSpecifications.keyword(keyword, "trangThai", "diaChiGiaoHang"), after, size, withCount);
+        return new CursorPageResponse<>(convertToResponses(page.getContent()), page.getNextCursor(), page.isHasNext(), page.getTotalElements());
     }
 
     public Optional<DonHangResponse> getDonHangById(Integer id) {
@@ -70,9 +85,7 @@ public class DonHangService {
     }
 
     public List<DonHangResponse> getMyDonHang(String email) {
-        return donHangRepository.findByNguoiDung_Email(email).stream()
-                .map(this::convertToResponse)
-                .collect(Collectors.toList());
+        return convertToResponses(donHangRepository.findByNguoiDung_Email(email));
     }
     
     public Optional<DonHangResponse> getMyDonHangDetail(String email, Integer id) {
@@ -81,32 +94,56 @@ public class DonHangService {
                 .map(this::convertToResponse);
     }
     
+    public BaoGiaResponse taoBaoGia(BaoGiaRequest request) {
+        return baoGiaService.taoBaoGia(request);
+    }
+
     public BigDecimal calculateShippingFee(ShippingFeeRequest request) {
+        // Chuẩn hóa tỉnh/quận/phường theo từ điển hành chính trước khi tính giá
+        DiaChiHanhChinhService.DiaChiChuan diaChiChuan = diaChiHanhChinhService.chuanHoa(
+                request.getTinhThanh(), request.getQuanHuyen(), request.getPhuongXa());
+        request.setTinhThanh(diaChiChuan.tinhThanh());
+        request.setQuanHuyen(diaChiChuan.quanHuyen());
+        request.setPhuongXa(diaChiChuan.phuongXa());
+
         // Tái sử dụng logic tính toán của OrderCalculationService nhưng chỉ lấy phí ship
         OrderCalculationResult result = orderCalculationService.calculateOrder(
             request.getItems(),
             null, // Không cần mã khuyến mãi khi chỉ tính ship
             request.getTinhThanh(),
             request.getQuanHuyen(),
-            request.getPhuongXa(),
-            request.getDiaChi()
+            request.getPhuongXa()
         );
         return result.getPhiVanChuyen();
     }
 
-    @Transactional
+    /**
+     * Đặt hàng gồm hai pha:
+     * - Báo giá (ngoài transaction): giá sản phẩm, mã khuyến mãi, phí vận chuyển GHTK.
+     * - Ghi đơn (transaction ngắn): trừ/giữ tồn kho, trừ lượt khuyến mãi, lưu đơn hàng.
+     * Nhờ vậy lời gọi HTTP ra GHTK không giữ kết nối DB.
+     */
     public DonHang createDonHang(DonHangRequest donHangRequest) {
+        kiemTraPhuongThucThanhToan(donHangRequest.getPhuongThucThanhToan());
         NguoiDung nguoiDung = nguoiDungRepository.findById(donHangRequest.getUserId())
                 .orElseThrow(() -> new RuntimeException("Không tìm thấy người dùng với ID: " + donHangRequest.getUserId()));
 
-        // 1. Tính toán đơn hàng (tổng tiền, giảm giá, chi tiết)
-        OrderCalculationResult calculationResult = orderCalculationService.calculateOrder(
+        // Chuẩn hóa tỉnh/quận/phường theo từ điển hành chính trước khi tính giá
+        DiaChiHanhChinhService.DiaChiChuan diaChiChuan = diaChiHanhChinhService.chuanHoa(
+                donHangRequest.getTinhThanh(), donHangRequest.getQuanHuyen(), donHangRequest.getPhuongXa());
+        donHangRequest.setTinhThanh(diaChiChuan.tinhThanh());
+        donHangRequest.setQuanHuyen(diaChiChuan.quanHuyen());
+        donHangRequest.setPhuongXa(diaChiChuan.phuongXa());
+
+        // 1. Tính toán đơn hàng (tổng tiền, giảm giá, chi tiết) - ngoài transaction,
+        //    dùng lại báo giá có chữ ký nếu giá/tồn kho chưa đổi
+        OrderCalculationResult calculationResult = baoGiaService.tinhDonHang(
+                donHangRequest.getMaBaoGia(),
                 donHangRequest.getChiTietDonHangs(), 
                 donHangRequest.getMaKhuyenMai(),
                 donHangRequest.getTinhThanh(),
                 donHangRequest.getQuanHuyen(),
-                donHangRequest.getPhuongXa(),
-                donHangRequest.getDiaChiGiaoHang()
+                donHangRequest.getPhuongXa()
         );
 
         // 2. Tạo đơn hàng
@@ -126,7 +163,7 @@ public class DonHangService {
         donHang.setTrangThai(DonHang.TrangThaiDonHang.CHO_XU_LY);
         
         // Set trạng thái thanh toán mặc định
-        if (donHangRequest.getPhuongThucThanhToan() == DonHang.PhuongThucThanhToan.COD) {
+        if (!donHangRequest.getPhuongThucThanhToan().laOnline()) {
             donHang.setTrangThaiThanhToan(DonHang.TrangThaiThanhToan.CHUA_THANH_TOAN);
         } else {
             donHang.setTrangThaiThanhToan(DonHang.TrangThaiThanhToan.CHO_THANH_TOAN);
@@ -138,47 +175,64 @@ public class DonHangService {
         donHang.setTongThanhToan(calculationResult.getTongThanhToan());
         donHang.setKhuyenMai(calculationResult.getKhuyenMai());
 
-        // 3. Lưu chi tiết đơn hàng và trừ tồn kho
+        // 3. Lưu chi tiết đơn hàng và trừ tồn kho (UPDATE có điều kiện, hết hàng thì rollback)
+        //    Đơn online chỉ giữ chỗ sau khi lưu đơn, tồn kho thật bị trừ khi thanh toán thành công
+        boolean thanhToanOnline = donHangRequest.getPhuongThucThanhToan().laOnline();
         List<ChiTietDonHang> chiTietItems = calculationResult.getChiTietDonHangs();
         for (ChiTietDonHang chiTiet : chiTietItems) {
             chiTiet.setDonHang(donHang);
-            
-            // Trừ tồn kho
-            SanPham sanPham = chiTiet.getSanPham();
-            sanPham.setSoLuongTonKho(sanPham.getSoLuongTonKho() - chiTiet.getSoLuong());
-            sanPhamRepository.save(sanPham);
-            
-            // Xóa khỏi giỏ hàng
-            try {
-                gioHangService.xoaSanPhamKhoiGio(donHangRequest.getUserId(), sanPham.getSanPhamId());
-            } catch (Exception e) {
-                // Ignore
-            }
         }
         donHang.setChiTietDonHangs(chiTietItems);
 
-        // 4. Trừ số lượng mã khuyến mãi
-        if (calculationResult.getKhuyenMai() != null) {
-            khuyenMaiService.suDungMaKhuyenMai(calculationResult.getKhuyenMai().getMaCode());
-        }
+        return transactionTemplate.execute(status -> {
+            // Xóa các sản phẩm đã đặt khỏi giỏ hàng (một câu DELETE)
+            gioHangService.xoaSanPhamDaDat(donHangRequest.getUserId(), chiTietItems.stream()
+                    .map(chiTiet -> chiTiet.getSanPham().getSanPhamId())
+                    .collect(Collectors.toSet()));
+
+            // 4. Trừ số lượng mã khuyến mãi
+            suDungKhuyenMai(calculationResult);
 
-        return donHangRepository.save(donHang);
+            DonHang savedDonHang = donHangRepository.save(donHang);
+            if (thanhToanOnline) {
+                tonKhoService.giuChoTonKho(savedDonHang);
+            } else {
+                tonKhoService.truTonKho(savedDonHang);
+            }
+            doanhThuService.ghiNhanDonMoi(savedDonHang);
+            return savedDonHang;
+        });
     }
     
-    @Transactional
+    // Đơn không có phương thức thanh toán không biết phải trừ tồn kho ngay (COD) hay giữ chỗ chờ thanh toán (online)
+    private void kiemTraPhuongThucThanhToan(DonHang.PhuongThucThanhToan phuongThuc) {
+        if (phuongThuc == null) {
+            throw new RuntimeException("Vui lòng chọn phương thức thanh toán.");
+        }
+    }
+
+    // Đặt hàng cho khách vãng lai: báo giá ngoài transaction, ghi đơn trong transaction ngắn (như createDonHang)
     public DonHang createGuestOrder(GuestOrderRequest request) {
-        if (request.getPhuongThucThanhToan() == DonHang.PhuongThucThanhToan.COD) {
+        kiemTraPhuongThucThanhToan(request.getPhuongThucThanhToan());
+        if (!request.getPhuongThucThanhToan().laOnline()) {
             throw new RuntimeException("Khách vãng lai vui lòng thanh toán chuyển khoản (VNPAY/MOMO).");
         }
 
+        // Chuẩn hóa tỉnh/quận/phường theo từ điển hành chính trước khi tính giá
+        DiaChiHanhChinhService.DiaChiChuan diaChiChuan = diaChiHanhChinhService.chuanHoa(
+                request.getTinhThanh(), request.getQuanHuyen(), request.getPhuongXa());
+        request.setTinhThanh(diaChiChuan.tinhThanh());
+        request.setQuanHuyen(diaChiChuan.quanHuyen());
+        request.setPhuongXa(diaChiChuan.phuongXa());
+
         // 1. Tính toán đơn hàng
-        OrderCalculationResult calculationResult = orderCalculationService.calculateOrder(
+        OrderCalculationResult calculationResult = baoGiaService.tinhDonHang(
+                request.getMaBaoGia(),
                 request.getChiTietDonHangs(), 
                 request.getMaKhuyenMai(),
                 request.getTinhThanh(),
                 request.getQuanHuyen(),
-                request.getPhuongXa(),
-                request.getDiaChiGiaoHang()
+                request.getPhuongXa()
         );
 
         // 2. Tạo đơn hàng
@@ -209,23 +263,29 @@ public class DonHangService {
         donHang.setTongThanhToan(calculationResult.getTongThanhToan());
         donHang.setKhuyenMai(calculationResult.getKhuyenMai());
 
-        // 3. Lưu chi tiết và trừ tồn kho
+        // 3. Lưu chi tiết (tồn kho được giữ chỗ sau khi lưu đơn, trừ thật khi thanh toán thành công)
         List<ChiTietDonHang> chiTietItems = calculationResult.getChiTietDonHangs();
         for (ChiTietDonHang chiTiet : chiTietItems) {
             chiTiet.setDonHang(donHang);
-            
-            SanPham sanPham = chiTiet.getSanPham();
-            sanPham.setSoLuongTonKho(sanPham.getSoLuongTonKho() - chiTiet.getSoLuong());
-            sanPhamRepository.save(sanPham);
         }
         donHang.setChiTietDonHangs(chiTietItems);
 
-        // 4. Trừ mã khuyến mãi
-        if (calculationResult.getKhuyenMai() != null) {
-            khuyenMaiService.suDungMaKhuyenMai(calculationResult.getKhuyenMai().getMaCode());
-        }
+        return transactionTemplate.execute(status -> {
+            // 4. Trừ mã khuyến mãi
+            suDungKhuyenMai(calculationResult);
+
+            DonHang savedDonHang = donHangRepository.save(donHang);
+            tonKhoService.giuChoTonKho(savedDonHang);
+            doanhThuService.ghiNhanDonMoi(savedDonHang);
+            return savedDonHang;
+        });
+    }
 
-        return donHangRepository.save(donHang);
+    private void suDungKhuyenMai(OrderCalculationResult calculationResult) {
+        if (calculationResult.getKhuyenMai() != null
+                && !khuyenMaiService.suDungMaKhuyenMai(calculationResult.getKhuyenMai().getMaCode())) {
+            throw new RuntimeException("Mã khuyến mãi đã hết lượt sử dụng.");
+        }
     }
 
     @Transactional
@@ -289,15 +349,25 @@ public class DonHangService {
         donThuoc.setTrangThai(DonThuoc.TrangThaiDonThuoc.DA_THANH_TOAN);
         donThuocRepository.save(donThuoc);
 
-        return donHangRepository.save(donHang);
+        DonHang savedDonHang = donHangRepository.save(donHang);
+        doanhThuService.ghiNhanDonMoi(savedDonHang);
+        xepHangSanPhamService.ghiNhanDaGiao(savedDonHang); // Mua tại quầy tính là đã giao
+        return savedDonHang;
     }
     
     @Transactional
     public void updatePaymentStatus(Integer donHangId, DonHang.TrangThaiThanhToan status, String transactionId) {
+        // Chỉ ghi nhận đã thanh toán khi tồn kho của đơn đã thực sự bị trừ
+        if (status == DonHang.TrangThaiThanhToan.DA_THANH_TOAN && !tonKhoService.xacNhanThanhToan(donHangId)) {
+            throw new RuntimeException("Không thể ghi nhận thanh toán: đơn hàng đã bị hủy hoặc sản phẩm không còn đủ tồn kho.");
+        }
+
         DonHang donHang = donHangRepository.findById(donHangId)
                 .orElseThrow(() -> new RuntimeException("Không tìm thấy đơn hàng: " + donHangId));
         
-        donHang.setTrangThaiThanhToan(status);
+        DonHang.TrangThaiThanhToan trangThaiCu = donHang.getTrangThaiThanhToan();
+        donHang.chuyenTrangThaiThanhToan(status);
+        doanhThuService.ghiNhanThanhToan(donHang, trangThaiCu);
         if (transactionId != null) {
             donHang.setMaGiaoDich(transactionId);
         }
@@ -308,22 +378,152 @@ public class DonHangService {
         donHangRepository.save(donHang);
     }
 
+    /**
+     * Cập nhật một đơn hàng (admin/lễ tân). Trạng thái chỉ được chuyển theo máy trạng thái của đơn hàng,
+     * hủy đơn thì hoàn tồn kho. Nếu client gửi phienBan khác phiên bản hiện tại, hoặc đơn bị người khác
+     * lưu trước trong lúc cập nhật (@Version), ném ObjectOptimisticLockingFailureException.
+     */
+    @Transactional
     public DonHangResponse updateDonHangStatus(Integer id, DonHangUpdateRequest updateRequest) {
         DonHang donHang = donHangRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Đơn hàng không tồn tại với id: " + id));
 
+        if (updateRequest.getPhienBan() != null && !updateRequest.getPhienBan().equals(donHang.getPhienBan())) {
+            throw new ObjectOptimisticLockingFailureException(DonHang.class, id);
+        }
+
         if (updateRequest.getTrangThai() != null) {
-            donHang.setTrangThai(updateRequest.getTrangThai());
+            chuyenTrangThai(donHang, updateRequest.getTrangThai());
         }
 
         if (StringUtils.hasText(updateRequest.getDiaChiGiaoHang())) {
             donHang.setDiaChiGiaoHang(updateRequest.getDiaChiGiaoHang());
         }
 
-        DonHang savedDonHang = donHangRepository.save(donHang);
+        // Flush ngay để xung đột phiên bản được báo tại đây thay vì lúc commit
+        DonHang savedDonHang = donHangRepository.saveAndFlush(donHang);
         return convertToResponse(savedDonHang);
     }
 
+    /**
+     * Chuyển trạng thái hàng loạt, trả về kết quả từng đơn (giữ thứ tự đầu vào, bỏ ID trùng).
+     * Các đơn được xử lý theo lô don-hang.chuyen-trang-thai-batch-size, mỗi lô một transaction ngắn:
+     * đọc trạng thái hiện tại bằng một truy vấn, kiểm tra máy trạng thái trong bộ nhớ, rồi mỗi nhóm trạng thái cũ
+     * một câu UPDATE có điều kiện. Riêng hủy đơn cần hoàn tồn kho nên xử lý từng đơn.
+     */
+    public List<KetQuaChuyenTrangThai> chuyenTrangThaiHangLoat(List<Integer> donHangIds, DonHang.TrangThaiDonHang trangThaiMoi) {
+        if (trangThaiMoi == null) {
+            throw new RuntimeException("Trạng thái mới không được để trống.");
+        }
+        List<Integer> ids = donHangIds == null ? List.of()
+                : donHangIds.stream().filter(Objects::nonNull).distinct().collect(Collectors.toList());
+
+        List<KetQuaChuyenTrangThai> ketQua = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += chuyenTrangThaiBatchSize) {
+            List<Integer> lo = ids.subList(from, Math.min(from + chuyenTrangThaiBatchSize, ids.size()));
+            if (trangThaiMoi == DonHang.TrangThaiDonHang.DA_HUY) {
+                for (Integer id : lo) {
+                    ketQua.add(huyMotDon(id));
+                }
+            } else {
+                ketQua.addAll(transactionTemplate.execute(status -> chuyenTrangThaiLo(lo, trangThaiMoi)));
+            }
+        }
+        return ketQua;
+    }
+
+    private List<KetQuaChuyenTrangThai> chuyenTrangThaiLo(List<Integer> ids, DonHang.TrangThaiDonHang trangThaiMoi) {
+        Map<Integer, LocalDate> ngayDat = new HashMap<>();
+        Map<Integer, ThanhToanDon> thanhToan = new HashMap<>();
+        Map<Integer, DonHang.TrangThaiDonHang> truoc = docTrangThai(ids, ngayDat, thanhToan);
+        Map<Integer, String> loi = new HashMap<>();
+        Map<DonHang.TrangThaiDonHang, List<Integer>> theoTrangThaiCu = new EnumMap<>(DonHang.TrangThaiDonHang.class);
+
+        for (Integer id : ids) {
+            DonHang.TrangThaiDonHang cu = truoc.get(id);
+            if (!truoc.containsKey(id)) {
+                loi.put(id, "Không tìm thấy đơn hàng.");
+            } else if (cu == null) {
+                loi.put(id, "Đơn hàng chưa có trạng thái, vui lòng cập nhật riêng.");
+            } else if (cu != trangThaiMoi && !cu.coTheChuyenSang(trangThaiMoi)) {
+                loi.put(id, "Không thể chuyển từ '" + cu.getDisplayName() + "' sang '" + trangThaiMoi.getDisplayName() + "'.");
+            } else if (cu != trangThaiMoi && !cu.coTheChuyenSang(trangThaiMoi,
+                    thanhToan.get(id).phuongThuc(), thanhToan.get(id).trangThai())) {
+                loi.put(id, "Đơn thanh toán online chưa được thanh toán, không thể chuyển sang '" + trangThaiMoi.getDisplayName() + "'.");
+            } else if (cu != trangThaiMoi) {
+                theoTrangThaiCu.computeIfAbsent(cu, k -> new ArrayList<>()).add(id);
+            }
+        }
+
+        for (Map.Entry<DonHang.TrangThaiDonHang, List<Integer>> entry : theoTrangThaiCu.entrySet()) {
+            donHangRepository.chuyenTrangThaiHangLoat(entry.getValue(), entry.getKey(), trangThaiMoi, trangThaiMoi.canDaThanhToan());
+        }
+
+        // Đọc lại trong cùng transaction: đơn bị người khác đổi trạng thái giữa chừng không khớp điều kiện UPDATE
+        Map<Integer, DonHang.TrangThaiDonHang> sau = theoTrangThaiCu.isEmpty() ? truoc : docTrangThai(ids, ngayDat, thanhToan);
+        List<KetQuaChuyenTrangThai> ketQua = new ArrayList<>();
+        Map<LocalDate, Integer> soDonTheoNgay = new HashMap<>();
+        List<Integer> daChuyen = new ArrayList<>();
+        for (Integer id : ids) {
+            if (loi.containsKey(id)) {
+                ketQua.add(new KetQuaChuyenTrangThai(id, false, loi.get(id)));
+            } else if (sau.get(id) == trangThaiMoi) {
+                ketQua.add(new KetQuaChuyenTrangThai(id, true, null));
+                if (truoc.get(id) != trangThaiMoi) {
+                    soDonTheoNgay.merge(ngayDat.get(id), 1, Integer::sum);
+                    daChuyen.add(id);
+                }
+            } else {
+                ketQua.add(new KetQuaChuyenTrangThai(id, false, XUNG_DOT));
+            }
+        }
+        if (trangThaiMoi == DonHang.TrangThaiDonHang.DA_GIAO && !daChuyen.isEmpty()) {
+            doanhThuService.ghiNhanDaGiao(soDonTheoNgay);
+            xepHangSanPhamService.ghiNhanDaGiao(daChuyen);
+        }
+        return ketQua;
+    }
+
+    private KetQuaChuyenTrangThai huyMotDon(Integer id) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                DonHang donHang = donHangRepository.findById(id)
+                        .orElseThrow(() -> new RuntimeException("Không tìm thấy đơn hàng."));
+                chuyenTrangThai(donHang, DonHang.TrangThaiDonHang.DA_HUY);
+                donHangRepository.save(donHang);
+            });
+            return new KetQuaChuyenTrangThai(id, true, null);
+        } catch (ObjectOptimisticLockingFailureException e) {
+            return new KetQuaChuyenTrangThai(id, false, XUNG_DOT);
+        } catch (RuntimeException e) {
+            return new KetQuaChuyenTrangThai(id, false, e.getMessage());
+        }
+    }
+
+    private Map<Integer, DonHang.TrangThaiDonHang> docTrangThai(List<Integer> ids, Map<Integer, LocalDate> ngayDat,
+                                                                Map<Integer, ThanhToanDon> thanhToan) {
+        Map<Integer, DonHang.TrangThaiDonHang> result = new HashMap<>();
+        for (Object[] row : donHangRepository.findTrangThaiByIdIn(ids)) {
+            result.put((Integer) row[0], (DonHang.TrangThaiDonHang) row[1]);
+            ngayDat.put((Integer) row[0], ((LocalDateTime) row[2]).toLocalDate());
+            thanhToan.put((Integer) row[0], new ThanhToanDon((DonHang.PhuongThucThanhToan) row[3], (DonHang.TrangThaiThanhToan) row[4]));
+        }
+        return result;
+    }
+
+    // Chuyển trạng thái theo máy trạng thái; hủy đơn (chưa hủy) thì hoàn tồn kho / giải phóng giữ chỗ; ghi nhận doanh số
+    private void chuyenTrangThai(DonHang donHang, DonHang.TrangThaiDonHang trangThaiMoi) {
+        DonHang.TrangThaiDonHang trangThaiCu = donHang.getTrangThai();
+        donHang.chuyenTrangThai(trangThaiMoi);
+        if (trangThaiMoi == DonHang.TrangThaiDonHang.DA_HUY && trangThaiCu != DonHang.TrangThaiDonHang.DA_HUY) {
+            tonKhoService.hoanTonKhoKhiHuy(donHang);
+        }
+        if (trangThaiMoi == DonHang.TrangThaiDonHang.DA_GIAO && trangThaiCu != DonHang.TrangThaiDonHang.DA_GIAO) {
+            xepHangSanPhamService.ghiNhanDaGiao(donHang);
+        }
+        doanhThuService.ghiNhanTrangThai(donHang, trangThaiCu);
+    }
+
     @Transactional
     public DonHangResponse cancelDonHang(Integer donHangId, String userEmail, String lyDoHuy) {
         DonHang donHang = donHangRepository.findById(donHangId)
@@ -337,13 +537,7 @@ public class DonHangService {
             throw new RuntimeException("Chỉ có thể hủy đơn hàng khi đang ở trạng thái chờ xử lý.");
         }
 
-        for (ChiTietDonHang chiTiet : donHang.getChiTietDonHangs()) {
-            SanPham sanPham = chiTiet.getSanPham();
-            sanPham.setSoLuongTonKho(sanPham.getSoLuongTonKho() + chiTiet.getSoLuong());
-            sanPhamRepository.save(sanPham);
-        }
-
-        donHang.setTrangThai(DonHang.TrangThaiDonHang.DA_HUY);
+        chuyenTrangThai(donHang, DonHang.TrangThaiDonHang.DA_HUY);
         donHang.setLyDoHuy(lyDoHuy);
         DonHang savedDonHang = donHangRepository.save(donHang);
         return convertToResponse(savedDonHang);
@@ -362,9 +556,35 @@ public class DonHangService {
     }
 
     private DonHangResponse convertToResponse(DonHang donHang) {
-        // Lấy danh sách đánh giá của đơn hàng này
-        List<DanhGia> reviews = danhGiaRepository.findByDonHang_DonHangId(donHang.getDonHangId());
-        
+        return convertToResponses(List.of(donHang)).get(0);
+    }
+
+    /**
+     * Map một danh sách đơn hàng sang DTO với số truy vấn cố định:
+     * một truy vấn fetch join cho chi tiết/sản phẩm/danh mục/người dùng/khuyến mãi
+     * và một truy vấn IN cho đánh giá của tất cả đơn hàng. Giữ nguyên thứ tự đầu vào.
+     */
+    private List<DonHangResponse> convertToResponses(List<DonHang> donHangs) {
+        if (donHangs.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        List<Integer> ids = donHangs.stream().map(DonHang::getDonHangId).collect(Collectors.toList());
+
+        Map<Integer, DonHang> fetchedMap = donHangRepository.findAllWithChiTietByIdIn(ids).stream()
+                .collect(Collectors.toMap(DonHang::getDonHangId, Function.identity(), (a, b) -> a));
+
+        Map<Integer, List<DanhGia>> reviewsByDonHang = danhGiaRepository.findByDonHang_DonHangIdIn(ids).stream()
+                .collect(Collectors.groupingBy(r -> r.getDonHang().getDonHangId()));
+
+        return donHangs.stream()
+                .map(d -> convertToResponse(
+                        fetchedMap.getOrDefault(d.getDonHangId(), d),
+                        reviewsByDonHang.getOrDefault(d.getDonHangId(), List.of())))
+                .collect(Collectors.toList());
+    }
+
+    private DonHangResponse convertToResponse(DonHang donHang, List<DanhGia> reviews) {
         boolean daDanhGiaChung = reviews.stream().anyMatch(r -> r.getSanPham() == null);
         
         Set<Integer> reviewedProductIds = reviews.stream()
@@ -404,7 +624,8 @@ public class DonHangService {
                 anhNguoiNhan, // Truyền ảnh đại diện vào response
                 donHang.getKhuyenMai() != null ? donHang.getKhuyenMai().getMaCode() : null,
                 chiTietResponses,
-                daDanhGiaChung
+                daDanhGiaChung,
+                donHang.getPhienBan()
         );
     }
 
@@ -432,4 +653,7 @@ public class DonHangService {
                 daDanhGia
         );
     }
+
+    private record ThanhToanDon(DonHang.PhuongThucThanhToan phuongThuc, DonHang.TrangThaiThanhToan trangThai) {
+    }
 }
@@ -4,13 +4,12 @@ import com.example.petlorshop.dto.DonThuocResponse;
 import com.example.petlorshop.models.ChiTietDonThuoc;
 import com.example.petlorshop.models.DonThuoc;
 import com.example.petlorshop.repositories.DonThuocRepository;
+import com.example.petlorshop.repositories.SearchSpecifications;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.util.StringUtils;
 
 import java.math.BigDecimal;
 import java.util.List;
@@ -25,28 +24,7 @@ public class DonThuocService {
 
     @Transactional(readOnly = true)
     public Page<DonThuocResponse> getAllDonThuoc(Pageable pageable, String keyword) {
-        if (StringUtils.hasText(keyword)) {
-            List<DonThuoc> allMatches = donThuocRepository.searchByKeyword(keyword);
-            
-            String lowerKeyword = keyword.toLowerCase();
-            List<DonThuocResponse> filteredList = allMatches.stream()
-                    .filter(dt -> (dt.getLichHen().getTenKhachHang() != null && dt.getLichHen().getTenKhachHang().toLowerCase().contains(lowerKeyword)) || 
-                                  (dt.getBacSi() != null && dt.getBacSi().getHoTen().toLowerCase().contains(lowerKeyword)) ||
-                                  (dt.getChanDoan() != null && dt.getChanDoan().toLowerCase().contains(lowerKeyword)))
-                    .map(this::convertToResponse)
-                    .collect(Collectors.toList());
-
-            int start = (int) pageable.getOffset();
-            int end = Math.min((start + pageable.getPageSize()), filteredList.size());
-            
-            if (start > filteredList.size()) {
-                return new PageImpl<>(List.of(), pageable, filteredList.size());
-            }
-            
-            List<DonThuocResponse> pageContent = filteredList.subList(start, end);
-            return new PageImpl<>(pageContent, pageable, filteredList.size());
-        }
-        return donThuocRepository.findAll(pageable).map(this::convertToResponse);
+        return donThuocRepository.findAll(SearchSpecifications.keyword(keyword, "lichHen.tenKhachHang", "bacSi.hoTen", "chanDoan"), pageable).map(this::convertToResponse);
     }
 
     @Transactional(readOnly = true)
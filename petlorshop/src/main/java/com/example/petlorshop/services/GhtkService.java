@@ -1,9 +1,14 @@
 package com.example.petlorshop.services;
 
 import com.example.petlorshop.models.CuaHang;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
@@ -13,75 +18,231 @@ import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.UriComponentsBuilder;
 
 import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 public class GhtkService {
 
+    private static final Logger log = LoggerFactory.getLogger(GhtkService.class);
+
     private static final String GHTK_FEE_URL = "https://services.giaohangtietkiem.vn/services/shipment/fee";
-    
+
+    // Phí GHTK tính theo bậc khối lượng và giá trị khai báo, nên làm tròn lên theo bậc để dùng chung cache
+    private static final int BAC_KHOI_LUONG_GRAM = 500;
+    private static final int BAC_GIA_TRI = 500_000;
+
     @Autowired
     private CuaHangService cuaHangService;
 
-    private final RestTemplate restTemplate = new RestTemplate();
+    @Autowired
+    private ShippingFeeCache shippingFeeCache;
+
+    @Autowired
+    private BangGiaVanChuyenService bangGiaVanChuyenService;
+
+    private final RestTemplate restTemplate;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
-    public BigDecimal calculateShippingFee(String province, String district, String ward, String address, Integer weight, Integer value) {
-        try {
-            // Lấy thông tin cấu hình từ DB
-            CuaHang shopInfo = cuaHangService.getThongTinCuaHang();
-            String token = shopInfo.getGhtkToken();
-            String pickProvince = shopInfo.getTinhThanh();
-            String pickDistrict = shopInfo.getQuanHuyen();
-            
-            if (token == null || token.isEmpty()) {
-                System.err.println("GHTK Token chưa được cấu hình!");
-                return BigDecimal.valueOf(30000); // Fallback
-            }
+    private final BigDecimal phiMacDinh;
+    private final boolean uuTienBangGiaNoiBo;
+    private final int maxConcurrentCalls;
+    private final Semaphore bulkhead;
+    private final long bulkheadWaitMs;
+    private final CircuitBreaker circuitBreaker;
 
-            HttpHeaders headers = new HttpHeaders();
-            headers.set("Token", token);
-            headers.set("X-Client-Source", "S22581636"); // Ví dụ Partner Code
+    // Thống kê lời gọi GHTK
+    private final AtomicLong soLanGoi = new AtomicLong();
+    private final AtomicLong soLanLoi = new AtomicLong();
+    private final AtomicLong soLanTuChoiBulkhead = new AtomicLong();
+    private final AtomicLong soLanTuChoiBreaker = new AtomicLong();
+    private final AtomicLong tongThoiGianNanos = new AtomicLong();
+    private final AtomicLong thoiGianLonNhatNanos = new AtomicLong();
+    private final AtomicLong soLanDungBangGiaNoiBo = new AtomicLong();
 
-            UriComponentsBuilder builder = UriComponentsBuilder.fromHttpUrl(GHTK_FEE_URL)
-                    .queryParam("pick_province", pickProvince)
-                    .queryParam("pick_district", pickDistrict)
-                    .queryParam("province", province)
-                    .queryParam("district", district)
-                    .queryParam("weight", weight != null ? weight : 500) // Mặc định 500g
-                    .queryParam("value", value != null ? value : 0);
+    public GhtkService(@Qualifier("ghtkRestTemplate") RestTemplate restTemplate,
+                       @Value("${ghtk.fallback-fee:30000}") long phiMacDinh,
+                       @Value("${ghtk.max-concurrent-calls:20}") int maxConcurrentCalls,
+                       @Value("${ghtk.bulkhead-wait-ms:100}") long bulkheadWaitMs,
+                       @Value("${ghtk.breaker.failure-threshold:5}") int failureThreshold,
+                       @Value("${ghtk.breaker.open-seconds:30}") long openSeconds,
+                       @Value("${ghtk.bang-gia-noi-bo.uu-tien:false}") boolean uuTienBangGiaNoiBo) {
+        this.restTemplate = restTemplate;
+        this.phiMacDinh = BigDecimal.valueOf(phiMacDinh);
+        this.uuTienBangGiaNoiBo = uuTienBangGiaNoiBo;
+        this.maxConcurrentCalls = maxConcurrentCalls;
+        this.bulkhead = new Semaphore(maxConcurrentCalls);
+        this.bulkheadWaitMs = bulkheadWaitMs;
+        this.circuitBreaker = new CircuitBreaker(failureThreshold, TimeUnit.SECONDS.toMillis(openSeconds));
+    }
 
-            if (ward != null && !ward.isEmpty()) {
-                builder.queryParam("ward", ward);
-            }
-            if (address != null && !address.isEmpty()) {
-                builder.queryParam("address", address);
+    public BigDecimal calculateShippingFee(String province, String district, String ward, Integer weight, Integer value) {
+        // Lấy thông tin cấu hình từ DB
+        CuaHang shopInfo = cuaHangService.getThongTinCuaHang();
+        String token = shopInfo.getGhtkToken();
+        String pickProvince = shopInfo.getTinhThanh();
+        String pickDistrict = shopInfo.getQuanHuyen();
+
+        int khoiLuong = Math.max(lamTronLen(weight != null ? weight : 500, BAC_KHOI_LUONG_GRAM), BAC_KHOI_LUONG_GRAM); // Mặc định 500g
+        int giaTri = lamTronLen(value != null ? value : 0, BAC_GIA_TRI);
+        String tinhThanh = chuanHoa(province);
+        String quanHuyen = chuanHoa(district);
+
+        if (token == null || token.isEmpty()) {
+            log.warn("GHTK Token chưa được cấu hình, dùng bảng giá nội bộ/phí mặc định");
+            return phiDuPhong(tinhThanh, quanHuyen, khoiLuong, giaTri); // Fallback
+        }
+
+        // Đường nhanh: bảng giá nội bộ khi được cấu hình ưu tiên hoặc khi GHTK đang bị ngắt (breaker mở),
+        // chỉ dùng phí còn mới, phí quá cũ thì gọi lại GHTK để cập nhật
+        if (uuTienBangGiaNoiBo || circuitBreaker.getTrangThai() == CircuitBreaker.TrangThai.OPEN) {
+            Optional<BigDecimal> phiNoiBo = demBangGiaNoiBo(bangGiaVanChuyenService.traPhi(tinhThanh, quanHuyen, khoiLuong, giaTri));
+            if (phiNoiBo.isPresent()) {
+                return phiNoiBo.get();
             }
+        }
 
-            HttpEntity<?> entity = new HttpEntity<>(headers);
-
-            ResponseEntity<String> response = restTemplate.exchange(
-                    builder.toUriString(),
-                    HttpMethod.GET,
-                    entity,
-                    String.class
-            );
-
-            if (response.getStatusCode().is2xxSuccessful()) {
-                JsonNode root = objectMapper.readTree(response.getBody());
-                if (root.path("success").asBoolean()) {
-                    int fee = root.path("fee").path("fee").asInt();
-                    return BigDecimal.valueOf(fee);
-                } else {
-                    // Log lỗi từ GHTK nếu cần
-                    System.err.println("GHTK Error: " + root.path("message").asText());
+        String cacheKey = String.join("|", chuanHoa(pickProvince), chuanHoa(pickDistrict),
+                tinhThanh, quanHuyen, chuanHoa(ward),
+                String.valueOf(khoiLuong), String.valueOf(giaTri));
+
+        try {
+            return shippingFeeCache.get(cacheKey, () -> {
+                BigDecimal fee = goiGhtk(token, pickProvince, pickDistrict, province, district, ward, khoiLuong, giaTri);
+                try {
+                    bangGiaVanChuyenService.ghiNhan(tinhThanh, quanHuyen, khoiLuong, giaTri, fee);
+                } catch (RuntimeException e) {
+                    log.warn("Không ghi nhận được bảng giá nội bộ: {}", e.getMessage());
                 }
+                return fee;
+            });
+        } catch (RuntimeException e) {
+            // Fallback: GHTK lỗi hoặc breaker đang mở -> bảng giá nội bộ của khu vực, không có thì phí mặc định
+            // (không lưu vào cache)
+            log.warn("Không tính được phí GHTK ({}), dùng bảng giá nội bộ/phí mặc định", e.getMessage());
+            return phiDuPhong(tinhThanh, quanHuyen, khoiLuong, giaTri);
+        }
+    }
+
+    // Phí khi không gọi được GHTK: bảng giá nội bộ của khu vực (kể cả phí cũ), chưa có dữ liệu thì phí mặc định
+    private BigDecimal phiDuPhong(String tinhThanh, String quanHuyen, int khoiLuong, int giaTri) {
+        return demBangGiaNoiBo(bangGiaVanChuyenService.traPhiDuPhong(tinhThanh, quanHuyen, khoiLuong, giaTri)).orElse(phiMacDinh);
+    }
+
+    private Optional<BigDecimal> demBangGiaNoiBo(Optional<BigDecimal> phiNoiBo) {
+        if (phiNoiBo.isPresent()) {
+            soLanDungBangGiaNoiBo.incrementAndGet();
+        }
+        return phiNoiBo;
+    }
+
+    public static String chuanHoa(String value) {
+        if (value == null) {
+            return "";
+        }
+        return value.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    private BigDecimal goiGhtk(String token, String pickProvince, String pickDistrict,
+                               String province, String district, String ward, int weight, int value) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("Token", token);
+        headers.set("X-Client-Source", "S22581636"); // Ví dụ Partner Code
+
+        UriComponentsBuilder builder = UriComponentsBuilder.fromHttpUrl(GHTK_FEE_URL)
+                .queryParam("pick_province", pickProvince)
+                .queryParam("pick_district", pickDistrict)
+                .queryParam("province", province)
+                .queryParam("district", district)
+                .queryParam("weight", weight)
+                .queryParam("value", value);
+
+        if (ward != null && !ward.isEmpty()) {
+            builder.queryParam("ward", ward);
+        }
+
+        HttpEntity<?> entity = new HttpEntity<>(headers);
+
+        ResponseEntity<String> response = exchange(builder.toUriString(), entity);
+
+        if (!response.getStatusCode().is2xxSuccessful()) {
+            throw new RuntimeException("HTTP " + response.getStatusCode().value());
+        }
+        try {
+            JsonNode root = objectMapper.readTree(response.getBody());
+            if (!root.path("success").asBoolean()) {
+                throw new RuntimeException(root.path("message").asText());
             }
-        } catch (Exception e) {
-            e.printStackTrace();
-            // Fallback: Nếu gọi API lỗi, trả về phí mặc định hoặc ném lỗi
+            return BigDecimal.valueOf(root.path("fee").path("fee").asInt());
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Phản hồi GHTK không hợp lệ", e);
+        }
+    }
+
+    // Gọi GHTK qua circuit breaker và bulkhead; mọi lỗi của lời gọi (kết nối/timeout/HTTP hay lỗi khác) được tính
+    // vào breaker, để lời gọi thử khi HALF_OPEN luôn kết thúc và breaker không bị kẹt
+    private ResponseEntity<String> exchange(String url, HttpEntity<?> entity) {
+        if (!circuitBreaker.allowRequest()) {
+            soLanTuChoiBreaker.incrementAndGet();
+            throw new RuntimeException("GHTK tạm ngưng (circuit breaker đang mở)");
+        }
+        if (!tryAcquireBulkhead()) {
+            circuitBreaker.onSkipped();
+            soLanTuChoiBulkhead.incrementAndGet();
+            throw new RuntimeException("Quá nhiều lời gọi GHTK đồng thời");
+        }
+
+        long start = System.nanoTime();
+        soLanGoi.incrementAndGet();
+        try {
+            ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.GET, entity, String.class);
+            circuitBreaker.onSuccess();
+            return response;
+        } catch (RuntimeException e) {
+            soLanLoi.incrementAndGet();
+            circuitBreaker.onFailure();
+            throw e;
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            tongThoiGianNanos.addAndGet(elapsed);
+            thoiGianLonNhatNanos.accumulateAndGet(elapsed, Math::max);
+            bulkhead.release();
+        }
+    }
+
+    private boolean tryAcquireBulkhead() {
+        try {
+            return bulkhead.tryAcquire(bulkheadWaitMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    public Map<String, Object> getThongKe() {
+        long calls = soLanGoi.get();
+        Map<String, Object> thongKe = new LinkedHashMap<>();
+        thongKe.put("trangThaiBreaker", circuitBreaker.getTrangThai());
+        thongKe.put("soLanGoi", calls);
+        thongKe.put("soLanLoi", soLanLoi.get());
+        thongKe.put("tuChoiDoBreaker", soLanTuChoiBreaker.get());
+        thongKe.put("tuChoiDoBulkhead", soLanTuChoiBulkhead.get());
+        thongKe.put("dangGoi", maxConcurrentCalls - bulkhead.availablePermits());
+        thongKe.put("thoiGianTrungBinhMs", calls == 0 ? 0.0 : tongThoiGianNanos.get() / 1_000_000.0 / calls);
+        thongKe.put("thoiGianLonNhatMs", thoiGianLonNhatNanos.get() / 1_000_000.0);
+        thongKe.put("dungBangGiaNoiBo", soLanDungBangGiaNoiBo.get());
+        return thongKe;
+    }
+
+    private static int lamTronLen(int soLuong, int bac) {
+        if (soLuong <= 0) {
+            return 0;
         }
-        
-        // Trả về phí mặc định nếu không tính được (ví dụ 30k)
-        return BigDecimal.valueOf(30000);
+        return ((soLuong + bac - 1) / bac) * bac;
     }
 }
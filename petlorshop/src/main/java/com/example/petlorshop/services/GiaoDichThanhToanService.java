@@ -12,6 +12,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -27,8 +28,18 @@ public class GiaoDichThanhToanService {
     @Autowired
     private ThongBaoService thongBaoService;
 
+    @Autowired
+    private TonKhoService tonKhoService;
+
+    @Autowired
+    private DoanhThuService doanhThuService;
+
     @Transactional
     public GiaoDichThanhToanResponse createGiaoDich(GiaoDichThanhToanRequest request) {
+        // Trừ tồn kho thật trước khi đọc đơn (khóa sổ giữ chỗ): nếu job quét vừa hủy đơn quá hạn thì đọc được trạng thái mới nhất
+        boolean daTruTonKho = request.getTrangThai() == GiaoDichThanhToan.TrangThaiGiaoDich.THANH_CONG
+                && tonKhoService.xacNhanThanhToan(request.getDonHangId());
+
         DonHang donHang = donHangRepository.findById(request.getDonHangId())
                 .orElseThrow(() -> new RuntimeException("Không tìm thấy đơn hàng"));
 
@@ -41,19 +52,29 @@ public class GiaoDichThanhToanService {
 
         GiaoDichThanhToan saved = giaoDichRepository.save(gd);
 
-        // Tự động cập nhật trạng thái đơn hàng nếu thanh toán thành công
-        if (request.getTrangThai() == GiaoDichThanhToan.TrangThaiGiaoDich.THANH_CONG) {
-            donHang.setTrangThai(DonHang.TrangThaiDonHang.DA_XAC_NHAN);
+        // Tự động cập nhật trạng thái đơn hàng nếu thanh toán thành công và tồn kho đã được trừ
+        // (đơn đã bị hủy, hoặc giữ chỗ hết hạn mà hết hàng: chỉ lưu giao dịch để admin xử lý hoàn tiền)
+        if (daTruTonKho) {
+            // Ghi nhận thanh toán trước: đơn online chỉ được xác nhận khi đã thanh toán
+            DonHang.TrangThaiThanhToan trangThaiThanhToanCu = donHang.getTrangThaiThanhToan();
+            donHang.chuyenTrangThaiThanhToan(DonHang.TrangThaiThanhToan.DA_THANH_TOAN);
+            doanhThuService.ghiNhanThanhToan(donHang, trangThaiThanhToanCu);
+            if (donHang.getTrangThai() == DonHang.TrangThaiDonHang.CHO_XU_LY) {
+                donHang.chuyenTrangThai(DonHang.TrangThaiDonHang.DA_XAC_NHAN);
+            }
+            donHang.setNgayThanhToan(LocalDateTime.now());
             donHangRepository.save(donHang);
 
-            // Gửi thông báo
-            ThongBaoRequest tbRequest = new ThongBaoRequest();
-            tbRequest.setUserId(donHang.getNguoiDung().getUserId());
-            tbRequest.setTieuDe("Thanh toán thành công");
-            tbRequest.setNoiDung("Đơn hàng #" + donHang.getDonHangId() + " đã được thanh toán thành công.");
-            tbRequest.setLoaiThongBao(ThongBao.LoaiThongBao.DON_HANG);
-            tbRequest.setLienKet("/don-hang/" + donHang.getDonHangId());
-            thongBaoService.createThongBao(tbRequest);
+            // Gửi thông báo (đơn của khách vãng lai không có tài khoản để nhận)
+            if (donHang.getNguoiDung() != null) {
+                ThongBaoRequest tbRequest = new ThongBaoRequest();
+                tbRequest.setUserId(donHang.getNguoiDung().getUserId());
+                tbRequest.setTieuDe("Thanh toán thành công");
+                tbRequest.setNoiDung("Đơn hàng #" + donHang.getDonHangId() + " đã được thanh toán thành công.");
+                tbRequest.setLoaiThongBao(ThongBao.LoaiThongBao.DON_HANG);
+                tbRequest.setLienKet("/don-hang/" + donHang.getDonHangId());
+                thongBaoService.createThongBao(tbRequest);
+            }
         }
 
         return convertToResponse(saved);
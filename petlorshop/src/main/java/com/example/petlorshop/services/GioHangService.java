@@ -2,6 +2,7 @@ package com.example.petlorshop.services;
 
 import com.example.petlorshop.dto.AddToCartRequest;
 import com.example.petlorshop.dto.CartItemResponse;
+import com.example.petlorshop.dto.GioHangBatchRequest;
 import com.example.petlorshop.dto.GioHangResponse;
 import com.example.petlorshop.models.*;
 import com.example.petlorshop.repositories.ChiTietGioHangRepository;
@@ -13,9 +14,14 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -41,40 +47,18 @@ public class GioHangService {
 
     public GioHangResponse themSanPhamVaoGio(AddToCartRequest request) {
         GioHang gioHang = findOrCreateCartByUserId(request.getUserId());
-        SanPham sanPham = sanPhamRepository.findById(request.getSanPhamId())
-                .orElseThrow(() -> new RuntimeException("Không tìm thấy sản phẩm với ID: " + request.getSanPhamId()));
-
-        Optional<ChiTietGioHang> existingItemOpt = chiTietGioHangRepository.findByGioHang_GioHangIdAndSanPham_SanPhamId(gioHang.getGioHangId(), sanPham.getSanPhamId());
-
-        if (existingItemOpt.isPresent()) {
-            ChiTietGioHang item = existingItemOpt.get();
-            item.setSoLuong(item.getSoLuong() + request.getSoLuong());
-            chiTietGioHangRepository.save(item);
-        } else {
-            ChiTietGioHang newItem = new ChiTietGioHang();
-            newItem.setGioHang(gioHang);
-            newItem.setSanPham(sanPham);
-            newItem.setSoLuong(request.getSoLuong());
-            gioHang.getChiTietGioHangList().add(newItem);
-            gioHangRepository.save(gioHang);
-        }
-        
+        apDungThaoTac(gioHang, List.of(thaoTac(GioHangBatchRequest.LoaiThaoTac.THEM, request.getSanPhamId(), request.getSoLuong())));
         return mapToGioHangResponse(gioHang);
     }
 
     public GioHangResponse xoaSanPhamKhoiGio(Integer userId, Integer sanPhamId) {
-        GioHang gioHang = gioHangRepository.findByNguoiDung_UserId(userId)
-                .orElseThrow(() -> new RuntimeException("Không tìm thấy giỏ hàng cho người dùng."));
-
-        gioHang.getChiTietGioHangList().removeIf(item -> item.getSanPham().getSanPhamId().equals(sanPhamId));
-        gioHangRepository.save(gioHang);
-
+        GioHang gioHang = findCartByUserId(userId);
+        apDungThaoTac(gioHang, List.of(thaoTac(GioHangBatchRequest.LoaiThaoTac.XOA, sanPhamId, 0)));
         return mapToGioHangResponse(gioHang);
     }
     
     public GioHangResponse clearGioHang(Integer userId) {
-        GioHang gioHang = gioHangRepository.findByNguoiDung_UserId(userId)
-                .orElseThrow(() -> new RuntimeException("Không tìm thấy giỏ hàng cho người dùng."));
+        GioHang gioHang = findCartByUserId(userId);
 
         gioHang.getChiTietGioHangList().clear();
         gioHangRepository.save(gioHang);
@@ -83,26 +67,106 @@ public class GioHangService {
     }
 
     public GioHangResponse capNhatSoLuong(Integer userId, Integer sanPhamId, int soLuongMoi) {
-        if (soLuongMoi <= 0) {
-            return xoaSanPhamKhoiGio(userId, sanPhamId);
-        }
+        GioHang gioHang = findCartByUserId(userId);
+        apDungThaoTac(gioHang, List.of(thaoTac(GioHangBatchRequest.LoaiThaoTac.CAP_NHAT, sanPhamId, soLuongMoi)));
+        return mapToGioHangResponse(gioHang);
+    }
 
-        GioHang gioHang = gioHangRepository.findByNguoiDung_UserId(userId)
-                .orElseThrow(() -> new RuntimeException("Không tìm thấy giỏ hàng cho người dùng."));
+    /**
+     * Áp dụng nhiều thao tác thêm/cập nhật/xóa lên giỏ hàng trong một request và một transaction.
+     * Giỏ hàng được nạp một lần (kèm sản phẩm), các sản phẩm mới được nạp bằng một truy vấn,
+     * thao tác lỗi (sản phẩm không tồn tại, cập nhật sản phẩm không có trong giỏ) làm rollback toàn bộ.
+     */
+    public GioHangResponse capNhatHangLoat(Integer userId, List<GioHangBatchRequest.ThaoTac> thaoTacList) {
+        GioHang gioHang = findOrCreateCartByUserId(userId);
+        apDungThaoTac(gioHang, thaoTacList);
+        return mapToGioHangResponse(gioHang);
+    }
 
-        ChiTietGioHang itemToUpdate = gioHang.getChiTietGioHangList().stream()
-                .filter(item -> item.getSanPham().getSanPhamId().equals(sanPhamId))
-                .findFirst()
-                .orElseThrow(() -> new RuntimeException("Sản phẩm không có trong giỏ hàng."));
+    // Sau khi đặt hàng: xóa các sản phẩm đã đặt khỏi giỏ bằng một câu DELETE (không nạp giỏ hàng)
+    public void xoaSanPhamDaDat(Integer userId, Collection<Integer> sanPhamIds) {
+        if (userId == null || sanPhamIds.isEmpty()) {
+            return;
+        }
+        chiTietGioHangRepository.xoaTheoSanPham(userId, sanPhamIds);
+    }
+
+    private void apDungThaoTac(GioHang gioHang, List<GioHangBatchRequest.ThaoTac> thaoTacList) {
+        Map<Integer, ChiTietGioHang> dongTheoSanPham = new HashMap<>();
+        for (ChiTietGioHang item : gioHang.getChiTietGioHangList()) {
+            dongTheoSanPham.put(item.getSanPham().getSanPhamId(), item);
+        }
 
-        itemToUpdate.setSoLuong(soLuongMoi);
+        // Nạp một lần các sản phẩm cần thêm mới vào giỏ
+        Set<Integer> sanPhamMoiIds = thaoTacList.stream()
+                .filter(tt -> tt.getLoai() == GioHangBatchRequest.LoaiThaoTac.THEM)
+                .map(GioHangBatchRequest.ThaoTac::getSanPhamId)
+                .filter(id -> !dongTheoSanPham.containsKey(id))
+                .collect(Collectors.toSet());
+        Map<Integer, SanPham> sanPhamMoi = sanPhamMoiIds.isEmpty() ? Map.of()
+                : sanPhamRepository.findAllById(sanPhamMoiIds).stream()
+                        .collect(Collectors.toMap(SanPham::getSanPhamId, Function.identity()));
+
+        for (GioHangBatchRequest.ThaoTac tt : thaoTacList) {
+            Integer sanPhamId = tt.getSanPhamId();
+            ChiTietGioHang item = dongTheoSanPham.get(sanPhamId);
+            switch (tt.getLoai()) {
+                case THEM -> {
+                    if (tt.getSoLuong() <= 0) {
+                        throw new RuntimeException("Số lượng phải lớn hơn hoặc bằng 1");
+                    }
+                    if (item != null) {
+                        item.setSoLuong(item.getSoLuong() + tt.getSoLuong());
+                    } else {
+                        SanPham sanPham = sanPhamMoi.get(sanPhamId);
+                        if (sanPham == null) {
+                            throw new RuntimeException("Không tìm thấy sản phẩm với ID: " + sanPhamId);
+                        }
+                        ChiTietGioHang newItem = new ChiTietGioHang();
+                        newItem.setGioHang(gioHang);
+                        newItem.setSanPham(sanPham);
+                        newItem.setSoLuong(tt.getSoLuong());
+                        gioHang.getChiTietGioHangList().add(newItem);
+                        dongTheoSanPham.put(sanPhamId, newItem);
+                    }
+                }
+                case CAP_NHAT -> {
+                    if (tt.getSoLuong() <= 0) {
+                        xoaDong(gioHang, dongTheoSanPham, sanPhamId);
+                    } else if (item == null) {
+                        throw new RuntimeException("Sản phẩm không có trong giỏ hàng.");
+                    } else {
+                        item.setSoLuong(tt.getSoLuong());
+                    }
+                }
+                case XOA -> xoaDong(gioHang, dongTheoSanPham, sanPhamId);
+            }
+        }
         gioHangRepository.save(gioHang);
+    }
 
-        return mapToGioHangResponse(gioHang);
+    private void xoaDong(GioHang gioHang, Map<Integer, ChiTietGioHang> dongTheoSanPham, Integer sanPhamId) {
+        ChiTietGioHang item = dongTheoSanPham.remove(sanPhamId);
+        if (item != null) {
+            gioHang.getChiTietGioHangList().remove(item);
+        }
+    }
+
+    private static GioHangBatchRequest.ThaoTac thaoTac(GioHangBatchRequest.LoaiThaoTac loai, Integer sanPhamId, int soLuong) {
+        GioHangBatchRequest.ThaoTac tt = new GioHangBatchRequest.ThaoTac();
+        tt.setLoai(loai);
+        tt.setSanPhamId(sanPhamId);
+        tt.setSoLuong(soLuong);
+        return tt;
+    }
+
+    private GioHang findCartByUserId(Integer userId) {
+        return gioHangRepository.findWithChiTietByUserId(userId)
+                .orElseThrow(() -> new RuntimeException("Không tìm thấy giỏ hàng cho người dùng."));
     }
 
     private GioHang findOrCreateCartByUserId(Integer userId) {
-        return gioHangRepository.findByNguoiDung_UserId(userId)
+        return gioHangRepository.findWithChiTietByUserId(userId)
                 .orElseGet(() -> {
                     NguoiDung nguoiDung = nguoiDungRepository.findById(userId)
                             .orElseThrow(() -> new RuntimeException("Không tìm thấy người dùng với ID: " + userId));
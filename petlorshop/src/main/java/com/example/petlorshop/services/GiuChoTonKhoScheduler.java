@@ -0,0 +1,28 @@
+package com.example.petlorshop.services;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Job định kỳ giải phóng các giữ chỗ tồn kho đã hết hạn và hủy đơn online chưa thanh toán.
+ * Xử lý theo lô, mỗi lô một transaction ngắn, lặp đến khi không còn giữ chỗ hết hạn.
+ */
+@Component
+public class GiuChoTonKhoScheduler {
+
+    @Autowired
+    private TonKhoService tonKhoService;
+
+    @Value("${ton-kho.giu-cho-batch-size:200}")
+    private int batchSize;
+
+    @Scheduled(fixedDelayString = "${ton-kho.giu-cho-quet-ms:60000}")
+    public void giaiPhongGiuChoHetHan() {
+        int soLuong;
+        do {
+            soLuong = tonKhoService.giaiPhongGiuChoHetHan(batchSize);
+        } while (soLuong == batchSize);
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.petlorshop.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Lưu kết quả của các request có header Idempotency-Key (trong bộ nhớ, có TTL).
+ * - Request đầu tiên với một key sẽ thực thi và lưu lại kết quả (ID bản ghi được tạo).
+ * - Các request trùng key đến trong lúc request đầu đang chạy sẽ chờ kết quả đó thay vì chạy lại.
+ * - Nếu lần thực thi đầu bị lỗi, key được giải phóng để client có thể gửi lại.
+ * - Mỗi key lưu kèm SHA-256 của body request; dùng lại key với body khác thì ném KhoaDaDungException
+ *   thay vì trả về kết quả cũ.
+ */
+@Service
+public class IdempotencyService {
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final Map<String, Entry> store = new ConcurrentHashMap<>();
+
+    private final long ttlMillis;
+    private final long waitTimeoutMillis;
+    private volatile long lastCleanup = System.currentTimeMillis();
+
+    public IdempotencyService(@Value("${idempotency.ttl-minutes:1440}") long ttlMinutes,
+                              @Value("${idempotency.wait-timeout-seconds:60}") long waitTimeoutSeconds) {
+        this.ttlMillis = TimeUnit.MINUTES.toMillis(ttlMinutes);
+        this.waitTimeoutMillis = TimeUnit.SECONDS.toMillis(waitTimeoutSeconds);
+    }
+
+    public Integer execute(String scope, String key, Object requestBody, Supplier<Integer> action) {
+        cleanupIfNeeded();
+
+        String storeKey = scope + ":" + key;
+        long now = System.currentTimeMillis();
+        Entry mine = new Entry(now + ttlMillis, fingerprint(requestBody));
+
+        Entry existing = store.compute(storeKey, (k, current) ->
+                current == null || current.isExpired(now) ? mine : current);
+
+        if (existing != mine) {
+            if (!existing.fingerprint.equals(mine.fingerprint)) {
+                throw new KhoaDaDungException("Idempotency-Key này đã được dùng cho một yêu cầu khác.");
+            }
+            return await(existing);
+        }
+
+        try {
+            Integer result = action.get();
+            mine.result.complete(result);
+            return result;
+        } catch (RuntimeException e) {
+            store.remove(storeKey, mine);
+            mine.result.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private Integer await(Entry entry) {
+        try {
+            return entry.result.get(waitTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new RuntimeException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new RuntimeException("Yêu cầu với Idempotency-Key này đang được xử lý, vui lòng thử lại sau.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Yêu cầu bị gián đoạn.");
+        }
+    }
+
+    // SHA-256 của body request (serialize lại bằng ObjectMapper, thứ tự trường cố định theo DTO)
+    private String fingerprint(Object requestBody) {
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(requestBody);
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(json));
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Không thể băm body request.", e);
+        }
+    }
+
+    // Dọn các key đã hết hạn, tối đa mỗi phút một lần
+    private void cleanupIfNeeded() {
+        long now = System.currentTimeMillis();
+        if (now - lastCleanup < TimeUnit.MINUTES.toMillis(1)) {
+            return;
+        }
+        lastCleanup = now;
+        store.entrySet().removeIf(e -> e.getValue().isExpired(now) && e.getValue().result.isDone());
+    }
+
+    // Idempotency-Key đã được dùng với body khác (controller trả về 422)
+    public static class KhoaDaDungException extends RuntimeException {
+        public KhoaDaDungException(String message) {
+            super(message);
+        }
+    }
+
+    private static class Entry {
+        private final long expiresAt;
+        private final String fingerprint;
+        private final CompletableFuture<Integer> result = new CompletableFuture<>();
+
+        private Entry(long expiresAt, String fingerprint) {
+            this.expiresAt = expiresAt;
+            this.fingerprint = fingerprint;
+        }
+
+        private boolean isExpired(long now) {
+            return now > expiresAt;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.petlorshop.services;
+
+import com.example.petlorshop.dto.CursorPageResponse;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Phân trang keyset (seek) theo khóa ổn định (thời gian, id) giảm dần.
+ * Trang tiếp theo được lấy bằng điều kiện WHERE (thời gian, id) < cursor thay vì OFFSET,
+ * nên chi phí không tăng theo độ sâu trang. Cursor trả về client là chuỗi Base64 mờ (opaque).
+ * Cột thời gian được phép null: MySQL xếp NULL cuối cùng khi sắp giảm dần, nên các dòng không có thời gian
+ * nằm sau tất cả dòng có thời gian (theo id giảm dần) và điều kiện seek đi theo đúng thứ tự đó.
+ */
+public class KeysetPagination<T> {
+
+    public static final int MAX_PAGE_SIZE = 100;
+
+    // Giá trị thời gian trong cursor khi dòng cuối trang có cột thời gian null
+    private static final String KHONG_CO_THOI_GIAN = "-";
+
+    private final String timeField;
+    private final String idField;
+    private final Function<T, LocalDateTime> timeOf;
+    private final Function<T, Integer> idOf;
+
+    public KeysetPagination(String timeField, String idField, Function<T, LocalDateTime> timeOf, Function<T, Integer> idOf) {
+        this.timeField = timeField;
+        this.idField = idField;
+        this.timeOf = timeOf;
+        this.idOf = idOf;
+    }
+
+    /**
+     * Lấy một trang sau cursor "after" (null/rỗng = trang đầu).
+     * Đọc thêm một dòng để biết còn trang sau hay không; chỉ chạy COUNT khi withCount = true.
+     */
+    public CursorPageResponse<T> fetch(JpaSpecificationExecutor<T> repository, Specification<T> filter,
+                                       String after, int size, boolean withCount) {
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        Specification<T> baseFilter = filter != null ? filter : (root, query, cb) -> null;
+        Specification<T> spec = baseFilter.and(afterCursor(after));
+        Sort sort = Sort.by(Sort.Direction.DESC, timeField, idField);
+
+        List<T> rows = repository.findBy(spec, q -> q.sortBy(sort).limit(pageSize + 1).all());
+
+        boolean hasNext = rows.size() > pageSize;
+        List<T> content = hasNext ? rows.subList(0, pageSize) : rows;
+        String nextCursor = null;
+        if (hasNext) {
+            T last = content.get(content.size() - 1);
+            nextCursor = encode(timeOf.apply(last), idOf.apply(last));
+        }
+        Long total = withCount ? repository.count(baseFilter) : null;
+        return new CursorPageResponse<>(content, nextCursor, hasNext, total);
+    }
+
+    private Specification<T> afterCursor(String after) {
+        if (after == null || after.isBlank()) {
+            return (root, query, cb) -> null;
+        }
+        String[] parts = decode(after);
+        LocalDateTime time = KHONG_CO_THOI_GIAN.equals(parts[0]) ? null : LocalDateTime.parse(parts[0]);
+        Integer id = Integer.valueOf(parts[1]);
+        if (time == null) {
+            // Đang ở phần các dòng không có thời gian: chỉ còn các dòng null có id nhỏ hơn
+            return (root, query, cb) -> cb.and(
+                    cb.isNull(root.get(timeField)),
+                    cb.lessThan(root.<Integer>get(idField), id)
+            );
+        }
+        return (root, query, cb) -> cb.or(
+                cb.lessThan(root.<LocalDateTime>get(timeField), time),
+                cb.and(cb.equal(root.get(timeField), time), cb.lessThan(root.<Integer>get(idField), id)),
+                cb.isNull(root.get(timeField))
+        );
+    }
+
+    private static String encode(LocalDateTime time, Integer id) {
+        String raw = (time != null ? time.toString() : KHONG_CO_THOI_GIAN) + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String[] decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException();
+            }
+            if (!KHONG_CO_THOI_GIAN.equals(parts[0])) {
+                LocalDateTime.parse(parts[0]);
+            }
+            Integer.valueOf(parts[1]);
+            return parts;
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new RuntimeException("Cursor phân trang không hợp lệ.");
+        }
+    }
+}
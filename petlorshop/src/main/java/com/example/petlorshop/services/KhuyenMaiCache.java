@@ -0,0 +1,79 @@
+package com.example.petlorshop.services;
+
+import com.example.petlorshop.models.KhuyenMai;
+import com.example.petlorshop.repositories.KhuyenMaiRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache trong bộ nhớ các mã khuyến mãi chưa hết hạn, khóa theo mã đã chuẩn hóa (trim + in hoa).
+ * Dùng cho việc kiểm tra mã và tính tiền giảm (API kiểm tra mã được gọi liên tục khi khách gõ),
+ * số lượt còn lại trong cache chỉ để hiển thị - việc trừ lượt vẫn do câu UPDATE có điều kiện trong DB quyết định.
+ * - Tạo/sửa/xóa mã: xóa toàn bộ cache, lần đọc sau sẽ nạp lại.
+ * - Dùng mã thành công: sau khi transaction commit, lần đọc kế tiếp của mã đó sẽ đọc lại từ DB.
+ * - Ngoài ra cache tự nạp lại sau khuyen-mai.cache-ttl-seconds.
+ */
+@Component
+public class KhuyenMaiCache {
+
+    @Autowired
+    private KhuyenMaiRepository khuyenMaiRepository;
+
+    // Bản chụp bất biến, thay cả map khi nạp lại (copy-on-write)
+    private final BanChupCache<Map<String, KhuyenMai>> khuyenMaiTheoMa;
+    private final Set<String> staleCodes = ConcurrentHashMap.newKeySet();
+
+    public KhuyenMaiCache(@Value("${khuyen-mai.cache-ttl-seconds:300}") long ttlSeconds) {
+        this.khuyenMaiTheoMa = new BanChupCache<>(this::loadAll, ttlSeconds);
+    }
+
+    public Optional<KhuyenMai> findByMaCode(String maCode) {
+        if (maCode == null) {
+            return Optional.empty();
+        }
+        String key = normalize(maCode);
+        Map<String, KhuyenMai> current = staleCodes.remove(key)
+                ? khuyenMaiTheoMa.update(map -> refresh(map, key))
+                : khuyenMaiTheoMa.get();
+        return Optional.ofNullable(current.get(key));
+    }
+
+    // Xóa toàn bộ cache sau khi transaction hiện tại commit (tạo/sửa/xóa mã)
+    public void invalidateAfterCommit() {
+        khuyenMaiTheoMa.invalidateAfterCommit();
+    }
+
+    // Đánh dấu một mã cần đọc lại từ DB sau khi transaction hiện tại commit (số lượt còn lại đã đổi)
+    public void refreshAfterCommit(String maCode) {
+        BanChupCache.afterCommit(() -> staleCodes.add(normalize(maCode)));
+    }
+
+    public static String normalize(String maCode) {
+        return maCode.trim().toUpperCase(Locale.ROOT);
+    }
+
+    private Map<String, KhuyenMai> refresh(Map<String, KhuyenMai> current, String key) {
+        Map<String, KhuyenMai> updated = new HashMap<>(current);
+        khuyenMaiRepository.findByMaCode(key).ifPresentOrElse(
+                km -> updated.put(key, km),
+                () -> updated.remove(key));
+        return Map.copyOf(updated);
+    }
+
+    private Map<String, KhuyenMai> loadAll() {
+        Map<String, KhuyenMai> loaded = new HashMap<>();
+        for (KhuyenMai km : khuyenMaiRepository.findByNgayKetThucAfter(LocalDateTime.now())) {
+            loaded.put(normalize(km.getMaCode()), km);
+        }
+        return Map.copyOf(loaded);
+    }
+}
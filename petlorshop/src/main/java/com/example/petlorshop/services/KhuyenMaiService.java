@@ -2,19 +2,16 @@ package com.example.petlorshop.services;
 
 import com.example.petlorshop.models.KhuyenMai;
 import com.example.petlorshop.repositories.KhuyenMaiRepository;
+import com.example.petlorshop.repositories.SearchSpecifications;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.util.StringUtils;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
-import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 @Service
 public class KhuyenMaiService {
@@ -22,28 +19,12 @@ public class KhuyenMaiService {
     @Autowired
     private KhuyenMaiRepository khuyenMaiRepository;
 
+    @Autowired
+    private KhuyenMaiCache khuyenMaiCache;
+
     @Transactional(readOnly = true)
     public Page<KhuyenMai> getAllKhuyenMai(Pageable pageable, String keyword) {
-        if (StringUtils.hasText(keyword)) {
-            List<KhuyenMai> allMatches = khuyenMaiRepository.searchByKeyword(keyword);
-            
-            String lowerKeyword = keyword.toLowerCase();
-            List<KhuyenMai> filteredList = allMatches.stream()
-                    .filter(km -> (km.getMaCode() != null && km.getMaCode().toLowerCase().contains(lowerKeyword)) ||
-                                  (km.getMoTa() != null && km.getMoTa().toLowerCase().contains(lowerKeyword)))
-                    .collect(Collectors.toList());
-
-            int start = (int) pageable.getOffset();
-            int end = Math.min((start + pageable.getPageSize()), filteredList.size());
-            
-            if (start > filteredList.size()) {
-                return new PageImpl<>(List.of(), pageable, filteredList.size());
-            }
-            
-            List<KhuyenMai> pageContent = filteredList.subList(start, end);
-            return new PageImpl<>(pageContent, pageable, filteredList.size());
-        }
-        return khuyenMaiRepository.findAll(pageable);
+        return khuyenMaiRepository.findAll(SearchSpecifications.keyword(keyword, "maCode", "moTa"), pageable);
     }
 
     @Transactional(readOnly = true)
@@ -58,11 +39,13 @@ public class KhuyenMaiService {
 
     @Transactional
     public KhuyenMai createKhuyenMai(KhuyenMai khuyenMai) {
+        khuyenMaiCache.invalidateAfterCommit();
         return khuyenMaiRepository.save(khuyenMai);
     }
 
     @Transactional
     public Optional<KhuyenMai> updateKhuyenMai(Integer id, KhuyenMai khuyenMaiDetails) {
+        khuyenMaiCache.invalidateAfterCommit();
         return khuyenMaiRepository.findById(id).map(khuyenMai -> {
             khuyenMai.setMaCode(khuyenMaiDetails.getMaCode());
             khuyenMai.setMoTa(khuyenMaiDetails.getMoTa());
@@ -81,6 +64,7 @@ public class KhuyenMaiService {
     public boolean deleteKhuyenMai(Integer id) {
         if (khuyenMaiRepository.existsById(id)) {
             khuyenMaiRepository.deleteById(id);
+            khuyenMaiCache.invalidateAfterCommit();
             return true;
         }
         return false;
@@ -88,29 +72,53 @@ public class KhuyenMaiService {
 
     // --- CÁC CHỨC NĂNG NGHIỆP VỤ BỔ SUNG ---
 
-    @Transactional(readOnly = true)
+    // Kiểm tra mã trên cache (không truy vấn DB), trả về "Hợp lệ" hoặc thông báo lỗi
     public String kiemTraKhuyenMai(String maCode, BigDecimal giaTriDonHang) {
-        Optional<KhuyenMai> khuyenMaiOpt = khuyenMaiRepository.findByMaCode(maCode);
+        return khuyenMaiCache.findByMaCode(maCode)
+                .map(km -> kiemTraKhuyenMai(km, giaTriDonHang))
+                .orElse("Mã khuyến mãi không tồn tại.");
+    }
 
-        if (khuyenMaiOpt.isEmpty()) {
-            return "Mã khuyến mãi không tồn tại.";
+    public BigDecimal tinhTienGiam(String maCode, BigDecimal giaTriDonHang) {
+        Optional<KhuyenMai> khuyenMaiOpt = khuyenMaiCache.findByMaCode(maCode);
+        if (khuyenMaiOpt.isEmpty() || !"Hợp lệ".equals(kiemTraKhuyenMai(khuyenMaiOpt.get(), giaTriDonHang))) {
+            return BigDecimal.ZERO;
         }
 
         KhuyenMai km = khuyenMaiOpt.get();
+        BigDecimal soTienGiam = BigDecimal.ZERO;
 
+        if (km.getLoaiGiamGia() == KhuyenMai.LoaiGiamGia.SO_TIEN) {
+            soTienGiam = km.getGiaTriGiam();
+        } else if (km.getLoaiGiamGia() == KhuyenMai.LoaiGiamGia.PHAN_TRAM) {
+            soTienGiam = giaTriDonHang.multiply(km.getGiaTriGiam())
+                    .divide(BigDecimal.valueOf(100));
+        }
+
+        if (soTienGiam.compareTo(giaTriDonHang) > 0) {
+            soTienGiam = giaTriDonHang;
+        }
+
+        return soTienGiam;
+    }
+
+    // Lấy mã khuyến mãi hợp lệ cho đơn hàng (từ cache), không hợp lệ thì ném lỗi kèm lý do
+    public KhuyenMai layKhuyenMaiHopLe(String maCode, BigDecimal giaTriDonHang) {
+        KhuyenMai km = khuyenMaiCache.findByMaCode(maCode)
+                .orElseThrow(() -> new RuntimeException("Mã khuyến mãi không tồn tại."));
+        String ketQuaKiemTra = kiemTraKhuyenMai(km, giaTriDonHang);
+        if (!"Hợp lệ".equals(ketQuaKiemTra)) {
+            throw new RuntimeException(ketQuaKiemTra);
+        }
+        return km;
+    }
+
+    private String kiemTraKhuyenMai(KhuyenMai km, BigDecimal giaTriDonHang) {
         if (!km.getTrangThai()) {
             return "Mã khuyến mãi đang bị khóa.";
         }
 
         LocalDateTime now = LocalDateTime.now();
-        
-        // --- DEBUG LOG ---
-        System.out.println("DEBUG CHECK KHUYEN MAI:");
-        System.out.println("Ma Code: " + maCode);
-        System.out.println("Current Time (Server): " + now);
-        System.out.println("Start Time: " + km.getNgayBatDau());
-        System.out.println("End Time: " + km.getNgayKetThuc());
-        // -----------------
 
         if (now.isBefore(km.getNgayBatDau())) {
             return "Mã khuyến mãi chưa đến thời gian áp dụng.";
@@ -131,39 +139,17 @@ public class KhuyenMaiService {
         return "Hợp lệ";
     }
 
-    @Transactional(readOnly = true)
-    public BigDecimal tinhTienGiam(String maCode, BigDecimal giaTriDonHang) {
-        String ketQuaKiemTra = kiemTraKhuyenMai(maCode, giaTriDonHang);
-        if (!"Hợp lệ".equals(ketQuaKiemTra)) {
-            return BigDecimal.ZERO;
-        }
-
-        KhuyenMai km = khuyenMaiRepository.findByMaCode(maCode).get();
-        BigDecimal soTienGiam = BigDecimal.ZERO;
-
-        if (km.getLoaiGiamGia() == KhuyenMai.LoaiGiamGia.SO_TIEN) {
-            soTienGiam = km.getGiaTriGiam();
-        } else if (km.getLoaiGiamGia() == KhuyenMai.LoaiGiamGia.PHAN_TRAM) {
-            soTienGiam = giaTriDonHang.multiply(km.getGiaTriGiam())
-                    .divide(BigDecimal.valueOf(100));
-        }
-
-        if (soTienGiam.compareTo(giaTriDonHang) > 0) {
-            soTienGiam = giaTriDonHang;
-        }
-
-        return soTienGiam;
-    }
-
+    /**
+     * Dùng một lượt của mã khuyến mãi bằng câu UPDATE có điều kiện (soLuongGioiHan > 0),
+     * nên các đơn đặt song song không thể dùng quá số lượt giới hạn.
+     * Trả về false nếu mã đã hết lượt (hoặc không tồn tại); mã không giới hạn số lượt luôn thành công.
+     */
     @Transactional
-    public void suDungMaKhuyenMai(String maCode) {
-        Optional<KhuyenMai> khuyenMaiOpt = khuyenMaiRepository.findByMaCode(maCode);
-        if (khuyenMaiOpt.isPresent()) {
-            KhuyenMai km = khuyenMaiOpt.get();
-            if (km.getSoLuongGioiHan() != null && km.getSoLuongGioiHan() > 0) {
-                km.setSoLuongGioiHan(km.getSoLuongGioiHan() - 1);
-                khuyenMaiRepository.save(km);
-            }
+    public boolean suDungMaKhuyenMai(String maCode) {
+        if (khuyenMaiRepository.truLuotSuDungNeuCon(maCode) > 0) {
+            khuyenMaiCache.refreshAfterCommit(maCode);
+            return true;
         }
+        return khuyenMaiRepository.existsByMaCodeAndSoLuongGioiHanIsNull(maCode);
     }
 }
@@ -1,14 +1,18 @@
 package com.example.petlorshop.services;
 
 import com.example.petlorshop.dto.CompleteAppointmentRequest;
+import com.example.petlorshop.dto.CursorPageResponse;
 import com.example.petlorshop.dto.GuestAppointmentRequest;
+import com.example.petlorshop.dto.KhungGioResponse;
 import com.example.petlorshop.dto.LichHenRequest;
 import com.example.petlorshop.dto.LichHenResponse;
 import com.example.petlorshop.dto.LichHenUpdateRequest;
 import com.example.petlorshop.models.*;
 import com.example.petlorshop.repositories.*;
+import jakarta.annotation.PostConstruct;
 import jakarta.transaction.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -20,7 +24,9 @@ import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 @Service
@@ -35,15 +41,48 @@ public class LichHenService {
     @Autowired private DonThuocRepository donThuocRepository;
     @Autowired private SanPhamRepository sanPhamRepository;
     @Autowired private PasswordEncoder passwordEncoder;
+    @Autowired private LichNhanVienIndex lichNhanVienIndex;
+    @Autowired private DichVuCache dichVuCache;
+    @Autowired private NhanVienCache nhanVienCache;
+
+    @Autowired private Map<String, ChienLuocPhanCong> chienLuocPhanCongTheoTen;
+
+    @Value("${lich-hen.buoc-khung-gio-phut:30}")
+    private int buocKhungGioPhut;
+
+    @Value("${lich-hen.chien-luoc-phan-cong:it-phut-nhat}")
+    private String tenChienLuocPhanCong;
+
+    @Value("${lich-hen.tu-phan-cong.so-lan-thu:20}")
+    private int soLanThuKhoa;
+
+    @Value("${lich-hen.tu-phan-cong.cho-khoa-ms:10}")
+    private long choKhoaMs;
 
     private static final LocalTime OPENING_TIME = LocalTime.of(8, 0);
     private static final LocalTime CLOSING_TIME = LocalTime.of(18, 0);
 
-    public Page<LichHenResponse> getAllLichHen(Pageable pageable, String keyword) {
-        if (StringUtils.hasText(keyword)) {
-            return lichHenRepository.searchByKeyword(keyword, pageable).map(this::convertToResponse);
+    private static final KeysetPagination<LichHen> KEYSET =
+            new KeysetPagination<>("thoiGianBatDau", "lichHenId", LichHen::getThoiGianBatDau, LichHen::getLichHenId);
+
+    // Cấu hình sai thì dừng ngay khi khởi động thay vì lỗi lúc đặt lịch (bước khung giờ <= 0 làm vòng tìm giờ trống không dừng)
+    @PostConstruct
+    public void kiemTraCauHinh() {
+        if (buocKhungGioPhut <= 0) {
+            throw new IllegalStateException("lich-hen.buoc-khung-gio-phut phải lớn hơn 0: " + buocKhungGioPhut);
         }
-        return lichHenRepository.findAll(pageable).map(this::convertToResponse);
+        chienLuocPhanCong();
+    }
+
+    public Page<LichHenResponse> getAllLichHen(Pageable pageable, String keyword) {
+        return lichHenRepository.findAll(SearchSpecifications.keyword(keyword, "ghiChu"), pageable)
+                .map(this::convertToResponse);
+    }
+
+    // Phân trang theo cursor (thoiGianBatDau, lichHenId) - không dùng OFFSET
+    public CursorPageResponse<LichHenResponse> getAllLichHenKeyset(String after, int size, String keyword, boolean withCount) {
+        return KEYSET.fetch(lichHenRepository, SearchSpecifications.keyword(keyword, "ghiChu"), after, size, withCount)
+                .map(this::convertToResponse);
     }
 
     public Optional<LichHenResponse> getLichHenById(Integer id) {
@@ -111,17 +150,18 @@ public class LichHenService {
 
         NguoiDung nguoiDung = findOrCreateUser(request);
         ThuCung thuCung = findOrCreatePet(request, nguoiDung);
-        DichVu dichVu = dichVuRepository.findById(request.getDichVuId())
-                .orElseThrow(() -> new RuntimeException("Không tìm thấy dịch vụ với ID: " + request.getDichVuId()));
+        // Thời lượng và vai trò lấy từ cache danh mục dịch vụ, dịch vụ chỉ cần tham chiếu để gán khóa ngoại
+        DichVuCache.DichVuInfo dichVuInfo = dichVuCache.getById(request.getDichVuId());
+        DichVu dichVu = dichVuRepository.getReferenceById(dichVuInfo.dichVuId());
 
-        int thoiLuongPhut = dichVu.getThoiLuongUocTinh() != null ? dichVu.getThoiLuongUocTinh() : 60;
+        int thoiLuongPhut = dichVuInfo.thoiLuongPhut();
         LocalDateTime thoiGianKetThuc = request.getThoiGianBatDau().plusMinutes(thoiLuongPhut);
         
         if (thoiGianKetThuc.toLocalTime().isAfter(CLOSING_TIME)) {
             throw new RuntimeException("Dịch vụ dự kiến kết thúc lúc " + thoiGianKetThuc.toLocalTime() + ", vượt quá giờ đóng cửa (" + CLOSING_TIME + "). Vui lòng chọn giờ sớm hơn.");
         }
 
-        NhanVien assignedNhanVien = findAvailableStaff(request, dichVu, request.getThoiGianBatDau(), thoiGianKetThuc);
+        NhanVien assignedNhanVien = findAvailableStaff(request, dichVuInfo.vaiTro(), request.getThoiGianBatDau(), thoiGianKetThuc);
 
         LichHen lichHen = new LichHen();
         lichHen.setThoiGianBatDau(request.getThoiGianBatDau());
@@ -143,6 +183,7 @@ public class LichHenService {
         lichHen.setLoaiLichHen(request.getLoaiLichHen() != null ? request.getLoaiLichHen() : LichHen.LoaiLichHen.THUONG_LE);
 
         LichHen savedLichHen = lichHenRepository.save(lichHen);
+        lichNhanVienIndex.capNhatSauCommit(savedLichHen);
         return convertToResponse(savedLichHen);
     }
 
@@ -152,17 +193,18 @@ public class LichHenService {
 
         NguoiDung nguoiDung = findOrCreateUser(request);
         ThuCung thuCung = findOrCreatePet(request, nguoiDung);
-        DichVu dichVu = dichVuRepository.findById(request.getDichVuId())
-                .orElseThrow(() -> new RuntimeException("Không tìm thấy dịch vụ với ID: " + request.getDichVuId()));
+        // Thời lượng và vai trò lấy từ cache danh mục dịch vụ, dịch vụ chỉ cần tham chiếu để gán khóa ngoại
+        DichVuCache.DichVuInfo dichVuInfo = dichVuCache.getById(request.getDichVuId());
+        DichVu dichVu = dichVuRepository.getReferenceById(dichVuInfo.dichVuId());
 
-        int thoiLuongPhut = dichVu.getThoiLuongUocTinh() != null ? dichVu.getThoiLuongUocTinh() : 60;
+        int thoiLuongPhut = dichVuInfo.thoiLuongPhut();
         LocalDateTime thoiGianKetThuc = request.getThoiGianBatDau().plusMinutes(thoiLuongPhut);
         
         if (thoiGianKetThuc.toLocalTime().isAfter(CLOSING_TIME)) {
             throw new RuntimeException("Dịch vụ dự kiến kết thúc lúc " + thoiGianKetThuc.toLocalTime() + ", vượt quá giờ đóng cửa (" + CLOSING_TIME + ").");
         }
 
-        NhanVien assignedNhanVien = findAvailableStaff(request, dichVu, request.getThoiGianBatDau(), thoiGianKetThuc);
+        NhanVien assignedNhanVien = findAvailableStaff(request, dichVuInfo.vaiTro(), request.getThoiGianBatDau(), thoiGianKetThuc);
 
         LichHen lichHen = new LichHen();
         lichHen.setThoiGianBatDau(request.getThoiGianBatDau());
@@ -184,6 +226,7 @@ public class LichHenService {
         lichHen.setLoaiLichHen(request.getLoaiLichHen() != null ? request.getLoaiLichHen() : LichHen.LoaiLichHen.THUONG_LE);
 
         LichHen savedLichHen = lichHenRepository.save(lichHen);
+        lichNhanVienIndex.capNhatSauCommit(savedLichHen);
         return convertToResponse(savedLichHen);
     }
     
@@ -191,10 +234,11 @@ public class LichHenService {
     public LichHenResponse createGuestAppointment(GuestAppointmentRequest request) {
         validateBusinessHours(request.getThoiGianBatDau());
 
-        DichVu dichVu = dichVuRepository.findById(request.getDichVuId())
-                .orElseThrow(() -> new RuntimeException("Không tìm thấy dịch vụ với ID: " + request.getDichVuId()));
+        // Thời lượng và vai trò lấy từ cache danh mục dịch vụ, dịch vụ chỉ cần tham chiếu để gán khóa ngoại
+        DichVuCache.DichVuInfo dichVuInfo = dichVuCache.getById(request.getDichVuId());
+        DichVu dichVu = dichVuRepository.getReferenceById(dichVuInfo.dichVuId());
 
-        int thoiLuongPhut = dichVu.getThoiLuongUocTinh() != null ? dichVu.getThoiLuongUocTinh() : 60;
+        int thoiLuongPhut = dichVuInfo.thoiLuongPhut();
         LocalDateTime thoiGianKetThuc = request.getThoiGianBatDau().plusMinutes(thoiLuongPhut);
         
         if (thoiGianKetThuc.toLocalTime().isAfter(CLOSING_TIME)) {
@@ -205,7 +249,7 @@ public class LichHenService {
         // Tạo tạm LichHenRequest để dùng lại hàm findAvailableStaff
         LichHenRequest tempRequest = new LichHenRequest();
         tempRequest.setNhanVienId(request.getNhanVienId());
-        NhanVien assignedNhanVien = findAvailableStaff(tempRequest, dichVu, request.getThoiGianBatDau(), thoiGianKetThuc);
+        NhanVien assignedNhanVien = findAvailableStaff(tempRequest, dichVuInfo.vaiTro(), request.getThoiGianBatDau(), thoiGianKetThuc);
 
         LichHen lichHen = new LichHen();
         lichHen.setThoiGianBatDau(request.getThoiGianBatDau());
@@ -234,9 +278,48 @@ public class LichHenService {
         lichHen.setLoaiLichHen(request.getLoaiLichHen() != null ? request.getLoaiLichHen() : LichHen.LoaiLichHen.THUONG_LE);
 
         LichHen savedLichHen = lichHenRepository.save(lichHen);
+        lichNhanVienIndex.capNhatSauCommit(savedLichHen);
         return convertToResponse(savedLichHen);
     }
 
+    /**
+     * Các giờ bắt đầu còn đặt được của một dịch vụ trong ngày (từ OPENING_TIME, cách nhau lich-hen.buoc-khung-gio-phut,
+     * kết thúc không quá CLOSING_TIME, bỏ các giờ đã qua), kèm nhân viên đúng vai trò còn rảnh.
+     * Lịch bận lấy từ chỉ mục trong bộ nhớ (hoặc một truy vấn theo khoảng), không truy vấn theo từng khung giờ.
+     */
+    public List<KhungGioResponse> getKhungGioTrong(Integer dichVuId, LocalDate ngay) {
+        DichVuCache.DichVuInfo dichVuInfo = dichVuCache.getById(dichVuId);
+        int thoiLuongPhut = dichVuInfo.thoiLuongPhut();
+        List<NhanVienCache.NhanVienInfo> ungVien = nhanVienCache.theoVaiTro(dichVuInfo.vaiTro());
+
+        LocalDateTime moCua = ngay.atTime(OPENING_TIME);
+        LocalDateTime dongCua = ngay.atTime(CLOSING_TIME);
+        LocalDateTime now = LocalDateTime.now();
+        List<KhungGioResponse> ketQua = new ArrayList<>();
+        if (ungVien.isEmpty() || !dongCua.isAfter(now)) {
+            return ketQua;
+        }
+
+        LocalDateTime tu = moCua.isBefore(now) ? now : moCua;
+        LichNhanVienIndex.KiemTraRanh kiemTra = lichNhanVienIndex.kiemTraTrongKhoang(tu, dongCua);
+        for (LocalDateTime start = moCua; !start.plusMinutes(thoiLuongPhut).isAfter(dongCua); start = start.plusMinutes(buocKhungGioPhut)) {
+            if (start.isBefore(now)) {
+                continue;
+            }
+            LocalDateTime end = start.plusMinutes(thoiLuongPhut);
+            List<KhungGioResponse.NhanVienRanh> ranh = new ArrayList<>();
+            for (NhanVienCache.NhanVienInfo nhanVien : ungVien) {
+                if (kiemTra.ranh(nhanVien.nhanVienId(), start, end)) {
+                    ranh.add(new KhungGioResponse.NhanVienRanh(nhanVien.nhanVienId(), nhanVien.hoTen(), nhanVien.anhDaiDien()));
+                }
+            }
+            if (!ranh.isEmpty()) {
+                ketQua.add(new KhungGioResponse(start, end, ranh));
+            }
+        }
+        return ketQua;
+    }
+
     private void validateBusinessHours(LocalDateTime startTime) {
         LocalTime time = startTime.toLocalTime();
         if (time.isBefore(OPENING_TIME) || time.isAfter(CLOSING_TIME)) {
@@ -292,46 +375,83 @@ public class LichHenService {
         return null;
     }
 
-    private NhanVien findAvailableStaff(LichHenRequest request, DichVu dichVu, LocalDateTime start, LocalDateTime end) {
+    private NhanVien findAvailableStaff(LichHenRequest request, Role requiredRole, LocalDateTime start, LocalDateTime end) {
         if (request.getNhanVienId() != null) {
             NhanVien nhanVien = nhanVienRepository.findById(request.getNhanVienId())
                     .orElseThrow(() -> new RuntimeException("Không tìm thấy nhân viên với ID: " + request.getNhanVienId()));
-            if (!isTimeSlotAvailable(nhanVien.getNhanVienId(), start, end)) {
+            if (!isTimeSlotAvailable(nhanVien.getNhanVienId(), start, end, null)) {
                 throw new RuntimeException("Nhân viên bạn chọn đã bận vào thời gian này.");
             }
             return nhanVien;
         } else {
-            // Xác định Role cần thiết dựa trên dịch vụ
-            Role requiredRole = determineRequiredRole(dichVu);
-            
-            List<NhanVien> potentialStaff = nhanVienRepository.findAll();
+            // Ứng viên theo vai trò của dịch vụ lấy từ cache (sắp theo ID)
+            List<NhanVienCache.NhanVienInfo> potentialStaff = nhanVienCache.theoVaiTro(requiredRole);
             if (potentialStaff.isEmpty()) throw new RuntimeException("Không có nhân viên nào trong hệ thống.");
 
-            return potentialStaff.stream()
-                .filter(staff -> staff.getNguoiDung() != null && staff.getNguoiDung().getRole() == requiredRole) // Lọc theo Role
-                .filter(staff -> isTimeSlotAvailable(staff.getNhanVienId(), start, end))
-                .findFirst()
-                .orElseThrow(() -> new RuntimeException("Không tìm thấy nhân viên phù hợp (" + getRoleDisplayName(requiredRole) + ") rảnh vào thời gian này."));
+            // Lọc ứng viên rảnh theo chỉ mục trong bộ nhớ rồi xếp thứ tự theo chiến lược phân công
+            boolean dungChiMuc = lichNhanVienIndex.coTheTraLoi(start);
+            List<Integer> ungVienRanh = potentialStaff.stream()
+                .map(NhanVienCache.NhanVienInfo::nhanVienId)
+                .filter(staffId -> !dungChiMuc || lichNhanVienIndex.ranh(staffId, start, end, null))
+                .collect(Collectors.toList());
+
+            // Đi theo thứ tự của chiến lược, khóa từng người bằng SKIP LOCKED: người đang bị yêu cầu khác khóa thì bỏ qua
+            // thay vì chờ, nên không bao giờ chờ khóa (không deadlock) và các lịch không trùng giờ không phải xếp hàng chờ nhau.
+            // Chỉ khi mọi người rảnh đều đang bị khóa mới chờ một chút rồi thử lại những người đó.
+            // Nhân viên đã được nạp bởi câu khóa nên findById không truy vấn lại
+            List<Integer> thuTu = chienLuocPhanCong().sapXep(ungVienRanh, start, end);
+            for (int lan = 1; !thuTu.isEmpty(); lan++) {
+                List<Integer> dangBiKhoa = new ArrayList<>();
+                for (Integer staffId : thuTu) {
+                    KetQuaGiuNhanVien ketQua = giuNeuRanh(staffId, start, end);
+                    if (ketQua == KetQuaGiuNhanVien.RANH) {
+                        return nhanVienRepository.findById(staffId)
+                            .orElseThrow(() -> new RuntimeException("Không tìm thấy nhân viên với ID: " + staffId));
+                    }
+                    if (ketQua == KetQuaGiuNhanVien.DANG_BI_KHOA) {
+                        dangBiKhoa.add(staffId);
+                    }
+                }
+                if (dangBiKhoa.isEmpty()) {
+                    break;
+                }
+                if (lan >= soLanThuKhoa) {
+                    throw new RuntimeException("Nhân viên rảnh vào thời gian này đang được đặt bởi yêu cầu khác. Vui lòng thử lại.");
+                }
+                try {
+                    TimeUnit.MILLISECONDS.sleep(choKhoaMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Đặt lịch bị gián đoạn.");
+                }
+                thuTu = dangBiKhoa;
+            }
+            throw new RuntimeException("Không tìm thấy nhân viên phù hợp (" + getRoleDisplayName(requiredRole) + ") rảnh vào thời gian này.");
         }
     }
-    
-    private Role determineRequiredRole(DichVu dichVu) {
-        String category = "";
-        if (dichVu.getDanhMucDichVu() != null) {
-            category = dichVu.getDanhMucDichVu().getTenDanhMucDv().toLowerCase();
+
+    // Như isTimeSlotAvailable nhưng không chờ khóa: nhân viên đang bị giao dịch khác khóa trả về DANG_BI_KHOA
+    private KetQuaGiuNhanVien giuNeuRanh(Integer nhanVienId, LocalDateTime start, LocalDateTime end) {
+        if (lichNhanVienIndex.coTheTraLoi(start) && !lichNhanVienIndex.ranh(nhanVienId, start, end, null)) {
+            return KetQuaGiuNhanVien.BAN;
         }
-        String serviceName = dichVu.getTenDichVu().toLowerCase();
-        
-        // Logic xác định Role dựa trên tên danh mục hoặc tên dịch vụ
-        if (category.contains("spa") || category.contains("làm đẹp") || category.contains("vệ sinh") || 
-            serviceName.contains("spa") || serviceName.contains("cắt tỉa") || serviceName.contains("tắm") || serviceName.contains("grooming")) {
-            return Role.SPA;
+        if (nhanVienRepository.findByIdForUpdateSkipLocked(nhanVienId).isEmpty()) {
+            return KetQuaGiuNhanVien.DANG_BI_KHOA;
         }
-        
-        // Mặc định là DOCTOR cho các dịch vụ y tế (khám, chữa bệnh, tiêm...)
-        return Role.DOCTOR;
+        return lichHenRepository.findTrungLichForUpdate(nhanVienId, start, end, null, LichNhanVienIndex.TRANG_THAI_CHIEM_LICH).isEmpty()
+                ? KetQuaGiuNhanVien.RANH : KetQuaGiuNhanVien.BAN;
     }
+
+    private enum KetQuaGiuNhanVien { RANH, BAN, DANG_BI_KHOA }
     
+    private ChienLuocPhanCong chienLuocPhanCong() {
+        ChienLuocPhanCong chienLuoc = chienLuocPhanCongTheoTen.get(tenChienLuocPhanCong);
+        if (chienLuoc == null) {
+            throw new IllegalStateException("Không có chiến lược phân công: " + tenChienLuocPhanCong);
+        }
+        return chienLuoc;
+    }
+
     private String getRoleDisplayName(Role role) {
         switch (role) {
             case DOCTOR: return "Bác sĩ";
@@ -340,8 +460,20 @@ public class LichHenService {
         }
     }
     
-    private boolean isTimeSlotAvailable(Integer nhanVienId, LocalDateTime start, LocalDateTime end) {
-        return lichHenRepository.findOverlappingAppointments(nhanVienId, start, end).isEmpty();
+    /**
+     * Chỉ mục trả lời "bận" ngay; nếu chỉ mục báo rảnh thì khóa dòng NhanVien (giữ đến khi transaction kết thúc)
+     * rồi kiểm tra lại trên DB bằng đọc có khóa. Hai yêu cầu đặt cùng nhân viên vì vậy chạy lần lượt:
+     * yêu cầu sau chỉ kiểm tra khi yêu cầu trước đã commit và sẽ thấy lịch vừa tạo. Đặt lịch cho các nhân viên
+     * khác nhau không chờ nhau. Dùng đọc có khóa vì ở REPEATABLE READ, SELECT thường đọc snapshot cũ của transaction.
+     * Phải gọi trong transaction.
+     */
+    private boolean isTimeSlotAvailable(Integer nhanVienId, LocalDateTime start, LocalDateTime end, Integer boQuaLichHenId) {
+        if (lichNhanVienIndex.coTheTraLoi(start) && !lichNhanVienIndex.ranh(nhanVienId, start, end, boQuaLichHenId)) {
+            return false;
+        }
+        nhanVienRepository.findByIdForUpdate(nhanVienId)
+                .orElseThrow(() -> new RuntimeException("Không tìm thấy nhân viên với ID: " + nhanVienId));
+        return lichHenRepository.findTrungLichForUpdate(nhanVienId, start, end, boQuaLichHenId, LichNhanVienIndex.TRANG_THAI_CHIEM_LICH).isEmpty();
     }
 
     @Transactional
@@ -352,7 +484,7 @@ public class LichHenService {
             validateBusinessHours(request.getThoiGianBatDau());
             lichHen.setThoiGianBatDau(request.getThoiGianBatDau());
             
-            int thoiLuongPhut = lichHen.getDichVu().getThoiLuongUocTinh() != null ? lichHen.getDichVu().getThoiLuongUocTinh() : 60;
+            int thoiLuongPhut = dichVuCache.getById(lichHen.getDichVu().getDichVuId()).thoiLuongPhut();
             LocalDateTime thoiGianKetThuc = request.getThoiGianBatDau().plusMinutes(thoiLuongPhut);
             
             if (thoiGianKetThuc.toLocalTime().isAfter(CLOSING_TIME)) {
@@ -382,7 +514,9 @@ public class LichHenService {
             lichHen.setTrangThai(request.getTrangThai());
         }
         
-        return lichHenRepository.save(lichHen);
+        LichHen savedLichHen = lichHenRepository.save(lichHen);
+        lichNhanVienIndex.capNhatSauCommit(savedLichHen);
+        return savedLichHen;
     }
 
     // API xác nhận lịch hẹn cho bác sĩ
@@ -435,6 +569,7 @@ public class LichHenService {
         }
         
         lichHen.setTrangThai(LichHen.TrangThai.DA_HOAN_THANH);
+        lichNhanVienIndex.capNhatSauCommit(lichHen);
         
         // Cập nhật ghi chú bác sĩ nếu có
         if (request != null && request.getGhiChuBacSi() != null) {
@@ -478,14 +613,11 @@ public class LichHenService {
                 SanPham thuoc = sanPhamRepository.findById(item.getThuocId())
                         .orElseThrow(() -> new RuntimeException("Không tìm thấy thuốc với ID: " + item.getThuocId()));
                 
-                // Kiểm tra tồn kho (Tùy chọn: có thể cho phép kê âm hoặc chặn)
-                if (thuoc.getSoLuongTonKho() < item.getSoLuong()) {
-                    throw new RuntimeException("Thuốc " + thuoc.getTenSanPham() + " không đủ số lượng tồn kho (Còn: " + thuoc.getSoLuongTonKho() + ")");
+                // Trừ tồn kho ngay lập tức (để tránh bán hết khi khách ra quầy) bằng UPDATE có điều kiện như đơn hàng,
+                // không đủ hàng thì chặn kê đơn và rollback cả lần hoàn thành lịch hẹn
+                if (sanPhamRepository.truTonKhoNeuDu(thuoc.getSanPhamId(), item.getSoLuong()) == 0) {
+                    throw new RuntimeException("Thuốc " + thuoc.getTenSanPham() + " không đủ số lượng tồn kho (Còn: " + thuoc.getSoLuongCoTheBan() + ")");
                 }
-                
-                // Trừ tồn kho ngay lập tức (để tránh bán hết khi khách ra quầy)
-                thuoc.setSoLuongTonKho(thuoc.getSoLuongTonKho() - item.getSoLuong());
-                sanPhamRepository.save(thuoc);
 
                 ChiTietDonThuoc chiTiet = new ChiTietDonThuoc();
                 chiTiet.setDonThuoc(donThuoc);
@@ -522,6 +654,7 @@ public class LichHenService {
         lichHen.setTrangThai(LichHen.TrangThai.DA_HUY);
         lichHen.setLyDoHuy(lyDoHuy);
         LichHen savedLichHen = lichHenRepository.save(lichHen);
+        lichNhanVienIndex.capNhatSauCommit(savedLichHen);
         return convertToResponse(savedLichHen);
     }
 
@@ -541,18 +674,15 @@ public class LichHenService {
         if (request.getThoiGianBatDau() != null) {
             validateBusinessHours(request.getThoiGianBatDau());
             
-            int thoiLuongPhut = lichHen.getDichVu().getThoiLuongUocTinh() != null ? lichHen.getDichVu().getThoiLuongUocTinh() : 60;
+            int thoiLuongPhut = dichVuCache.getById(lichHen.getDichVu().getDichVuId()).thoiLuongPhut();
             LocalDateTime thoiGianKetThuc = request.getThoiGianBatDau().plusMinutes(thoiLuongPhut);
             
             if (thoiGianKetThuc.toLocalTime().isAfter(CLOSING_TIME)) {
                 throw new RuntimeException("Dịch vụ dự kiến kết thúc lúc " + thoiGianKetThuc.toLocalTime() + ", vượt quá giờ đóng cửa (" + CLOSING_TIME + ").");
             }
-            // Kiểm tra lịch hẹn của nhân viên nếu trùng
-            List<LichHen> conflicts = lichHenRepository.findOverlappingAppointments(lichHen.getNhanVien().getNhanVienId(), request.getThoiGianBatDau(), thoiGianKetThuc);
-            // Loại bỏ chính lịch hẹn đang sửa khỏi danh sách conflict
-            conflicts.removeIf(lh -> lh.getLichHenId().equals(id));
-            
-            if (!conflicts.isEmpty()) {
+            // Kiểm tra lịch hẹn của nhân viên nếu trùng (bỏ qua chính lịch hẹn đang sửa)
+            if (lichHen.getNhanVien() != null
+                    && !isTimeSlotAvailable(lichHen.getNhanVien().getNhanVienId(), request.getThoiGianBatDau(), thoiGianKetThuc, id)) {
                 throw new RuntimeException("Nhân viên phụ trách đã bận vào khung giờ mới này. Vui lòng chọn giờ khác.");
             }
 
@@ -567,6 +697,7 @@ public class LichHenService {
         // Không cho phép khách hàng tự đổi trạng thái qua API này (trừ khi hủy - đã có API riêng)
         
         LichHen savedLichHen = lichHenRepository.save(lichHen);
+        lichNhanVienIndex.capNhatSauCommit(savedLichHen);
         return convertToResponse(savedLichHen);
     }
     
@@ -580,6 +711,7 @@ public class LichHenService {
 
     public void deleteLichHen(Integer id) {
         lichHenRepository.deleteById(id);
+        lichNhanVienIndex.xoaSauCommit(id);
     }
 
     private LichHenResponse convertToResponse(LichHen lichHen) {
@@ -587,6 +719,8 @@ public class LichHenService {
         ThuCung thuCung = lichHen.getThuCung();
         DichVu dichVu = lichHen.getDichVu();
         NhanVien nhanVien = lichHen.getNhanVien();
+        // Tên, giá dịch vụ lấy từ cache (lấy ID từ proxy không cần nạp DichVu)
+        DichVuCache.DichVuInfo dichVuInfo = dichVu != null ? dichVuCache.findById(dichVu.getDichVuId()).orElse(null) : null;
         
         // Logic hiển thị tên khách hàng: Ưu tiên lấy từ bảng LichHen (vì đã lưu snapshot), nếu không có thì lấy từ User
         String tenKhachHang = lichHen.getTenKhachHang();
@@ -609,7 +743,9 @@ public class LichHenService {
                 sdtKhachHang, // SĐT hiển thị
                 nguoiDung != null ? nguoiDung.getAnhDaiDien() : null, // Thêm ảnh khách hàng
                 thuCung != null ? thuCung.getThuCungId() : null, thuCung != null ? thuCung.getTenThuCung() : null, thuCung != null ? thuCung.getGiongLoai() : null, thuCung != null ? thuCung.getHinhAnh() : null, // Đã sửa thành getHinhAnh()
-                dichVu != null ? dichVu.getDichVuId() : null, dichVu != null ? dichVu.getTenDichVu() : null, dichVu != null ? dichVu.getGiaDichVu() : null,
+                dichVu != null ? dichVu.getDichVuId() : null,
+                dichVuInfo != null ? dichVuInfo.tenDichVu() : dichVu != null ? dichVu.getTenDichVu() : null,
+                dichVuInfo != null ? dichVuInfo.giaDichVu() : dichVu != null ? dichVu.getGiaDichVu() : null,
                 nhanVien != null ? nhanVien.getNhanVienId() : null, nhanVien != null ? nhanVien.getHoTen() : null,
                 nhanVien != null ? nhanVien.getAnhDaiDien() : null // Thêm ảnh nhân viên
         );
@@ -0,0 +1,242 @@
+package com.example.petlorshop.services;
+
+import com.example.petlorshop.models.LichHen;
+import com.example.petlorshop.repositories.LichHenRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Chỉ mục trong bộ nhớ các lịch hẹn từ đầu ngày hôm nay còn chiếm lịch (chờ xác nhận / đã xác nhận) của từng nhân viên,
+ * mỗi nhân viên một danh sách bất biến sắp theo giờ bắt đầu (copy-on-write, đọc không cần khóa).
+ * Kèm bộ đếm số phút đã đặt của từng nhân viên theo ngày (mọi lịch chưa hủy, kể cả đã hoàn thành) cho việc phân công.
+ * - Nạp toàn bộ khi khởi động và nạp lại định kỳ (lich-hen.chi-muc-dung-lai-ms) để bỏ các lịch đã qua
+ *   và tự sửa nếu DB bị thay đổi từ nơi khác.
+ * - Tạo/sửa/hủy/hoàn thành/xóa lịch hẹn: cập nhật chỉ mục sau khi transaction commit.
+ * Chỉ mục chỉ dùng để trả lời nhanh; khi đặt lịch, nhân viên được chọn vẫn được kiểm tra lại trên DB.
+ */
+@Component
+public class LichNhanVienIndex {
+
+    public static final List<LichHen.TrangThai> TRANG_THAI_CHIEM_LICH =
+            List.of(LichHen.TrangThai.CHO_XAC_NHAN, LichHen.TrangThai.DA_XAC_NHAN);
+    // Lịch được tính vào tải của nhân viên (mọi trạng thái trừ đã hủy)
+    private static final List<LichHen.TrangThai> TRANG_THAI_TINH_TAI =
+            List.of(LichHen.TrangThai.CHO_XAC_NHAN, LichHen.TrangThai.DA_XAC_NHAN, LichHen.TrangThai.DA_HOAN_THANH);
+
+    private static final Comparator<Khoang> THEO_GIO_BAT_DAU =
+            Comparator.comparing(Khoang::batDau).thenComparing(Khoang::lichHenId);
+
+    @Autowired
+    private LichHenRepository lichHenRepository;
+
+    private volatile Map<Integer, LichNhanVien> theoNhanVien = new ConcurrentHashMap<>();
+    private final Map<Integer, Integer> nhanVienTheoLichHen = new ConcurrentHashMap<>();
+    private final Map<Integer, Tai> taiTheoLichHen = new ConcurrentHashMap<>();
+    private final Map<TaiKey, Long> phutTheoNgay = new ConcurrentHashMap<>();
+    // Chỉ mục đầy đủ cho mọi khoảng thời gian bắt đầu từ mốc này (đầu ngày của lần nạp gần nhất)
+    private volatile LocalDateTime tuMoc;
+
+    @PostConstruct
+    public void khoiTao() {
+        dungLai();
+    }
+
+    // Đọc DB trong khóa: các cập nhật sau commit xếp hàng chờ và được áp dụng sau khi thay chỉ mục, không bị mất
+    @Scheduled(fixedDelayString = "${lich-hen.chi-muc-dung-lai-ms:600000}", initialDelayString = "${lich-hen.chi-muc-dung-lai-ms:600000}")
+    public synchronized void dungLai() {
+        LocalDateTime dauNgay = LocalDate.now().atStartOfDay();
+        Map<Integer, List<Khoang>> gom = new HashMap<>();
+        nhanVienTheoLichHen.clear();
+        taiTheoLichHen.clear();
+        phutTheoNgay.clear();
+        for (Object[] row : lichHenRepository.findKhoangChiemLich(dauNgay, TRANG_THAI_TINH_TAI)) {
+            Integer nhanVienId = (Integer) row[1];
+            Khoang khoang = new Khoang((Integer) row[0], (LocalDateTime) row[2], (LocalDateTime) row[3]);
+            if (TRANG_THAI_CHIEM_LICH.contains((LichHen.TrangThai) row[4])) {
+                gom.computeIfAbsent(nhanVienId, k -> new ArrayList<>()).add(khoang);
+                nhanVienTheoLichHen.put(khoang.lichHenId(), nhanVienId);
+            }
+            themTai(khoang.lichHenId(), Tai.cua(nhanVienId, khoang));
+        }
+
+        Map<Integer, LichNhanVien> moi = new ConcurrentHashMap<>();
+        gom.forEach((nhanVienId, khoangs) -> moi.put(nhanVienId, LichNhanVien.tu(khoangs)));
+        theoNhanVien = moi;
+        tuMoc = dauNgay;
+    }
+
+    // Khoảng [start, end) có nằm trong phạm vi chỉ mục không (lịch trong quá khứ phải hỏi DB)
+    public boolean coTheTraLoi(LocalDateTime start) {
+        LocalDateTime moc = tuMoc;
+        return moc != null && !start.isBefore(moc);
+    }
+
+    // Nhân viên không có lịch nào giao với [start, end), bỏ qua lịch hẹn boQuaLichHenId (đang được sửa)
+    public boolean ranh(Integer nhanVienId, LocalDateTime start, LocalDateTime end, Integer boQuaLichHenId) {
+        LichNhanVien lich = theoNhanVien.get(nhanVienId);
+        return lich == null || lich.ranh(start, end, boQuaLichHenId);
+    }
+
+    // Tổng số phút của các lịch chưa hủy (tính theo ngày bắt đầu) của nhân viên trong ngày, từ hôm nay trở đi
+    public long soPhutDaDat(Integer nhanVienId, LocalDate ngay) {
+        return phutTheoNgay.getOrDefault(new TaiKey(nhanVienId, ngay), 0L);
+    }
+
+    /**
+     * Bộ kiểm tra rảnh cho các khoảng nằm trong [tu, den): dùng chỉ mục nếu bao phủ được,
+     * nếu không thì nạp lịch của mọi nhân viên trong khoảng bằng một truy vấn.
+     */
+    public KiemTraRanh kiemTraTrongKhoang(LocalDateTime tu, LocalDateTime den) {
+        if (coTheTraLoi(tu)) {
+            Map<Integer, LichNhanVien> hienTai = theoNhanVien;
+            return (nhanVienId, start, end) -> {
+                LichNhanVien lich = hienTai.get(nhanVienId);
+                return lich == null || lich.ranh(start, end, null);
+            };
+        }
+        Map<Integer, List<Khoang>> gom = new HashMap<>();
+        for (Object[] row : lichHenRepository.findKhoangChiemLichGiao(tu, den, TRANG_THAI_CHIEM_LICH)) {
+            gom.computeIfAbsent((Integer) row[1], k -> new ArrayList<>())
+                    .add(new Khoang((Integer) row[0], (LocalDateTime) row[2], (LocalDateTime) row[3]));
+        }
+        Map<Integer, LichNhanVien> theoKhoang = new HashMap<>();
+        gom.forEach((nhanVienId, khoangs) -> theoKhoang.put(nhanVienId, LichNhanVien.tu(khoangs)));
+        return (nhanVienId, start, end) -> {
+            LichNhanVien lich = theoKhoang.get(nhanVienId);
+            return lich == null || lich.ranh(start, end, null);
+        };
+    }
+
+    // Ghi nhận trạng thái mới của lịch hẹn sau khi commit (giá trị được chụp ngay, trong transaction)
+    public void capNhatSauCommit(LichHen lichHen) {
+        Integer lichHenId = lichHen.getLichHenId();
+        if (lichHen.getNhanVien() == null || !TRANG_THAI_TINH_TAI.contains(lichHen.getTrangThai())) {
+            BanChupCache.afterCommit(() -> apDung(lichHenId, null, null, false));
+            return;
+        }
+        Integer nhanVienId = lichHen.getNhanVien().getNhanVienId();
+        Khoang khoang = new Khoang(lichHenId, lichHen.getThoiGianBatDau(), lichHen.getThoiGianKetThuc());
+        boolean chiemLich = TRANG_THAI_CHIEM_LICH.contains(lichHen.getTrangThai());
+        BanChupCache.afterCommit(() -> apDung(lichHenId, nhanVienId, khoang, chiemLich));
+    }
+
+    public void xoaSauCommit(Integer lichHenId) {
+        BanChupCache.afterCommit(() -> apDung(lichHenId, null, null, false));
+    }
+
+    private synchronized void apDung(Integer lichHenId, Integer nhanVienId, Khoang khoang, boolean chiemLich) {
+        Integer nhanVienCu = nhanVienTheoLichHen.remove(lichHenId);
+        if (nhanVienCu != null) {
+            theoNhanVien.computeIfPresent(nhanVienCu, (k, lich) -> lich.bo(lichHenId));
+        }
+        Tai taiCu = taiTheoLichHen.remove(lichHenId);
+        if (taiCu != null) {
+            phutTheoNgay.computeIfPresent(taiCu.key(), (k, phut) -> phut - taiCu.phut() > 0 ? phut - taiCu.phut() : null);
+        }
+        if (khoang == null) {
+            return;
+        }
+        if (chiemLich) {
+            nhanVienTheoLichHen.put(lichHenId, nhanVienId);
+            theoNhanVien.merge(nhanVienId, LichNhanVien.tu(List.of(khoang)), (lich, them) -> lich.them(khoang));
+        }
+        themTai(lichHenId, Tai.cua(nhanVienId, khoang));
+    }
+
+    private void themTai(Integer lichHenId, Tai tai) {
+        taiTheoLichHen.put(lichHenId, tai);
+        phutTheoNgay.merge(tai.key(), tai.phut(), Long::sum);
+    }
+
+    @FunctionalInterface
+    public interface KiemTraRanh {
+        boolean ranh(Integer nhanVienId, LocalDateTime start, LocalDateTime end);
+    }
+
+    record Khoang(Integer lichHenId, LocalDateTime batDau, LocalDateTime ketThuc) {
+    }
+
+    private record TaiKey(Integer nhanVienId, LocalDate ngay) {
+    }
+
+    // Phần tải (số phút) mà một lịch hẹn đóng góp vào ngày bắt đầu của nó
+    private record Tai(TaiKey key, long phut) {
+        static Tai cua(Integer nhanVienId, Khoang khoang) {
+            return new Tai(new TaiKey(nhanVienId, khoang.batDau().toLocalDate()),
+                    Duration.between(khoang.batDau(), khoang.ketThuc()).toMinutes());
+        }
+    }
+
+    /**
+     * Lịch của một nhân viên: các khoảng sắp theo giờ bắt đầu và độ dài lớn nhất,
+     * để tìm khoảng giao nhau chỉ cần quét lùi từ vị trí tìm nhị phân trong phạm vi độ dài đó.
+     */
+    record LichNhanVien(List<Khoang> khoangs, Duration daiNhat) {
+
+        static LichNhanVien tu(List<Khoang> khoangs) {
+            List<Khoang> sapXep = new ArrayList<>(khoangs);
+            sapXep.sort(THEO_GIO_BAT_DAU);
+            Duration daiNhat = Duration.ZERO;
+            for (Khoang khoang : sapXep) {
+                Duration doDai = Duration.between(khoang.batDau(), khoang.ketThuc());
+                if (doDai.compareTo(daiNhat) > 0) {
+                    daiNhat = doDai;
+                }
+            }
+            return new LichNhanVien(List.copyOf(sapXep), daiNhat);
+        }
+
+        LichNhanVien them(Khoang khoang) {
+            List<Khoang> moi = new ArrayList<>(khoangs);
+            moi.add(khoang);
+            return tu(moi);
+        }
+
+        LichNhanVien bo(Integer lichHenId) {
+            List<Khoang> moi = new ArrayList<>(khoangs);
+            moi.removeIf(k -> k.lichHenId().equals(lichHenId));
+            return moi.isEmpty() ? null : tu(moi);
+        }
+
+        boolean ranh(LocalDateTime start, LocalDateTime end, Integer boQuaLichHenId) {
+            LocalDateTime batDauSomNhat = start.minus(daiNhat);
+            for (int i = viTriDauTien(end) - 1; i >= 0; i--) {
+                Khoang khoang = khoangs.get(i);
+                if (khoang.batDau().isBefore(batDauSomNhat)) {
+                    break;
+                }
+                if (khoang.ketThuc().isAfter(start) && !khoang.lichHenId().equals(boQuaLichHenId)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // Vị trí của khoảng đầu tiên bắt đầu từ thoiDiem trở đi
+        private int viTriDauTien(LocalDateTime thoiDiem) {
+            int lo = 0;
+            int hi = khoangs.size();
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (khoangs.get(mid).batDau().isBefore(thoiDiem)) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.petlorshop.services;
 
+import com.example.petlorshop.dto.CursorPageResponse;
 import com.example.petlorshop.dto.NguoiDungResponse;
 import com.example.petlorshop.dto.NguoiDungUpdateRequest;
 import com.example.petlorshop.dto.UnifiedCreateUserRequest;
@@ -8,10 +9,10 @@ import com.example.petlorshop.models.NhanVien;
 import com.example.petlorshop.models.Role;
 import com.example.petlorshop.repositories.NguoiDungRepository;
 import com.example.petlorshop.repositories.NhanVienRepository;
+import com.example.petlorshop.repositories.SearchSpecifications;
 import jakarta.transaction.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
@@ -21,7 +22,6 @@ import org.springframework.web.multipart.MultipartFile;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 @Service
 public class NguoiDungService {
@@ -29,6 +29,9 @@ public class NguoiDungService {
     @Autowired
     private NguoiDungRepository nguoiDungRepository;
 
+    @Autowired
+    private NhanVienCache nhanVienCache;
+
     @Autowired
     private NhanVienRepository nhanVienRepository;
 
@@ -41,6 +44,9 @@ public class NguoiDungService {
     // Danh sách các Role được coi là nhân viên
     private static final List<Role> STAFF_ROLES = Arrays.asList(Role.ADMIN, Role.DOCTOR, Role.SPA, Role.STAFF, Role.RECEPTIONIST);
 
+    private static final KeysetPagination<NguoiDung> KEYSET =
+            new KeysetPagination<>("ngayTao", "userId", NguoiDung::getNgayTao, NguoiDung::getUserId);
+
     @Transactional
     public NguoiDungResponse createUnifiedUser(UnifiedCreateUserRequest request, MultipartFile anhDaiDien) {
         if (nguoiDungRepository.findByEmail(request.getEmail()).isPresent()) {
@@ -93,6 +99,7 @@ public class NguoiDungService {
             newNhanVien.setAnhDaiDien(fileName);
             newNhanVien.setNguoiDung(savedUser);
             nhanVienRepository.save(newNhanVien);
+            nhanVienCache.invalidateAfterCommit();
         }
 
         Integer nhanVienId = (savedUser.getNhanVien() != null) ? savedUser.getNhanVien().getNhanVienId() : null;
@@ -121,27 +128,12 @@ public class NguoiDungService {
     }
 
     public Page<NguoiDung> getAllNguoiDung(Pageable pageable, String keyword) {
-        if (StringUtils.hasText(keyword)) {
-            List<NguoiDung> allMatches = nguoiDungRepository.searchByKeyword(keyword);
-            
-            String lowerKeyword = keyword.toLowerCase();
-            List<NguoiDung> filteredList = allMatches.stream()
-                    .filter(u -> (u.getHoTen() != null && u.getHoTen().toLowerCase().contains(lowerKeyword)) || 
-                                 (u.getEmail() != null && u.getEmail().toLowerCase().contains(lowerKeyword)) ||
-                                 (u.getSoDienThoai() != null && u.getSoDienThoai().contains(lowerKeyword)))
-                    .collect(Collectors.toList());
-
-            int start = (int) pageable.getOffset();
-            int end = Math.min((start + pageable.getPageSize()), filteredList.size());
-            
-            if (start > filteredList.size()) {
-                return new PageImpl<>(List.of(), pageable, filteredList.size());
-            }
-            
-            List<NguoiDung> pageContent = filteredList.subList(start, end);
-            return new PageImpl<>(pageContent, pageable, filteredList.size());
-        }
-        return nguoiDungRepository.findAll(pageable);
+        return nguoiDungRepository.findAll(SearchSpecifications.keyword(keyword, "hoTen", "email", "soDienThoai"), pageable);
+    }
+
+    // Phân trang theo cursor (ngayTao, userId) - không dùng OFFSET
+    public CursorPageResponse<NguoiDung> getAllNguoiDungKeyset(String after, int size, String keyword, boolean withCount) {
+        return KEYSET.fetch(nguoiDungRepository, SearchSpecifications.keyword(keyword, "hoTen", "email", "soDienThoai"), after, size, withCount);
     }
 
     public Optional<NguoiDung> getNguoiDungById(Integer id) {
@@ -231,6 +223,7 @@ public class NguoiDungService {
             }
             
             nhanVienRepository.save(nhanVien);
+            nhanVienCache.invalidateAfterCommit();
         }
         // Nếu user chưa có bản ghi nhân viên nhưng role mới thuộc nhóm nhân viên, tạo mới
         else if (roleChanged && STAFF_ROLES.contains(savedUser.getRole())) {
@@ -242,6 +235,7 @@ public class NguoiDungService {
             newNhanVien.setAnhDaiDien(savedUser.getAnhDaiDien());
             newNhanVien.setNguoiDung(savedUser);
             nhanVienRepository.save(newNhanVien);
+            nhanVienCache.invalidateAfterCommit();
         }
 
         return savedUser;
@@ -259,6 +253,7 @@ public class NguoiDungService {
             NhanVien nhanVien = nguoiDung.getNhanVien();
             nhanVien.setAnhDaiDien(fileName);
             nhanVienRepository.save(nhanVien);
+            nhanVienCache.invalidateAfterCommit();
         }
 
         return nguoiDungRepository.save(nguoiDung);
@@ -269,5 +264,6 @@ public class NguoiDungService {
             throw new RuntimeException("NguoiDung not found with id: " + id);
         }
         nguoiDungRepository.deleteById(id);
+        nhanVienCache.invalidateAfterCommit();
     }
 }
@@ -0,0 +1,53 @@
+package com.example.petlorshop.services;
+
+import com.example.petlorshop.models.Role;
+import com.example.petlorshop.repositories.NhanVienRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Chỉ mục trong bộ nhớ nhân viên theo vai trò tài khoản (DOCTOR, SPA...), sắp theo ID,
+ * là danh sách ứng viên khi tự phân công và tìm khung giờ trống (thay cho findAll() + đọc NguoiDung từng người).
+ * - Tạo/sửa/xóa nhân viên hoặc đổi vai trò, tên, ảnh của tài khoản nhân viên: xóa cache sau khi transaction commit.
+ * - Ngoài ra cache tự nạp lại sau nhan-vien.cache-ttl-seconds.
+ */
+@Component
+public class NhanVienCache {
+
+    @Autowired
+    private NhanVienRepository nhanVienRepository;
+
+    private final BanChupCache<Map<Role, List<NhanVienInfo>>> nhanVienTheoVaiTro;
+
+    public NhanVienCache(@Value("${nhan-vien.cache-ttl-seconds:300}") long ttlSeconds) {
+        this.nhanVienTheoVaiTro = new BanChupCache<>(this::loadAll, ttlSeconds);
+    }
+
+    public List<NhanVienInfo> theoVaiTro(Role role) {
+        return nhanVienTheoVaiTro.get().getOrDefault(role, List.of());
+    }
+
+    // Xóa cache sau khi transaction hiện tại commit
+    public void invalidateAfterCommit() {
+        nhanVienTheoVaiTro.invalidateAfterCommit();
+    }
+
+    private Map<Role, List<NhanVienInfo>> loadAll() {
+        Map<Role, List<NhanVienInfo>> loaded = new EnumMap<>(Role.class);
+        for (Object[] row : nhanVienRepository.findAllVaiTro()) {
+            loaded.computeIfAbsent((Role) row[3], k -> new ArrayList<>())
+                    .add(new NhanVienInfo((Integer) row[0], (String) row[1], (String) row[2]));
+        }
+        loaded.replaceAll((role, list) -> List.copyOf(list));
+        return Map.copyOf(loaded);
+    }
+
+    public record NhanVienInfo(Integer nhanVienId, String hoTen, String anhDaiDien) {
+    }
+}
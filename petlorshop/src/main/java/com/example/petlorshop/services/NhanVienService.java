@@ -10,10 +10,10 @@ import com.example.petlorshop.models.Role;
 import com.example.petlorshop.repositories.LichHenRepository;
 import com.example.petlorshop.repositories.NguoiDungRepository;
 import com.example.petlorshop.repositories.NhanVienRepository;
+import com.example.petlorshop.repositories.SearchSpecifications;
 import jakarta.transaction.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
@@ -26,13 +26,14 @@ import java.time.LocalTime;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 @Service
 public class NhanVienService {
 
     @Autowired private NhanVienRepository nhanVienRepository;
     @Autowired private LichHenRepository lichHenRepository;
+    @Autowired private LichNhanVienIndex lichNhanVienIndex;
+    @Autowired private NhanVienCache nhanVienCache;
     @Autowired private NguoiDungRepository nguoiDungRepository;
     @Autowired private PasswordEncoder passwordEncoder;
     @Autowired private FileStorageService fileStorageService;
@@ -85,6 +86,7 @@ public class NhanVienService {
         newNhanVien.setAnhDaiDien(fileName);
         newNhanVien.setNguoiDung(savedUser);
         NhanVien savedNhanVien = nhanVienRepository.save(newNhanVien);
+        nhanVienCache.invalidateAfterCommit();
 
         return convertToResponse(savedNhanVien);
     }
@@ -183,35 +185,14 @@ public class NhanVienService {
         }
 
         NhanVien updatedNhanVien = nhanVienRepository.save(nhanVien);
+        nhanVienCache.invalidateAfterCommit();
         
         return convertToResponse(updatedNhanVien);
     }
 
     public Page<NhanVienResponse> getAllNhanVien(Pageable pageable, String keyword) {
-        if (StringUtils.hasText(keyword)) {
-            List<NhanVien> allMatches = nhanVienRepository.searchByKeyword(keyword);
-            
-            String lowerKeyword = keyword.toLowerCase();
-            List<NhanVienResponse> filteredList = allMatches.stream()
-                    .filter(nv -> (nv.getHoTen() != null && nv.getHoTen().toLowerCase().contains(lowerKeyword)) || 
-                                  (nv.getChucVu() != null && nv.getChucVu().toLowerCase().contains(lowerKeyword)) ||
-                                  (nv.getSoDienThoai() != null && nv.getSoDienThoai().contains(lowerKeyword)) ||
-                                  (nv.getEmail() != null && nv.getEmail().toLowerCase().contains(lowerKeyword)) ||
-                                  (nv.getChuyenKhoa() != null && nv.getChuyenKhoa().toLowerCase().contains(lowerKeyword)))
-                    .map(this::convertToResponse)
-                    .collect(Collectors.toList());
-
-            int start = (int) pageable.getOffset();
-            int end = Math.min((start + pageable.getPageSize()), filteredList.size());
-            
-            if (start > filteredList.size()) {
-                return new PageImpl<>(List.of(), pageable, filteredList.size());
-            }
-            
-            List<NhanVienResponse> pageContent = filteredList.subList(start, end);
-            return new PageImpl<>(pageContent, pageable, filteredList.size());
-        }
-        return nhanVienRepository.findAll(pageable).map(this::convertToResponse);
+        return nhanVienRepository.findAll(SearchSpecifications.keyword(keyword, "hoTen", "chucVu", "soDienThoai", "email", "chuyenKhoa"), pageable)
+                .map(this::convertToResponse);
     }
 
     public Optional<NhanVienResponse> getNhanVienById(Integer id) {
@@ -222,13 +203,17 @@ public class NhanVienService {
         NhanVien nhanVien = nhanVienRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Nhân viên không tồn tại với id: " + id));
         nhanVienRepository.delete(nhanVien);
+        nhanVienCache.invalidateAfterCommit();
     }
 
     public boolean isTimeSlotAvailable(Integer nhanVienId, LocalDateTime start, LocalDateTime end) {
         if (!nhanVienRepository.existsById(nhanVienId)) {
             throw new RuntimeException("Không tìm thấy nhân viên với ID: " + nhanVienId);
         }
-        return lichHenRepository.findOverlappingAppointments(nhanVienId, start, end).isEmpty();
+        if (lichNhanVienIndex.coTheTraLoi(start)) {
+            return lichNhanVienIndex.ranh(nhanVienId, start, end, null);
+        }
+        return !lichHenRepository.existsTrungLich(nhanVienId, start, end, null, LichNhanVienIndex.TRANG_THAI_CHIEM_LICH);
     }
 
     public DoctorDashboardStatsResponse getDoctorDashboardStats(Integer userId) {
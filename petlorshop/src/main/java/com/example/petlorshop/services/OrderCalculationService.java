@@ -5,16 +5,20 @@ import com.example.petlorshop.dto.OrderCalculationResult;
 import com.example.petlorshop.models.ChiTietDonHang;
 import com.example.petlorshop.models.KhuyenMai;
 import com.example.petlorshop.models.SanPham;
-import com.example.petlorshop.repositories.KhuyenMaiRepository;
 import com.example.petlorshop.repositories.SanPhamRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
-import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 public class OrderCalculationService {
@@ -23,22 +27,35 @@ public class OrderCalculationService {
     private SanPhamRepository sanPhamRepository;
 
     @Autowired
-    private KhuyenMaiRepository khuyenMaiRepository;
+    private KhuyenMaiService khuyenMaiService;
     
     @Autowired
     private GhtkService ghtkService;
 
-    public OrderCalculationResult calculateOrder(List<ChiTietDonHangRequest> items, String maKhuyenMai, String province, String district, String ward, String address) {
+    public OrderCalculationResult calculateOrder(List<ChiTietDonHangRequest> items, String maKhuyenMai, String province, String district, String ward) {
         BigDecimal tongTienHang = BigDecimal.ZERO;
         int tongTrongLuong = 0;
         List<ChiTietDonHang> chiTietItems = new ArrayList<>();
 
+        // Gộp các dòng cùng sản phẩm (giống khi dùng lại báo giá), tồn kho được kiểm tra trên tổng số lượng
+        Map<Integer, Integer> soLuongTheoSanPham = gopTheoSanPham(items);
+
+        // Lấy toàn bộ sản phẩm của giỏ trong một truy vấn
+        Set<Integer> sanPhamIds = soLuongTheoSanPham.keySet().stream()
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Map<Integer, SanPham> sanPhamMap = sanPhamRepository.findAllById(sanPhamIds).stream()
+                .collect(Collectors.toMap(SanPham::getSanPhamId, Function.identity()));
+
         // 1. Tính tổng tiền hàng và chuẩn bị danh sách chi tiết
-        for (ChiTietDonHangRequest itemRequest : items) {
-            SanPham sanPham = sanPhamRepository.findById(itemRequest.getSanPhamId())
-                    .orElseThrow(() -> new RuntimeException("Không tìm thấy sản phẩm với ID: " + itemRequest.getSanPhamId()));
+        for (Map.Entry<Integer, Integer> item : soLuongTheoSanPham.entrySet()) {
+            int soLuong = item.getValue();
+            SanPham sanPham = sanPhamMap.get(item.getKey());
+            if (sanPham == null) {
+                throw new RuntimeException("Không tìm thấy sản phẩm với ID: " + item.getKey());
+            }
 
-            if (sanPham.getSoLuongTonKho() < itemRequest.getSoLuong()) {
+            if (sanPham.getSoLuongCoTheBan() < soLuong) {
                 throw new RuntimeException("Sản phẩm '" + sanPham.getTenSanPham() + "' không đủ số lượng tồn kho.");
             }
 
@@ -46,15 +63,15 @@ public class OrderCalculationService {
 
             ChiTietDonHang chiTiet = new ChiTietDonHang();
             chiTiet.setSanPham(sanPham);
-            chiTiet.setSoLuong(itemRequest.getSoLuong());
+            chiTiet.setSoLuong(soLuong);
             chiTiet.setDonGia(giaBan);
             chiTietItems.add(chiTiet);
 
-            tongTienHang = tongTienHang.add(giaBan.multiply(BigDecimal.valueOf(itemRequest.getSoLuong())));
+            tongTienHang = tongTienHang.add(giaBan.multiply(BigDecimal.valueOf(soLuong)));
             
             // Cộng dồn trọng lượng
             int trongLuongSP = sanPham.getTrongLuong() != null ? sanPham.getTrongLuong() : 500;
-            tongTrongLuong += trongLuongSP * itemRequest.getSoLuong();
+            tongTrongLuong += trongLuongSP * soLuong;
         }
 
         // 2. Tính giảm giá
@@ -62,24 +79,14 @@ public class OrderCalculationService {
         KhuyenMai khuyenMai = null;
 
         if (maKhuyenMai != null && !maKhuyenMai.isEmpty()) {
-            khuyenMai = validateAndGetKhuyenMai(maKhuyenMai, tongTienHang);
-            
-            if (khuyenMai.getLoaiGiamGia() == KhuyenMai.LoaiGiamGia.PHAN_TRAM) {
-                soTienGiam = tongTienHang.multiply(khuyenMai.getGiaTriGiam().divide(new BigDecimal(100)));
-            } else {
-                soTienGiam = khuyenMai.getGiaTriGiam();
-            }
-            
-            // Đảm bảo tiền giảm không vượt quá tổng tiền
-            if (soTienGiam.compareTo(tongTienHang) > 0) {
-                soTienGiam = tongTienHang;
-            }
+            khuyenMai = khuyenMaiService.layKhuyenMaiHopLe(maKhuyenMai, tongTienHang);
+            soTienGiam = tinhTienGiam(khuyenMai, tongTienHang);
         }
         
         // 3. Tính phí vận chuyển
         BigDecimal phiVanChuyen = BigDecimal.ZERO;
         if (province != null && district != null) {
-            phiVanChuyen = ghtkService.calculateShippingFee(province, district, ward, address, tongTrongLuong, tongTienHang.intValue());
+            phiVanChuyen = ghtkService.calculateShippingFee(province, district, ward, tongTrongLuong, tongTienHang.intValue());
         }
 
         BigDecimal tongThanhToan = tongTienHang.subtract(soTienGiam).add(phiVanChuyen);
@@ -87,31 +94,27 @@ public class OrderCalculationService {
         return new OrderCalculationResult(tongTienHang, soTienGiam, phiVanChuyen, tongThanhToan, khuyenMai, chiTietItems);
     }
 
-    private KhuyenMai validateAndGetKhuyenMai(String maCode, BigDecimal tongTienHang) {
-        KhuyenMai km = khuyenMaiRepository.findByMaCode(maCode)
-                .orElseThrow(() -> new RuntimeException("Mã khuyến mãi không tồn tại."));
-
-        if (!km.getTrangThai()) {
-            throw new RuntimeException("Mã khuyến mãi đang bị khóa.");
-        }
-
-        LocalDateTime now = LocalDateTime.now();
-        if (now.isBefore(km.getNgayBatDau())) {
-            throw new RuntimeException("Mã khuyến mãi chưa đến thời gian áp dụng.");
-        }
-
-        if (now.isAfter(km.getNgayKetThuc())) {
-            throw new RuntimeException("Mã khuyến mãi đã hết hạn.");
+    // Số lượng theo sản phẩm, các dòng trùng sản phẩm được cộng dồn, giữ thứ tự xuất hiện đầu tiên
+    public static Map<Integer, Integer> gopTheoSanPham(List<ChiTietDonHangRequest> items) {
+        Map<Integer, Integer> soLuongTheoSanPham = new LinkedHashMap<>();
+        for (ChiTietDonHangRequest item : items) {
+            soLuongTheoSanPham.merge(item.getSanPhamId(), item.getSoLuong(), Integer::sum);
         }
+        return soLuongTheoSanPham;
+    }
 
-        if (km.getSoLuongGioiHan() != null && km.getSoLuongGioiHan() <= 0) {
-            throw new RuntimeException("Mã khuyến mãi đã hết lượt sử dụng.");
+    public BigDecimal tinhTienGiam(KhuyenMai khuyenMai, BigDecimal tongTienHang) {
+        BigDecimal soTienGiam;
+        if (khuyenMai.getLoaiGiamGia() == KhuyenMai.LoaiGiamGia.PHAN_TRAM) {
+            soTienGiam = tongTienHang.multiply(khuyenMai.getGiaTriGiam().divide(new BigDecimal(100)));
+        } else {
+            soTienGiam = khuyenMai.getGiaTriGiam();
         }
 
-        if (km.getDonToiThieu() != null && tongTienHang.compareTo(km.getDonToiThieu()) < 0) {
-            throw new RuntimeException("Đơn hàng chưa đạt giá trị tối thiểu để áp dụng mã này.");
+        // Đảm bảo tiền giảm không vượt quá tổng tiền
+        if (soTienGiam.compareTo(tongTienHang) > 0) {
+            soTienGiam = tongTienHang;
         }
-
-        return km;
+        return soTienGiam;
     }
 }
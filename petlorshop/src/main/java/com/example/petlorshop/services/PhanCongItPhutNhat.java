@@ -0,0 +1,29 @@
+package com.example.petlorshop.services;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Mặc định: ưu tiên nhân viên có ít phút đã đặt nhất trong ngày của lịch hẹn, bằng nhau thì theo ID.
+ * Số phút lấy từ bộ đếm trong bộ nhớ của LichNhanVienIndex, không truy vấn DB.
+ */
+@Component("it-phut-nhat")
+public class PhanCongItPhutNhat implements ChienLuocPhanCong {
+
+    @Autowired
+    private LichNhanVienIndex lichNhanVienIndex;
+
+    @Override
+    public List<Integer> sapXep(List<Integer> ungVien, LocalDateTime start, LocalDateTime end) {
+        LocalDate ngay = start.toLocalDate();
+        return ungVien.stream()
+                .sorted(Comparator.comparingLong((Integer id) -> lichNhanVienIndex.soPhutDaDat(id, ngay))
+                        .thenComparing(Comparator.naturalOrder()))
+                .toList();
+    }
+}
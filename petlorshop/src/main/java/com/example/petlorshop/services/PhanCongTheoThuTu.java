@@ -0,0 +1,16 @@
+package com.example.petlorshop.services;
+
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Cách phân công cũ: nhân viên rảnh có ID nhỏ nhất
+@Component("theo-thu-tu")
+public class PhanCongTheoThuTu implements ChienLuocPhanCong {
+
+    @Override
+    public List<Integer> sapXep(List<Integer> ungVien, LocalDateTime start, LocalDateTime end) {
+        return ungVien;
+    }
+}
@@ -7,10 +7,8 @@ import com.example.petlorshop.repositories.*;
 import jakarta.transaction.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
-import org.springframework.util.StringUtils;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
@@ -54,10 +52,11 @@ public class PhieuNhapService {
         for (PhieuNhapRequest.ChiTietPhieuNhapDto ctDto : request.getChiTietList()) {
             SanPham sp;
             if (ctDto.getSanPhamId() != null) {
-                // Trường hợp 1: Sản phẩm đã tồn tại -> Cập nhật số lượng tồn kho
+                // Trường hợp 1: Sản phẩm đã tồn tại -> Cộng tồn kho bằng câu UPDATE nguyên tử
+                // (không ghi đè số lượng mà các đơn hàng đang trừ song song)
                 sp = sanPhamRepository.findById(ctDto.getSanPhamId())
                         .orElseThrow(() -> new RuntimeException("Không tìm thấy sản phẩm ID: " + ctDto.getSanPhamId()));
-                sp.setSoLuongTonKho(sp.getSoLuongTonKho() + ctDto.getSoLuong());
+                sanPhamRepository.congTonKho(sp.getSanPhamId(), ctDto.getSoLuong());
             } else {
                 // Trường hợp 2: Sản phẩm mới -> Tạo mới sản phẩm
                 sp = new SanPham();
@@ -74,10 +73,8 @@ public class PhieuNhapService {
                             .orElseThrow(() -> new RuntimeException("Không tìm thấy danh mục ID: " + ctDto.getDanhMucId()));
                     sp.setDanhMucSanPham(danhMuc);
                 }
+                sp = sanPhamRepository.save(sp);
             }
-            
-            // Lưu sản phẩm (cập nhật hoặc tạo mới)
-            sp = sanPhamRepository.save(sp);
 
             ChiTietPhieuNhap ct = new ChiTietPhieuNhap();
             ct.setPhieuNhap(phieuNhap);
@@ -105,43 +102,16 @@ public class PhieuNhapService {
 
         // Hoàn tác kho (Trừ số lượng đã nhập)
         for (ChiTietPhieuNhap ct : phieuNhap.getChiTietPhieuNhapList()) {
-            SanPham sp = ct.getSanPham();
-            int soLuongMoi = sp.getSoLuongTonKho() - ct.getSoLuong();
-            
-            // Kiểm tra nếu trừ đi mà bị âm thì vẫn cho phép nhưng có thể log cảnh báo
-            // Hoặc chặn lại nếu muốn chặt chẽ: if (soLuongMoi < 0) throw Exception...
-            // Ở đây ta cho phép trừ để đảm bảo xóa được phiếu nhập sai.
-            
-            sp.setSoLuongTonKho(soLuongMoi);
-            sanPhamRepository.save(sp);
+            // Trừ bằng câu UPDATE nguyên tử (cộng số âm), không đọc-sửa-ghi qua entity.
+            // Nếu trừ đi mà bị âm thì vẫn cho phép để đảm bảo xóa được phiếu nhập sai.
+            sanPhamRepository.congTonKho(ct.getSanPham().getSanPhamId(), -ct.getSoLuong());
         }
 
         phieuNhapRepository.delete(phieuNhap); // Hibernate sẽ tự gọi SQL update da_xoa = true
     }
 
     public Page<PhieuNhapResponse> getAllPhieuNhap(Pageable pageable, String keyword) {
-        if (StringUtils.hasText(keyword)) {
-            List<PhieuNhap> allMatches = phieuNhapRepository.searchByKeyword(keyword);
-            
-            String lowerKeyword = keyword.toLowerCase();
-            List<PhieuNhapResponse> filteredList = allMatches.stream()
-                    .filter(pn -> (pn.getGhiChu() != null && pn.getGhiChu().toLowerCase().contains(lowerKeyword)) ||
-                                  (pn.getNhaCungCap() != null && pn.getNhaCungCap().getTenNcc().toLowerCase().contains(lowerKeyword)) ||
-                                  (pn.getNhanVien() != null && pn.getNhanVien().getHoTen().toLowerCase().contains(lowerKeyword)))
-                    .map(this::convertToResponse)
-                    .collect(Collectors.toList());
-
-            int start = (int) pageable.getOffset();
-            int end = Math.min((start + pageable.getPageSize()), filteredList.size());
-            
-            if (start > filteredList.size()) {
-                return new PageImpl<>(List.of(), pageable, filteredList.size());
-            }
-            
-            List<PhieuNhapResponse> pageContent = filteredList.subList(start, end);
-            return new PageImpl<>(pageContent, pageable, filteredList.size());
-        }
-        return phieuNhapRepository.findAll(pageable)
+        return phieuNhapRepository.findAll(SearchSpecifications.keyword(keyword, "ghiChu", "nhaCungCap.tenNcc", "nhanVien.hoTen"), pageable)
                 .map(this::convertToResponse);
     }
 
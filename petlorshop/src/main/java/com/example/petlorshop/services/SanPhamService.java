@@ -11,14 +11,18 @@ import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -36,13 +40,25 @@ public class SanPhamService {
     @Autowired
     private FilterConfig filterConfig;
 
+    @Autowired
+    private XepHangSanPhamService xepHangSanPhamService;
+
     @PostConstruct
     public void init() {
         filterConfig.enableDeletedProductFilter(false);
     }
 
+    /**
+     * Danh sách sản phẩm có phân trang. sort=banChay hoặc sort=trending lấy thứ tự từ bảng xếp hạng trong bộ nhớ
+     * (chỉ gồm top xep-hang.top-n sản phẩm), các bộ lọc keyword/categoryId vẫn được áp dụng.
+     */
     @Transactional(readOnly = true)
     public Page<SanPhamResponse> getAllSanPham(Pageable pageable, String keyword, Integer categoryId) {
+        XepHangSanPhamService.TieuChi tieuChi = tieuChiXepHang(pageable.getSort());
+        if (tieuChi != null) {
+            return getSanPhamTheoXepHang(tieuChi, pageable, keyword, categoryId);
+        }
+
         Page<SanPham> sanPhamPage;
 
         if (StringUtils.hasText(keyword) && categoryId != null) {
@@ -62,6 +78,42 @@ public class SanPhamService {
         return sanPhamPage.map(this::convertToResponse);
     }
 
+    private Page<SanPhamResponse> getSanPhamTheoXepHang(XepHangSanPhamService.TieuChi tieuChi, Pageable pageable,
+                                                        String keyword, Integer categoryId) {
+        List<Integer> xepHang = xepHangSanPhamService.getXepHang(tieuChi);
+        Map<Integer, SanPham> sanPhamMap = xepHang.isEmpty() ? Map.of()
+                : sanPhamRepository.findAllWithDanhMucByIdIn(xepHang).stream()
+                        .collect(Collectors.toMap(SanPham::getSanPhamId, Function.identity()));
+
+        String tuKhoa = StringUtils.hasText(keyword) ? keyword.trim().toLowerCase() : null;
+        List<SanPham> ketQua = xepHang.stream()
+                .map(sanPhamMap::get)
+                .filter(sp -> sp != null && !sp.isDaXoa())
+                .filter(sp -> tuKhoa == null || sp.getTenSanPham().toLowerCase().contains(tuKhoa))
+                .filter(sp -> categoryId == null || (sp.getDanhMucSanPham() != null
+                        && categoryId.equals(sp.getDanhMucSanPham().getDanhMucId())))
+                .collect(Collectors.toList());
+
+        int from = (int) Math.min(pageable.getOffset(), ketQua.size());
+        int to = Math.min(from + pageable.getPageSize(), ketQua.size());
+        List<SanPhamResponse> content = ketQua.subList(from, to).stream()
+                .map(this::convertToResponse)
+                .collect(Collectors.toList());
+        return new PageImpl<>(content, PageRequest.of(pageable.getPageNumber(), pageable.getPageSize()), ketQua.size());
+    }
+
+    private static XepHangSanPhamService.TieuChi tieuChiXepHang(Sort sort) {
+        for (Sort.Order order : sort) {
+            if ("banChay".equalsIgnoreCase(order.getProperty())) {
+                return XepHangSanPhamService.TieuChi.BAN_CHAY;
+            }
+            if ("trending".equalsIgnoreCase(order.getProperty())) {
+                return XepHangSanPhamService.TieuChi.TRENDING;
+            }
+        }
+        return null;
+    }
+
     @Transactional(readOnly = true)
     public Optional<SanPhamResponse> getSanPhamById(Integer id) {
         return sanPhamRepository.findById(id).map(this::convertToResponse);
@@ -145,6 +197,8 @@ public class SanPhamService {
                 sanPham.getGia(),
                 sanPham.getGiaGiam(),
                 sanPham.getSoLuongTonKho(),
+                sanPham.getSoLuongCoTheBan(),
+                sanPham.getSoLuongDaBan(),
                 sanPham.getHinhAnh(),
                 sanPham.getTrongLuong(),
                 sanPham.getDanhMucSanPham() != null ? sanPham.getDanhMucSanPham().getDanhMucId() : null,
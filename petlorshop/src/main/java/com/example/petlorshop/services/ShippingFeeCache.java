@@ -0,0 +1,128 @@
+package com.example.petlorshop.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Cache phí vận chuyển (trong bộ nhớ, có TTL) đặt trước GhtkService.
+ * - Khóa là các tham số đã chuẩn hóa (điểm lấy, điểm giao, mức khối lượng, mức giá trị).
+ * - Nhiều request cùng khóa đến khi chưa có kết quả sẽ chờ chung một lần gọi GHTK.
+ * - Lần gọi lỗi không được lưu, request sau sẽ gọi lại.
+ */
+@Component
+public class ShippingFeeCache {
+
+    private final Map<String, Entry> store = new ConcurrentHashMap<>();
+
+    private final long ttlMillis;
+    private final int maxEntries;
+    private volatile long lastCleanup = System.currentTimeMillis();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong collapsed = new AtomicLong();
+    private final AtomicLong loadFailures = new AtomicLong();
+    private final AtomicLong loadTimeNanos = new AtomicLong();
+
+    public ShippingFeeCache(@Value("${ghtk.fee-cache.ttl-minutes:360}") long ttlMinutes,
+                            @Value("${ghtk.fee-cache.max-entries:10000}") int maxEntries) {
+        this.ttlMillis = TimeUnit.MINUTES.toMillis(ttlMinutes);
+        this.maxEntries = maxEntries;
+    }
+
+    public BigDecimal get(String key, Supplier<BigDecimal> loader) {
+        long now = System.currentTimeMillis();
+        Entry mine = new Entry(now + ttlMillis);
+
+        Entry existing = store.compute(key, (k, current) ->
+                current == null || current.isExpired(now) ? mine : current);
+
+        if (existing != mine) {
+            (existing.fee.isDone() ? hits : collapsed).incrementAndGet();
+            return await(existing);
+        }
+
+        misses.incrementAndGet();
+        cleanupIfNeeded(now);
+        long start = System.nanoTime();
+        try {
+            BigDecimal fee = loader.get();
+            mine.fee.complete(fee);
+            return fee;
+        } catch (RuntimeException e) {
+            loadFailures.incrementAndGet();
+            store.remove(key, mine);
+            mine.fee.completeExceptionally(e);
+            throw e;
+        } finally {
+            loadTimeNanos.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    public void clear() {
+        store.clear();
+    }
+
+    public Map<String, Object> getThongKe() {
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        long collapsedCount = collapsed.get();
+        long total = hitCount + missCount + collapsedCount;
+
+        Map<String, Object> thongKe = new LinkedHashMap<>();
+        thongKe.put("soKhoa", store.size());
+        thongKe.put("hit", hitCount);
+        thongKe.put("miss", missCount);
+        thongKe.put("choChung", collapsedCount);
+        thongKe.put("goiLoi", loadFailures.get());
+        thongKe.put("tiLeHit", total == 0 ? 0.0 : (double) (hitCount + collapsedCount) / total);
+        thongKe.put("thoiGianGoiTrungBinhMs", missCount == 0 ? 0.0 : loadTimeNanos.get() / 1_000_000.0 / missCount);
+        return thongKe;
+    }
+
+    private BigDecimal await(Entry entry) {
+        try {
+            return entry.fee.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+    }
+
+    // Dọn các khóa hết hạn tối đa mỗi phút một lần; nếu vẫn vượt giới hạn thì xóa toàn bộ
+    private void cleanupIfNeeded(long now) {
+        if (now - lastCleanup < TimeUnit.MINUTES.toMillis(1) && store.size() <= maxEntries) {
+            return;
+        }
+        lastCleanup = now;
+        store.entrySet().removeIf(e -> e.getValue().isExpired(now) && e.getValue().fee.isDone());
+        if (store.size() > maxEntries) {
+            store.entrySet().removeIf(e -> e.getValue().fee.isDone());
+        }
+    }
+
+    private static class Entry {
+        private final long expiresAt;
+        private final CompletableFuture<BigDecimal> fee = new CompletableFuture<>();
+
+        private Entry(long expiresAt) {
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired(long now) {
+            return now > expiresAt;
+        }
+    }
+}
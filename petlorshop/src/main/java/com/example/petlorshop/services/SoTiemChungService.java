@@ -10,13 +10,12 @@ import com.example.petlorshop.repositories.LichHenRepository;
 import com.example.petlorshop.repositories.NhanVienRepository;
 import com.example.petlorshop.repositories.SoTiemChungRepository;
 import com.example.petlorshop.repositories.ThuCungRepository;
+import com.example.petlorshop.repositories.SearchSpecifications;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.util.StringUtils;
 
 import java.util.List;
 import java.util.stream.Collectors;
@@ -36,28 +35,11 @@ public class SoTiemChungService {
     @Autowired
     private LichHenRepository lichHenRepository;
 
+    @Autowired
+    private LichNhanVienIndex lichNhanVienIndex;
+
     public Page<SoTiemChungResponse> getAllSoTiemChung(Pageable pageable, String keyword) {
-        if (StringUtils.hasText(keyword)) {
-            List<SoTiemChung> allMatches = soTiemChungRepository.searchByKeyword(keyword);
-            
-            String lowerKeyword = keyword.toLowerCase();
-            List<SoTiemChungResponse> filteredList = allMatches.stream()
-                    .filter(stc -> (stc.getTenVacXin() != null && stc.getTenVacXin().toLowerCase().contains(lowerKeyword)) || 
-                                   (stc.getGhiChu() != null && stc.getGhiChu().toLowerCase().contains(lowerKeyword)))
-                    .map(this::convertToResponse)
-                    .collect(Collectors.toList());
-
-            int start = (int) pageable.getOffset();
-            int end = Math.min((start + pageable.getPageSize()), filteredList.size());
-            
-            if (start > filteredList.size()) {
-                return new PageImpl<>(List.of(), pageable, filteredList.size());
-            }
-            
-            List<SoTiemChungResponse> pageContent = filteredList.subList(start, end);
-            return new PageImpl<>(pageContent, pageable, filteredList.size());
-        }
-        return soTiemChungRepository.findAll(pageable).map(this::convertToResponse);
+        return soTiemChungRepository.findAll(SearchSpecifications.keyword(keyword, "tenVacXin", "ghiChu"), pageable).map(this::convertToResponse);
     }
 
     public List<SoTiemChungResponse> getSoTiemChungByThuCungId(Integer thuCungId) {
@@ -94,6 +76,7 @@ public class SoTiemChungService {
             stc.setLichHen(lichHen);
             lichHen.setTrangThai(LichHen.TrangThai.DA_HOAN_THANH);
             lichHenRepository.save(lichHen);
+            lichNhanVienIndex.capNhatSauCommit(lichHen);
         }
 
         SoTiemChung saved = soTiemChungRepository.save(stc);
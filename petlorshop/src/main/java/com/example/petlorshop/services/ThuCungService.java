@@ -8,7 +8,6 @@ import com.example.petlorshop.repositories.*;
 import jakarta.transaction.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
@@ -45,27 +44,7 @@ public class ThuCungService {
     private FileStorageService fileStorageService;
 
     public Page<ThuCung> getAllThuCung(Pageable pageable, String keyword) {
-        if (StringUtils.hasText(keyword)) {
-            List<ThuCung> allMatches = thuCungRepository.searchByKeyword(keyword);
-            
-            String lowerKeyword = keyword.toLowerCase();
-            List<ThuCung> filteredList = allMatches.stream()
-                    .filter(t -> (t.getTenThuCung() != null && t.getTenThuCung().toLowerCase().contains(lowerKeyword)) || 
-                                 (t.getChungLoai() != null && t.getChungLoai().toLowerCase().contains(lowerKeyword)) ||
-                                 (t.getGiongLoai() != null && t.getGiongLoai().toLowerCase().contains(lowerKeyword)))
-                    .collect(Collectors.toList());
-
-            int start = (int) pageable.getOffset();
-            int end = Math.min((start + pageable.getPageSize()), filteredList.size());
-            
-            if (start > filteredList.size()) {
-                return new PageImpl<>(List.of(), pageable, filteredList.size());
-            }
-            
-            List<ThuCung> pageContent = filteredList.subList(start, end);
-            return new PageImpl<>(pageContent, pageable, filteredList.size());
-        }
-        return thuCungRepository.findAll(pageable);
+        return thuCungRepository.findAll(SearchSpecifications.keyword(keyword, "tenThuCung", "chungLoai", "giongLoai"), pageable);
     }
 
     public Optional<ThuCung> getThuCungById(Integer id) {
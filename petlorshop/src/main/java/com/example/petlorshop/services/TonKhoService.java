@@ -0,0 +1,273 @@
+package com.example.petlorshop.services;
+
+import com.example.petlorshop.models.ChiTietDonHang;
+import com.example.petlorshop.models.DonHang;
+import com.example.petlorshop.models.GiuChoTonKho;
+import com.example.petlorshop.models.SanPham;
+import com.example.petlorshop.repositories.DonHangRepository;
+import com.example.petlorshop.repositories.GiuChoTonKhoRepository;
+import com.example.petlorshop.repositories.SanPhamRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+@Service
+public class TonKhoService {
+
+    public static final String LY_DO_HUY_QUA_HAN = "Quá hạn thanh toán, hệ thống tự động hủy đơn.";
+
+    @Autowired
+    private SanPhamRepository sanPhamRepository;
+
+    @Autowired
+    private GiuChoTonKhoRepository giuChoTonKhoRepository;
+
+    @Autowired
+    private DonHangRepository donHangRepository;
+
+    @Autowired
+    private DoanhThuService doanhThuService;
+
+    @Value("${ton-kho.giu-cho-phut:30}")
+    private long thoiGianGiuChoPhut;
+
+    /**
+     * Trừ tồn kho cho đơn COD (đơn đã được lưu) bằng câu UPDATE có điều kiện (số lượng có thể bán >= số lượng).
+     * Các dòng được gộp theo sản phẩm và cập nhật theo thứ tự ID tăng dần để các đơn chạy song song
+     * luôn khóa dòng theo cùng một thứ tự (tránh deadlock).
+     * Nếu một sản phẩm không đủ hàng thì ném lỗi để transaction của đơn hàng rollback toàn bộ.
+     * Sổ giữ chỗ ghi các dòng DA_XAC_NHAN để khi hủy đơn biết tồn kho đã thực sự bị trừ.
+     */
+    @Transactional
+    public void truTonKho(DonHang donHang) {
+        List<ChiTietDonHang> chiTietItems = donHang.getChiTietDonHangs();
+        Map<Integer, Integer> soLuongTheoSanPham = gopSoLuongTheoSanPham(chiTietItems);
+        for (Map.Entry<Integer, Integer> entry : soLuongTheoSanPham.entrySet()) {
+            int updated = sanPhamRepository.truTonKhoNeuDu(entry.getKey(), entry.getValue());
+            if (updated == 0) {
+                throw hetHang(chiTietItems, entry.getKey());
+            }
+        }
+        ghiSo(donHang, soLuongTheoSanPham, GiuChoTonKho.TrangThaiGiuCho.DA_XAC_NHAN, LocalDateTime.now());
+    }
+
+    // Hoàn lại tồn kho cho các dòng của đơn hàng (khi hủy đơn)
+    @Transactional
+    public void hoanTonKho(List<ChiTietDonHang> chiTietItems) {
+        for (Map.Entry<Integer, Integer> entry : gopSoLuongTheoSanPham(chiTietItems).entrySet()) {
+            sanPhamRepository.congTonKho(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Giữ chỗ tồn kho cho đơn thanh toán online (đơn đã được lưu).
+     * Tồn kho thật chưa bị trừ, chỉ tăng số lượng giữ chỗ của sản phẩm (UPDATE có điều kiện như truTonKho)
+     * và ghi một dòng DANG_GIU vào sổ giữ chỗ với thời hạn ton-kho.giu-cho-phut.
+     */
+    @Transactional
+    public void giuChoTonKho(DonHang donHang) {
+        List<ChiTietDonHang> chiTietItems = donHang.getChiTietDonHangs();
+        Map<Integer, Integer> soLuongTheoSanPham = gopSoLuongTheoSanPham(chiTietItems);
+        for (Map.Entry<Integer, Integer> entry : soLuongTheoSanPham.entrySet()) {
+            int updated = sanPhamRepository.giuChoNeuDu(entry.getKey(), entry.getValue());
+            if (updated == 0) {
+                throw hetHang(chiTietItems, entry.getKey());
+            }
+        }
+        ghiSo(donHang, soLuongTheoSanPham, GiuChoTonKho.TrangThaiGiuCho.DANG_GIU,
+                LocalDateTime.now().plusMinutes(thoiGianGiuChoPhut));
+    }
+
+    /**
+     * Thanh toán thành công: đảm bảo tồn kho của đơn đã bị trừ thật trước khi ghi nhận đơn đã thanh toán.
+     * - Đơn còn giữ chỗ: chuyển giữ chỗ thành trừ tồn kho thật.
+     * - Đơn đã trừ tồn kho (COD, thanh toán lặp lại, đơn tạo trước khi có sổ giữ chỗ): không làm gì.
+     * - Giữ chỗ đã hết hạn nhưng đơn chưa bị hủy: trừ lại bằng UPDATE có điều kiện như lúc đặt hàng.
+     * Trả về false nếu không trừ được (đơn đã hủy hoặc sản phẩm không còn đủ hàng) - khi đó không được
+     * đánh dấu đơn đã thanh toán.
+     */
+    @Transactional
+    public boolean xacNhanThanhToan(Integer donHangId) {
+        List<GiuChoTonKho> soGhi = giuChoTonKhoRepository.findByDonHangForUpdate(donHangId);
+        DonHang donHang = donHangRepository.findById(donHangId)
+                .orElseThrow(() -> new RuntimeException("Không tìm thấy đơn hàng: " + donHangId));
+        if (donHang.getTrangThai() == DonHang.TrangThaiDonHang.DA_HUY) {
+            return false;
+        }
+        if (soGhi.isEmpty() || coTrangThai(soGhi, GiuChoTonKho.TrangThaiGiuCho.DA_XAC_NHAN)) {
+            return true;
+        }
+
+        List<GiuChoTonKho> dangGiu = soGhi.stream()
+                .filter(g -> g.getTrangThai() == GiuChoTonKho.TrangThaiGiuCho.DANG_GIU)
+                .toList();
+        if (!dangGiu.isEmpty()) {
+            for (GiuChoTonKho giuCho : dangGiu) {
+                sanPhamRepository.xacNhanGiuCho(giuCho.getSanPham().getSanPhamId(), giuCho.getSoLuong());
+                giuCho.setTrangThai(GiuChoTonKho.TrangThaiGiuCho.DA_XAC_NHAN);
+            }
+            giuChoTonKhoRepository.saveAll(dangGiu);
+            return true;
+        }
+
+        // Giữ chỗ đã được giải phóng (quá hạn) nhưng đơn chưa bị hủy
+        Map<Integer, Integer> soLuongTheoSanPham = gopSoLuongTheoSanPham(donHang.getChiTietDonHangs());
+        Map<Integer, Integer> daTru = new TreeMap<>();
+        for (Map.Entry<Integer, Integer> entry : soLuongTheoSanPham.entrySet()) {
+            if (sanPhamRepository.truTonKhoNeuDu(entry.getKey(), entry.getValue()) == 0) {
+                // Không đủ hàng: trả lại phần đã trừ, transaction thanh toán vẫn commit để lưu giao dịch
+                daTru.forEach(sanPhamRepository::congTonKho);
+                return false;
+            }
+            daTru.put(entry.getKey(), entry.getValue());
+        }
+        ghiSo(donHang, soLuongTheoSanPham, GiuChoTonKho.TrangThaiGiuCho.DA_XAC_NHAN, LocalDateTime.now());
+        return true;
+    }
+
+    /**
+     * Trả hàng khi hủy đơn, theo sổ giữ chỗ của đơn:
+     * - DANG_GIU: chỉ giải phóng giữ chỗ (tồn kho thật chưa bị trừ).
+     * - DA_XAC_NHAN: tồn kho đã bị trừ (COD hoặc đã thanh toán) nên cộng lại.
+     * - HET_HAN/DA_HUY: đã giải phóng trước đó, không trả lại lần nữa.
+     * Các dòng đã xử lý chuyển sang DA_HUY. Đơn tạo trước khi có sổ giữ chỗ (không có dòng nào) đã bị trừ tồn kho
+     * lúc đặt hàng nên cộng lại theo chi tiết đơn.
+     */
+    @Transactional
+    public void hoanTonKhoKhiHuy(DonHang donHang) {
+        List<GiuChoTonKho> soGhi = giuChoTonKhoRepository.findByDonHangForUpdate(donHang.getDonHangId());
+        if (soGhi.isEmpty()) {
+            hoanTonKho(donHang.getChiTietDonHangs());
+            return;
+        }
+        for (GiuChoTonKho giuCho : soGhi) {
+            Integer sanPhamId = giuCho.getSanPham().getSanPhamId();
+            switch (giuCho.getTrangThai()) {
+                case DANG_GIU -> sanPhamRepository.giaiPhongGiuCho(sanPhamId, giuCho.getSoLuong());
+                case DA_XAC_NHAN -> sanPhamRepository.congTonKho(sanPhamId, giuCho.getSoLuong());
+                default -> {
+                    continue;
+                }
+            }
+            giuCho.setTrangThai(GiuChoTonKho.TrangThaiGiuCho.DA_HUY);
+        }
+        giuChoTonKhoRepository.saveAll(soGhi);
+    }
+
+    /**
+     * Giải phóng một lô giữ chỗ đã hết hạn (mỗi sản phẩm một câu UPDATE) và hủy các đơn online tương ứng
+     * còn chưa thanh toán, ở bất kỳ trạng thái nào trước khi giao xong, bằng câu UPDATE hàng loạt:
+     * giữ chỗ đã mất thì đơn không được tiếp tục giao.
+     * Riêng đơn đã giao (dữ liệu cũ, trước khi chặn giao đơn online chưa thanh toán) thì hàng đã rời kho
+     * nên giữ chỗ được chuyển thành trừ tồn kho thật thay vì giải phóng.
+     * Trả về số dòng giữ chỗ đã xử lý.
+     */
+    @Transactional
+    public int giaiPhongGiuChoHetHan(int batchSize) {
+        List<GiuChoTonKho> hetHanList = giuChoTonKhoRepository.findHetHanForUpdate(
+                GiuChoTonKho.TrangThaiGiuCho.DANG_GIU, LocalDateTime.now(), PageRequest.of(0, batchSize));
+        if (hetHanList.isEmpty()) {
+            return 0;
+        }
+
+        Set<Integer> donHangIds = new TreeSet<>();
+        for (GiuChoTonKho giuCho : hetHanList) {
+            donHangIds.add(giuCho.getDonHang().getDonHangId());
+        }
+        Map<Integer, DonHang> donHangTheoId = new HashMap<>();
+        for (DonHang donHang : donHangRepository.findAllWithChiTietByIdIn(donHangIds)) {
+            donHangTheoId.put(donHang.getDonHangId(), donHang);
+        }
+
+        Map<Integer, Integer> giaiPhongTheoSanPham = new TreeMap<>();
+        Map<Integer, Integer> xacNhanTheoSanPham = new TreeMap<>();
+        List<Integer> giaiPhongIds = new ArrayList<>();
+        List<Integer> xacNhanIds = new ArrayList<>();
+        for (GiuChoTonKho giuCho : hetHanList) {
+            DonHang donHang = donHangTheoId.get(giuCho.getDonHang().getDonHangId());
+            Integer sanPhamId = giuCho.getSanPham().getSanPhamId();
+            if (donHang != null && donHang.getTrangThai() == DonHang.TrangThaiDonHang.DA_GIAO) {
+                xacNhanTheoSanPham.merge(sanPhamId, giuCho.getSoLuong(), Integer::sum);
+                xacNhanIds.add(giuCho.getGiuChoId());
+            } else {
+                giaiPhongTheoSanPham.merge(sanPhamId, giuCho.getSoLuong(), Integer::sum);
+                giaiPhongIds.add(giuCho.getGiuChoId());
+            }
+        }
+
+        for (Map.Entry<Integer, Integer> entry : giaiPhongTheoSanPham.entrySet()) {
+            sanPhamRepository.giaiPhongGiuCho(entry.getKey(), entry.getValue());
+        }
+        for (Map.Entry<Integer, Integer> entry : xacNhanTheoSanPham.entrySet()) {
+            sanPhamRepository.xacNhanGiuCho(entry.getKey(), entry.getValue());
+        }
+        if (!giaiPhongIds.isEmpty()) {
+            giuChoTonKhoRepository.updateTrangThai(giaiPhongIds, GiuChoTonKho.TrangThaiGiuCho.HET_HAN);
+        }
+        if (!xacNhanIds.isEmpty()) {
+            giuChoTonKhoRepository.updateTrangThai(xacNhanIds, GiuChoTonKho.TrangThaiGiuCho.DA_XAC_NHAN);
+        }
+
+        // Các đơn sẽ bị hủy (cùng điều kiện với câu UPDATE) - đọc trước để trừ doanh số theo chi tiết đơn
+        List<DonHang> donBiHuy = donHangTheoId.values().stream()
+                .filter(d -> d.getTrangThai() != null
+                        && d.getTrangThai() != DonHang.TrangThaiDonHang.DA_GIAO
+                        && d.getTrangThai() != DonHang.TrangThaiDonHang.DA_HUY
+                        && d.getTrangThaiThanhToan() != DonHang.TrangThaiThanhToan.DA_THANH_TOAN)
+                .toList();
+        if (!donBiHuy.isEmpty()) {
+            donHangRepository.huyDonQuaHanThanhToan(donBiHuy.stream().map(DonHang::getDonHangId).toList(), LY_DO_HUY_QUA_HAN);
+            donBiHuy.forEach(doanhThuService::ghiNhanHuy);
+        }
+        return hetHanList.size();
+    }
+
+    private boolean coTrangThai(List<GiuChoTonKho> soGhi, GiuChoTonKho.TrangThaiGiuCho trangThai) {
+        return soGhi.stream().anyMatch(g -> g.getTrangThai() == trangThai);
+    }
+
+    // Ghi sổ giữ chỗ: một dòng cho mỗi sản phẩm của đơn
+    private void ghiSo(DonHang donHang, Map<Integer, Integer> soLuongTheoSanPham,
+                       GiuChoTonKho.TrangThaiGiuCho trangThai, LocalDateTime hetHan) {
+        List<GiuChoTonKho> soGhi = new ArrayList<>();
+        for (Map.Entry<Integer, Integer> entry : soLuongTheoSanPham.entrySet()) {
+            GiuChoTonKho giuCho = new GiuChoTonKho();
+            giuCho.setDonHang(donHang);
+            giuCho.setSanPham(sanPhamRepository.getReferenceById(entry.getKey()));
+            giuCho.setSoLuong(entry.getValue());
+            giuCho.setHetHan(hetHan);
+            giuCho.setTrangThai(trangThai);
+            soGhi.add(giuCho);
+        }
+        giuChoTonKhoRepository.saveAll(soGhi);
+    }
+
+    private RuntimeException hetHang(List<ChiTietDonHang> chiTietItems, Integer sanPhamId) {
+        String tenSanPham = chiTietItems.stream()
+                .map(ChiTietDonHang::getSanPham)
+                .filter(sp -> sp.getSanPhamId().equals(sanPhamId))
+                .map(SanPham::getTenSanPham)
+                .findFirst()
+                .orElse(String.valueOf(sanPhamId));
+        return new RuntimeException("Sản phẩm '" + tenSanPham + "' không đủ số lượng tồn kho.");
+    }
+
+    private Map<Integer, Integer> gopSoLuongTheoSanPham(List<ChiTietDonHang> chiTietItems) {
+        Map<Integer, Integer> soLuongTheoSanPham = new TreeMap<>();
+        for (ChiTietDonHang chiTiet : chiTietItems) {
+            soLuongTheoSanPham.merge(chiTiet.getSanPham().getSanPhamId(), chiTiet.getSoLuong(), Integer::sum);
+        }
+        return soLuongTheoSanPham;
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.petlorshop.services;
+
+import com.example.petlorshop.models.ChiTietDonHang;
+import com.example.petlorshop.models.DoanhThuNgay;
+import com.example.petlorshop.models.DonHang;
+import com.example.petlorshop.repositories.ChiTietDonHangRepository;
+import com.example.petlorshop.repositories.DoanhThuNgayRepository;
+import com.example.petlorshop.repositories.SanPhamRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Xếp hạng sản phẩm cho storefront.
+ * - Bán chạy: bộ đếm so_luong_da_ban trên san_pham, cộng dồn khi đơn chuyển sang DA_GIAO.
+ * - Xu hướng: điểm giảm dần theo thời gian (bán rã xep-hang.trending-ban-ra-ngay ngày) tính từ số lượng đặt
+ *   theo ngày trong bảng doanh_thu_ngay (đã được luồng đơn hàng cộng dồn), trong cửa sổ xep-hang.trending-cua-so-ngay.
+ * Top-N của cả hai được giữ trong bộ nhớ dưới dạng danh sách bất biến và làm mới định kỳ.
+ */
+@Service
+public class XepHangSanPhamService {
+
+    @Autowired
+    private SanPhamRepository sanPhamRepository;
+
+    @Autowired
+    private ChiTietDonHangRepository chiTietDonHangRepository;
+
+    @Autowired
+    private DoanhThuNgayRepository doanhThuNgayRepository;
+
+    @Value("${xep-hang.top-n:100}")
+    private int topN;
+
+    @Value("${xep-hang.trending-cua-so-ngay:14}")
+    private int trendingCuaSoNgay;
+
+    @Value("${xep-hang.trending-ban-ra-ngay:3}")
+    private double trendingBanRaNgay;
+
+    private volatile XepHang xepHang;
+
+    public enum TieuChi {
+        BAN_CHAY, TRENDING
+    }
+
+    // Đơn đã giao: cộng số lượng đã bán cho từng sản phẩm (theo thứ tự ID để các đơn chạy song song khóa cùng thứ tự)
+    @Transactional
+    public void ghiNhanDaGiao(DonHang donHang) {
+        Map<Integer, Integer> soLuongTheoSanPham = new TreeMap<>();
+        for (ChiTietDonHang chiTiet : donHang.getChiTietDonHangs()) {
+            soLuongTheoSanPham.merge(chiTiet.getSanPham().getSanPhamId(), chiTiet.getSoLuong(), Integer::sum);
+        }
+        soLuongTheoSanPham.forEach(sanPhamRepository::congDaBan);
+    }
+
+    // Nhiều đơn vừa được giao: gộp số lượng theo sản phẩm bằng một truy vấn, mỗi sản phẩm một câu UPDATE
+    @Transactional
+    public void ghiNhanDaGiao(Collection<Integer> donHangIds) {
+        if (donHangIds.isEmpty()) {
+            return;
+        }
+        for (Object[] row : chiTietDonHangRepository.tongSoLuongTheoSanPham(donHangIds)) {
+            sanPhamRepository.congDaBan((Integer) row[0], ((Number) row[1]).intValue());
+        }
+    }
+
+    // ID sản phẩm theo thứ hạng (tối đa xep-hang.top-n)
+    public List<Integer> getXepHang(TieuChi tieuChi) {
+        XepHang current = xepHang;
+        if (current == null) {
+            lamMoi();
+            current = xepHang;
+        }
+        return tieuChi == TieuChi.BAN_CHAY ? current.banChay : current.trending;
+    }
+
+    @Scheduled(fixedDelayString = "${xep-hang.lam-moi-ms:300000}")
+    @Transactional(readOnly = true)
+    public void lamMoi() {
+        List<Integer> banChay = sanPhamRepository.findTopBanChayIds(PageRequest.of(0, topN));
+
+        LocalDate homNay = LocalDate.now();
+        Map<Integer, Double> diem = new HashMap<>();
+        for (DoanhThuNgay dong : doanhThuNgayRepository.findByLoaiAndNgayBetween(
+                DoanhThuNgay.LoaiThongKe.SAN_PHAM, homNay.minusDays(trendingCuaSoNgay), homNay)) {
+            if (dong.getSoLuong() <= 0) {
+                continue;
+            }
+            long tuoi = ChronoUnit.DAYS.between(dong.getNgay(), homNay);
+            diem.merge(dong.getDoiTuongId(), dong.getSoLuong() * Math.pow(0.5, tuoi / trendingBanRaNgay), Double::sum);
+        }
+        List<Integer> trending = diem.entrySet().stream()
+                .sorted(Map.Entry.<Integer, Double>comparingByValue(Comparator.reverseOrder())
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .limit(topN)
+                .map(Map.Entry::getKey)
+                .toList();
+
+        xepHang = new XepHang(List.copyOf(banChay), trending);
+    }
+
+    private record XepHang(List<Integer> banChay, List<Integer> trending) {
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.petlorshop;
+
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.annotation.Bean;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.utility.DockerImageName;
+
+// MySQL chạy trong container cho các test tích hợp (cần Docker), datasource được trỏ tự động qua @ServiceConnection.
+// Tham số URL giống cấu hình chạy thật (useCursorFetch cho các truy vấn đọc bằng cursor như xuất đơn hàng)
+@TestConfiguration(proxyBeanMethods = false)
+public class TestcontainersConfiguration {
+
+	@Bean
+	@ServiceConnection
+	MySQLContainer<?> mysqlContainer() {
+		return new MySQLContainer<>(DockerImageName.parse("mysql:8.0"))
+				.withUrlParam("useCursorFetch", "true");
+	}
+
+}
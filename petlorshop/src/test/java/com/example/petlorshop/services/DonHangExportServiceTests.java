@@ -0,0 +1,125 @@
+package com.example.petlorshop.services;
+
+import com.example.petlorshop.TestcontainersConfiguration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Xuất số lượng lớn đơn hàng: bộ nhớ heap trong lúc xuất không tăng theo số đơn (đọc bằng cursor, ghi từng dòng).
+// Chạy riêng bằng task testHeapNho (heap 128MB, xem build.gradle), không chạy trong task test
+@Tag("heap-nho")
+@SpringBootTest
+@ActiveProfiles("test")
+@Import(TestcontainersConfiguration.class)
+class DonHangExportServiceTests {
+
+	private static final Logger log = LoggerFactory.getLogger(DonHangExportServiceTests.class);
+
+	// Ngày riêng cho dữ liệu test, không trùng đơn của test khác
+	private static final LocalDate NGAY_DAT = LocalDate.of(2001, 1, 1);
+	// 2^20 = 1.048.576 đơn, mỗi đơn có địa chỉ 400 ký tự: nạp hết vào bộ nhớ cần vài trăm MB, vượt xa heap 128MB
+	private static final int SO_LAN_NHAN_DOI = 20;
+	private static final int SO_DON = 1 << SO_LAN_NHAN_DOI;
+	private static final int DO_DAI_DIA_CHI = 400;
+	private static final int DO_MOI_SO_DONG = 131_072;
+	private static final long HEAP_TANG_TOI_DA = 32L * 1024 * 1024;
+
+	@MockitoBean
+	private GiuChoTonKhoScheduler giuChoTonKhoScheduler;
+
+	@MockitoBean
+	private XepHangSanPhamService xepHangSanPhamService;
+
+	@Autowired
+	private DonHangExportService donHangExportService;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@AfterEach
+	void tearDown() {
+		jdbcTemplate.update("DELETE FROM don_hang WHERE ngay_dat_hang = ?", NGAY_DAT.atTime(10, 0));
+	}
+
+	@Test
+	void xuatNhieuDonBoNhoKhongTang() throws Exception {
+		taoDonHang();
+
+		long truoc = heapDaDung();
+		DoBoNhoWriter writer = new DoBoNhoWriter();
+		long soDong = donHangExportService.export(NGAY_DAT, NGAY_DAT, null, DonHangExportService.DinhDang.NDJSON, writer);
+
+		log.info("Xuất {} đơn ({} MB dữ liệu): heap trước {} MB, cao nhất trong lúc xuất {} MB",
+				soDong, writer.soKyTu / 1024 / 1024, truoc / 1024 / 1024, writer.heapCaoNhat / 1024 / 1024);
+
+		assertThat(soDong).isEqualTo(SO_DON);
+		assertThat(writer.soDong).isEqualTo(SO_DON);
+		assertThat(writer.heapCaoNhat - truoc).isLessThan(HEAP_TANG_TOI_DA);
+	}
+
+	// Thêm một đơn rồi nhân đôi bằng INSERT ... SELECT, nhanh hơn nhiều so với lưu từng entity
+	private void taoDonHang() {
+		LocalDateTime ngayDat = NGAY_DAT.atTime(10, 0);
+		jdbcTemplate.update("INSERT INTO don_hang (ngay_dat_hang, tong_tien_hang, so_tien_giam, phi_van_chuyen, tong_thanh_toan, " +
+						"trang_thai, phuong_thuc_thanh_toan, trang_thai_thanh_toan, dia_chi_giao_hang, so_dien_thoai_nhan, " +
+						"ho_ten_nguoi_nhan, phien_ban) VALUES (?, 100000, 0, 22000, 122000, 'DA_GIAO', 'COD', 'DA_THANH_TOAN', ?, " +
+						"'0900000000', 'Khách test', 0)",
+				ngayDat, "Số 1, Đường Test, ".repeat(DO_DAI_DIA_CHI).substring(0, DO_DAI_DIA_CHI));
+		for (int i = 0; i < SO_LAN_NHAN_DOI; i++) {
+			jdbcTemplate.update("INSERT INTO don_hang (ngay_dat_hang, tong_tien_hang, so_tien_giam, phi_van_chuyen, tong_thanh_toan, " +
+					"trang_thai, phuong_thuc_thanh_toan, trang_thai_thanh_toan, dia_chi_giao_hang, so_dien_thoai_nhan, " +
+					"ho_ten_nguoi_nhan, phien_ban) " +
+					"SELECT ngay_dat_hang, tong_tien_hang, so_tien_giam, phi_van_chuyen, tong_thanh_toan, " +
+					"trang_thai, phuong_thuc_thanh_toan, trang_thai_thanh_toan, dia_chi_giao_hang, so_dien_thoai_nhan, " +
+					"ho_ten_nguoi_nhan, phien_ban FROM don_hang WHERE ngay_dat_hang = ?", ngayDat);
+		}
+	}
+
+	private static long heapDaDung() {
+		MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+		memory.gc();
+		return memory.getHeapMemoryUsage().getUsed();
+	}
+
+	// Bỏ dữ liệu ghi ra, chỉ đếm dòng và đo heap (sau GC) mỗi DO_MOI_SO_DONG dòng
+	private static class DoBoNhoWriter extends Writer {
+		private long soDong;
+		private long soKyTu;
+		private long heapCaoNhat;
+
+		@Override
+		public void write(char[] cbuf, int off, int len) {
+			soKyTu += len;
+			for (int i = off; i < off + len; i++) {
+				if (cbuf[i] == '\n' && ++soDong % DO_MOI_SO_DONG == 0) {
+					heapCaoNhat = Math.max(heapCaoNhat, heapDaDung());
+				}
+			}
+		}
+
+		@Override
+		public void flush() {
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+}
@@ -0,0 +1,204 @@
+package com.example.petlorshop.services;
+
+import com.example.petlorshop.TestcontainersConfiguration;
+import com.example.petlorshop.dto.ChiTietDonHangRequest;
+import com.example.petlorshop.dto.DonHangRequest;
+import com.example.petlorshop.models.CuaHang;
+import com.example.petlorshop.models.DonHang;
+import com.example.petlorshop.models.NguoiDung;
+import com.example.petlorshop.models.SanPham;
+import com.example.petlorshop.repositories.CuaHangRepository;
+import com.example.petlorshop.repositories.NguoiDungRepository;
+import com.example.petlorshop.repositories.SanPhamRepository;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.client.RestTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.startsWith;
+import static org.springframework.test.web.client.ExpectedCount.manyTimes;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+// Thời gian giữ kết nối DB mỗi đơn khi GHTK chậm: đo bằng thời gian mượn kết nối của Hikari,
+// so sánh cả luồng đặt hàng trong một transaction (trước) với tính giá ngoài transaction (sau)
+@SpringBootTest
+@ActiveProfiles("test")
+@Import(TestcontainersConfiguration.class)
+class DonHangServiceTests {
+
+	private static final Logger log = LoggerFactory.getLogger(DonHangServiceTests.class);
+
+	private static final String GHTK_FEE_URL = "https://services.giaohangtietkiem.vn/services/shipment/fee";
+	private static final long GHTK_TRE_MS = 500;
+
+	// Thời gian mượn từng kết nối (ms), ghi khi kết nối được trả về pool
+	private static final List<Long> thoiGianMuon = new CopyOnWriteArrayList<>();
+
+	@TestConfiguration(proxyBeanMethods = false)
+	static class DoThoiGianGiuKetNoi {
+
+		@Bean
+		static BeanPostProcessor hikariMetricsTracker() {
+			return new BeanPostProcessor() {
+				@Override
+				public Object postProcessAfterInitialization(Object bean, String beanName) {
+					if (bean instanceof HikariDataSource dataSource) {
+						dataSource.setMetricsTrackerFactory((poolName, poolStats) -> new IMetricsTracker() {
+							@Override
+							public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+								thoiGianMuon.add(elapsedBorrowedMillis);
+							}
+						});
+					}
+					return bean;
+				}
+			};
+		}
+	}
+
+	// Thay các bean có job định kỳ bằng mock để job chạy nền không mượn kết nối trong lúc đo
+	@MockitoBean
+	private GiuChoTonKhoScheduler giuChoTonKhoScheduler;
+
+	@MockitoBean
+	private XepHangSanPhamService xepHangSanPhamService;
+
+	@Autowired
+	private DonHangService donHangService;
+
+	@Autowired
+	@Qualifier("ghtkRestTemplate")
+	private RestTemplate ghtkRestTemplate;
+
+	@Autowired
+	private ShippingFeeCache shippingFeeCache;
+
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	@Autowired
+	private CuaHangService cuaHangService;
+
+	@Autowired
+	private CuaHangRepository cuaHangRepository;
+
+	@Autowired
+	private SanPhamRepository sanPhamRepository;
+
+	@Autowired
+	private NguoiDungRepository nguoiDungRepository;
+
+	@BeforeEach
+	void setUp() {
+		CuaHang cuaHang = cuaHangService.getThongTinCuaHang();
+		cuaHang.setGhtkToken("token-test");
+		cuaHangRepository.save(cuaHang);
+
+		// GHTK giả lập trả lời sau GHTK_TRE_MS
+		MockRestServiceServer ghtk = MockRestServiceServer.bindTo(ghtkRestTemplate).build();
+		ghtk.expect(manyTimes(), requestTo(startsWith(GHTK_FEE_URL)))
+				.andRespond(request -> {
+					cho(GHTK_TRE_MS);
+					return withSuccess("{\"success\":true,\"fee\":{\"fee\":22000}}", MediaType.APPLICATION_JSON)
+							.createResponse(request);
+				});
+	}
+
+	@Test
+	void datHangKhongGiuKetNoiTrongLucGoiGhtk() {
+		SanPham sanPham = taoSanPham();
+		NguoiDung nguoiDung = taoNguoiDung();
+
+		// Trước: cả luồng đặt hàng trong một transaction như khi createDonHang còn @Transactional
+		List<Long> truoc = doThoiGianGiuKetNoi(() -> transactionTemplate.executeWithoutResult(
+				status -> donHangService.createDonHang(donHang(nguoiDung, sanPham))));
+		// Sau: tính giá (gồm gọi GHTK) ngoài transaction, chỉ phần ghi nằm trong transaction ngắn
+		List<Long> sau = doThoiGianGiuKetNoi(() -> donHangService.createDonHang(donHang(nguoiDung, sanPham)));
+
+		log.info("Giữ kết nối mỗi đơn khi GHTK trễ {}ms - trước: tổng {}ms, lâu nhất {}ms; sau: tổng {}ms, lâu nhất {}ms",
+				GHTK_TRE_MS, tong(truoc), lauNhat(truoc), tong(sau), lauNhat(sau));
+
+		assertThat(lauNhat(truoc)).isGreaterThanOrEqualTo(GHTK_TRE_MS);
+		assertThat(lauNhat(sau)).isLessThan(GHTK_TRE_MS);
+	}
+
+	// Mỗi lần đo xóa cache phí vận chuyển để đơn nào cũng gọi GHTK
+	private List<Long> doThoiGianGiuKetNoi(Runnable datHang) {
+		shippingFeeCache.clear();
+		thoiGianMuon.clear();
+		datHang.run();
+		return List.copyOf(thoiGianMuon);
+	}
+
+	private static long tong(List<Long> thoiGian) {
+		return thoiGian.stream().mapToLong(Long::longValue).sum();
+	}
+
+	private static long lauNhat(List<Long> thoiGian) {
+		return thoiGian.stream().mapToLong(Long::longValue).max().orElse(0);
+	}
+
+	private static void cho(long millis) {
+		try {
+			TimeUnit.MILLISECONDS.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private DonHangRequest donHang(NguoiDung nguoiDung, SanPham sanPham) {
+		ChiTietDonHangRequest chiTiet = new ChiTietDonHangRequest();
+		chiTiet.setSanPhamId(sanPham.getSanPhamId());
+		chiTiet.setSoLuong(1);
+
+		DonHangRequest request = new DonHangRequest();
+		request.setUserId(nguoiDung.getUserId());
+		request.setDiaChiGiaoHang("1 Test");
+		request.setTinhThanh("TP. Hồ Chí Minh");
+		request.setQuanHuyen("Quận 1");
+		request.setSoDienThoaiNhan("0900000000");
+		request.setPhuongThucThanhToan(DonHang.PhuongThucThanhToan.COD);
+		request.setChiTietDonHangs(List.of(chiTiet));
+		return request;
+	}
+
+	private SanPham taoSanPham() {
+		SanPham sanPham = new SanPham();
+		sanPham.setTenSanPham("Sản phẩm test " + UUID.randomUUID());
+		sanPham.setGia(new BigDecimal("100000"));
+		sanPham.setSoLuongTonKho(10);
+		return sanPhamRepository.save(sanPham);
+	}
+
+	private NguoiDung taoNguoiDung() {
+		NguoiDung nguoiDung = new NguoiDung();
+		nguoiDung.setHoTen("Khách test");
+		nguoiDung.setEmail(UUID.randomUUID() + "@test.local");
+		nguoiDung.setMatKhau("x");
+		return nguoiDungRepository.save(nguoiDung);
+	}
+
+}
@@ -0,0 +1,121 @@
+package com.example.petlorshop.services;
+
+import com.example.petlorshop.models.CuaHang;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.test.web.client.ResponseCreator;
+import org.springframework.web.client.RestTemplate;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.startsWith;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.client.ExpectedCount.once;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.method;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.queryParam;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+// Phí vận chuyển qua GHTK giả lập (MockRestServiceServer): cache theo bậc khối lượng/giá trị, phản hồi lỗi không được cache
+class GhtkServiceTests {
+
+	private static final String GHTK_FEE_URL = "https://services.giaohangtietkiem.vn/services/shipment/fee";
+	private static final long PHI_MAC_DINH = 30000;
+
+	private MockRestServiceServer ghtk;
+	private GhtkService ghtkService;
+
+	@BeforeEach
+	void setUp() {
+		RestTemplate restTemplate = new RestTemplate();
+		ghtk = MockRestServiceServer.bindTo(restTemplate).build();
+
+		CuaHang cuaHang = new CuaHang();
+		cuaHang.setGhtkToken("token-test");
+		cuaHang.setTinhThanh("Hà Nội");
+		cuaHang.setQuanHuyen("Cầu Giấy");
+		CuaHangService cuaHangService = mock(CuaHangService.class);
+		when(cuaHangService.getThongTinCuaHang()).thenReturn(cuaHang);
+
+		// Bảng giá nội bộ trống: khi GHTK lỗi sẽ dùng phí mặc định
+		BangGiaVanChuyenService bangGiaVanChuyenService = mock(BangGiaVanChuyenService.class);
+		when(bangGiaVanChuyenService.traPhiDuPhong(anyString(), anyString(), anyInt(), anyInt())).thenReturn(Optional.empty());
+
+		ghtkService = new GhtkService(restTemplate, PHI_MAC_DINH, 20, 100, 5, 30, false);
+		ReflectionTestUtils.setField(ghtkService, "cuaHangService", cuaHangService);
+		ReflectionTestUtils.setField(ghtkService, "shippingFeeCache", new ShippingFeeCache(360, 10000));
+		ReflectionTestUtils.setField(ghtkService, "bangGiaVanChuyenService", bangGiaVanChuyenService);
+	}
+
+	// Cùng bậc khối lượng (500g) và giá trị (500.000đ): lần thứ hai lấy từ cache, không gọi GHTK
+	@Test
+	void cungBacDungCache() {
+		ghtk.expect(once(), requestTo(startsWith(GHTK_FEE_URL)))
+				.andExpect(method(HttpMethod.GET))
+				.andExpect(queryParam("weight", "500"))
+				.andExpect(queryParam("value", "500000"))
+				.andRespond(phi(22000));
+
+		BigDecimal lan1 = ghtkService.calculateShippingFee("TP. Hồ Chí Minh", "Quận 1", null, 300, 100_000);
+		BigDecimal lan2 = ghtkService.calculateShippingFee(" tp. hồ chí minh ", "Quận  1", null, 450, 400_000);
+
+		assertThat(lan1).isEqualByComparingTo("22000");
+		assertThat(lan2).isEqualByComparingTo("22000");
+		ghtk.verify();
+	}
+
+	// Khác bậc khối lượng hoặc giá trị là khóa cache khác, phải gọi GHTK lại với tham số đã làm tròn
+	@Test
+	void khacBacGoiLaiGhtk() {
+		ghtk.expect(once(), requestTo(startsWith(GHTK_FEE_URL)))
+				.andExpect(queryParam("weight", "500"))
+				.andExpect(queryParam("value", "500000"))
+				.andRespond(phi(22000));
+		ghtk.expect(once(), requestTo(startsWith(GHTK_FEE_URL)))
+				.andExpect(queryParam("weight", "1000"))
+				.andExpect(queryParam("value", "500000"))
+				.andRespond(phi(27000));
+		ghtk.expect(once(), requestTo(startsWith(GHTK_FEE_URL)))
+				.andExpect(queryParam("weight", "500"))
+				.andExpect(queryParam("value", "1000000"))
+				.andRespond(phi(25000));
+
+		assertThat(ghtkService.calculateShippingFee("TP. Hồ Chí Minh", "Quận 1", null, 500, 500_000))
+				.isEqualByComparingTo("22000");
+		assertThat(ghtkService.calculateShippingFee("TP. Hồ Chí Minh", "Quận 1", null, 600, 500_000))
+				.isEqualByComparingTo("27000");
+		assertThat(ghtkService.calculateShippingFee("TP. Hồ Chí Minh", "Quận 1", null, 500, 500_001))
+				.isEqualByComparingTo("25000");
+		ghtk.verify();
+	}
+
+	// GHTK trả success:false: dùng phí dự phòng và không cache, lần sau gọi lại GHTK
+	@Test
+	void phanHoiLoiKhongDuocCache() {
+		ghtk.expect(once(), requestTo(startsWith(GHTK_FEE_URL)))
+				.andRespond(withSuccess("{\"success\":false,\"message\":\"Địa chỉ không hợp lệ\"}", MediaType.APPLICATION_JSON));
+		ghtk.expect(once(), requestTo(startsWith(GHTK_FEE_URL)))
+				.andRespond(phi(22000));
+
+		BigDecimal lan1 = ghtkService.calculateShippingFee("TP. Hồ Chí Minh", "Quận 1", null, 500, 100_000);
+		BigDecimal lan2 = ghtkService.calculateShippingFee("TP. Hồ Chí Minh", "Quận 1", null, 500, 100_000);
+
+		assertThat(lan1).isEqualByComparingTo(BigDecimal.valueOf(PHI_MAC_DINH));
+		assertThat(lan2).isEqualByComparingTo("22000");
+		ghtk.verify();
+	}
+
+	private static ResponseCreator phi(int fee) {
+		return withSuccess("{\"success\":true,\"fee\":{\"fee\":" + fee + "}}", MediaType.APPLICATION_JSON);
+	}
+
+}
@@ -0,0 +1,158 @@
+package com.example.petlorshop.services;
+
+import com.example.petlorshop.TestcontainersConfiguration;
+import com.example.petlorshop.dto.ChiTietDonHangRequest;
+import com.example.petlorshop.dto.DonHangRequest;
+import com.example.petlorshop.models.DonHang;
+import com.example.petlorshop.models.KhuyenMai;
+import com.example.petlorshop.models.NguoiDung;
+import com.example.petlorshop.models.SanPham;
+import com.example.petlorshop.repositories.DonHangRepository;
+import com.example.petlorshop.repositories.KhuyenMaiRepository;
+import com.example.petlorshop.repositories.NguoiDungRepository;
+import com.example.petlorshop.repositories.SanPhamRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Cùng một Idempotency-Key gửi đồng thời từ nhiều luồng: chỉ tạo một đơn, trừ tồn kho và lượt khuyến mãi một lần
+@SpringBootTest
+@ActiveProfiles("test")
+@Import(TestcontainersConfiguration.class)
+class IdempotencyServiceTests {
+
+	private static final int TON_KHO = 10;
+	private static final int SO_LUOT = 10;
+	private static final int SO_LUONG_DONG_THOI = 20;
+
+	@Autowired
+	private IdempotencyService idempotencyService;
+
+	@Autowired
+	private DonHangService donHangService;
+
+	@Autowired
+	private KhuyenMaiCache khuyenMaiCache;
+
+	@Autowired
+	private KhuyenMaiRepository khuyenMaiRepository;
+
+	@Autowired
+	private SanPhamRepository sanPhamRepository;
+
+	@Autowired
+	private NguoiDungRepository nguoiDungRepository;
+
+	@Autowired
+	private DonHangRepository donHangRepository;
+
+	@Test
+	void cungKhoaDongThoiChiTaoMotDon() throws Exception {
+		SanPham sanPham = taoSanPham();
+		KhuyenMai khuyenMai = taoKhuyenMai();
+		NguoiDung nguoiDung = taoNguoiDung();
+		String scope = "user:" + nguoiDung.getEmail();
+		String key = UUID.randomUUID().toString();
+
+		ExecutorService pool = Executors.newFixedThreadPool(SO_LUONG_DONG_THOI);
+		CountDownLatch batDau = new CountDownLatch(1);
+		List<Future<Integer>> ketQua = new ArrayList<>();
+		Set<Integer> donHangIds = new HashSet<>();
+		try {
+			for (int i = 0; i < SO_LUONG_DONG_THOI; i++) {
+				// Mỗi luồng một body riêng nhưng cùng nội dung, như client gửi lại
+				DonHangRequest request = donHang(nguoiDung, sanPham, khuyenMai);
+				ketQua.add(pool.submit(() -> {
+					batDau.await();
+					return idempotencyService.execute(scope, key, request,
+							() -> donHangService.createDonHang(request).getDonHangId());
+				}));
+			}
+			batDau.countDown();
+			for (Future<Integer> future : ketQua) {
+				donHangIds.add(future.get(60, TimeUnit.SECONDS));
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+
+		assertThat(donHangIds).hasSize(1);
+		assertThat(donHangRepository.findByNguoiDung_Email(nguoiDung.getEmail()))
+				.extracting(DonHang::getDonHangId)
+				.containsExactlyElementsOf(donHangIds);
+		assertThat(sanPhamRepository.findById(sanPham.getSanPhamId()).orElseThrow().getSoLuongTonKho()).isEqualTo(TON_KHO - 1);
+		assertThat(khuyenMaiRepository.findById(khuyenMai.getKhuyenMaiId()).orElseThrow().getSoLuongGioiHan()).isEqualTo(SO_LUOT - 1);
+
+		// Dùng lại key với giỏ hàng khác
+		DonHangRequest khac = donHang(nguoiDung, sanPham, khuyenMai);
+		khac.getChiTietDonHangs().get(0).setSoLuong(2);
+		assertThatThrownBy(() -> idempotencyService.execute(scope, key, khac,
+				() -> donHangService.createDonHang(khac).getDonHangId()))
+				.isInstanceOf(IdempotencyService.KhoaDaDungException.class);
+		assertThat(donHangRepository.findByNguoiDung_Email(nguoiDung.getEmail())).hasSize(1);
+	}
+
+	// Đơn COD, không gửi tỉnh/quận nên không gọi GHTK
+	private DonHangRequest donHang(NguoiDung nguoiDung, SanPham sanPham, KhuyenMai khuyenMai) {
+		ChiTietDonHangRequest chiTiet = new ChiTietDonHangRequest();
+		chiTiet.setSanPhamId(sanPham.getSanPhamId());
+		chiTiet.setSoLuong(1);
+
+		DonHangRequest request = new DonHangRequest();
+		request.setUserId(nguoiDung.getUserId());
+		request.setDiaChiGiaoHang("1 Test");
+		request.setSoDienThoaiNhan("0900000000");
+		request.setMaKhuyenMai(khuyenMai.getMaCode());
+		request.setPhuongThucThanhToan(DonHang.PhuongThucThanhToan.COD);
+		request.setChiTietDonHangs(new ArrayList<>(List.of(chiTiet)));
+		return request;
+	}
+
+	private KhuyenMai taoKhuyenMai() {
+		KhuyenMai khuyenMai = new KhuyenMai();
+		khuyenMai.setMaCode("IDEM" + UUID.randomUUID().toString().substring(0, 8));
+		khuyenMai.setLoaiGiamGia(KhuyenMai.LoaiGiamGia.SO_TIEN);
+		khuyenMai.setGiaTriGiam(new BigDecimal("10000"));
+		khuyenMai.setNgayBatDau(LocalDateTime.now().minusDays(1));
+		khuyenMai.setNgayKetThuc(LocalDateTime.now().plusDays(1));
+		khuyenMai.setSoLuongGioiHan(SO_LUOT);
+		khuyenMai = khuyenMaiRepository.save(khuyenMai);
+		khuyenMaiCache.invalidateAfterCommit();
+		return khuyenMai;
+	}
+
+	private SanPham taoSanPham() {
+		SanPham sanPham = new SanPham();
+		sanPham.setTenSanPham("Sản phẩm test " + UUID.randomUUID());
+		sanPham.setGia(new BigDecimal("100000"));
+		sanPham.setSoLuongTonKho(TON_KHO);
+		return sanPhamRepository.save(sanPham);
+	}
+
+	private NguoiDung taoNguoiDung() {
+		NguoiDung nguoiDung = new NguoiDung();
+		nguoiDung.setHoTen("Khách test");
+		nguoiDung.setEmail(UUID.randomUUID() + "@test.local");
+		nguoiDung.setMatKhau("x");
+		return nguoiDungRepository.save(nguoiDung);
+	}
+
+}
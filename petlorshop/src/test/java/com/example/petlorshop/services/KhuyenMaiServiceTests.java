@@ -0,0 +1,77 @@
+package com.example.petlorshop.services;
+
+import com.example.petlorshop.TestcontainersConfiguration;
+import com.example.petlorshop.models.KhuyenMai;
+import com.example.petlorshop.repositories.KhuyenMaiRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Nhiều đơn dùng cùng lúc một mã khuyến mãi giới hạn lượt: không bao giờ dùng quá số lượt
+@SpringBootTest
+@ActiveProfiles("test")
+@Import(TestcontainersConfiguration.class)
+class KhuyenMaiServiceTests {
+
+	private static final int SO_LUOT = 5;
+	private static final int SO_LUONG_DONG_THOI = 30;
+
+	@Autowired
+	private KhuyenMaiService khuyenMaiService;
+
+	@Autowired
+	private KhuyenMaiRepository khuyenMaiRepository;
+
+	@Test
+	void dungMaDongThoiKhongVuotGioiHan() throws Exception {
+		KhuyenMai khuyenMai = new KhuyenMai();
+		khuyenMai.setMaCode("TEST" + UUID.randomUUID().toString().substring(0, 8));
+		khuyenMai.setLoaiGiamGia(KhuyenMai.LoaiGiamGia.SO_TIEN);
+		khuyenMai.setGiaTriGiam(new BigDecimal("10000"));
+		khuyenMai.setNgayBatDau(LocalDateTime.now().minusDays(1));
+		khuyenMai.setNgayKetThuc(LocalDateTime.now().plusDays(1));
+		khuyenMai.setSoLuongGioiHan(SO_LUOT);
+		khuyenMai = khuyenMaiRepository.save(khuyenMai);
+		String maCode = khuyenMai.getMaCode();
+
+		ExecutorService pool = Executors.newFixedThreadPool(SO_LUONG_DONG_THOI);
+		CountDownLatch batDau = new CountDownLatch(1);
+		List<Future<Boolean>> ketQua = new ArrayList<>();
+		int thanhCong = 0;
+		try {
+			for (int i = 0; i < SO_LUONG_DONG_THOI; i++) {
+				ketQua.add(pool.submit(() -> {
+					batDau.await();
+					return khuyenMaiService.suDungMaKhuyenMai(maCode);
+				}));
+			}
+			batDau.countDown();
+			for (Future<Boolean> future : ketQua) {
+				if (future.get(60, TimeUnit.SECONDS)) {
+					thanhCong++;
+				}
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+
+		assertThat(thanhCong).isEqualTo(SO_LUOT);
+		assertThat(khuyenMaiRepository.findById(khuyenMai.getKhuyenMaiId()).orElseThrow().getSoLuongGioiHan()).isZero();
+	}
+
+}
@@ -0,0 +1,181 @@
+package com.example.petlorshop.services;
+
+import com.example.petlorshop.TestcontainersConfiguration;
+import com.example.petlorshop.dto.LichHenRequest;
+import com.example.petlorshop.models.DanhMucDichVu;
+import com.example.petlorshop.models.DichVu;
+import com.example.petlorshop.models.LichHen;
+import com.example.petlorshop.models.NguoiDung;
+import com.example.petlorshop.models.NhanVien;
+import com.example.petlorshop.models.Role;
+import com.example.petlorshop.repositories.DanhMucDichVuRepository;
+import com.example.petlorshop.repositories.DichVuRepository;
+import com.example.petlorshop.repositories.LichHenRepository;
+import com.example.petlorshop.repositories.NguoiDungRepository;
+import com.example.petlorshop.repositories.NhanVienRepository;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Nhiều khách đặt cùng lúc, không chọn nhân viên: đo số lịch đặt được mỗi giây,
+// không nhân viên nào bị xếp hai lịch trùng giờ và mọi chỗ trống đều được đặt, không hơn
+@SpringBootTest
+@ActiveProfiles("test")
+@Import(TestcontainersConfiguration.class)
+class LichHenServiceTests {
+
+	private static final Logger log = LoggerFactory.getLogger(LichHenServiceTests.class);
+
+	private static final int SO_NHAN_VIEN = 4;
+	private static final int THOI_LUONG_PHUT = 30;
+	// Khung giờ 08:00 - 11:30, mỗi khung nhận tối đa SO_NHAN_VIEN lịch
+	private static final int SO_KHUNG_GIO = 8;
+	private static final int YEU_CAU_MOI_KHUNG = 6;
+	private static final int SO_LUONG = 16;
+
+	// Thay các bean có job định kỳ bằng mock để job chạy nền không chiếm kết nối trong lúc đo
+	@MockitoBean
+	private GiuChoTonKhoScheduler giuChoTonKhoScheduler;
+
+	@MockitoBean
+	private XepHangSanPhamService xepHangSanPhamService;
+
+	@Autowired
+	private LichHenService lichHenService;
+
+	@Autowired
+	private NhanVienCache nhanVienCache;
+
+	@Autowired
+	private DichVuCache dichVuCache;
+
+	@Autowired
+	private DanhMucDichVuRepository danhMucDichVuRepository;
+
+	@Autowired
+	private DichVuRepository dichVuRepository;
+
+	@Autowired
+	private NguoiDungRepository nguoiDungRepository;
+
+	@Autowired
+	private NhanVienRepository nhanVienRepository;
+
+	@Autowired
+	private LichHenRepository lichHenRepository;
+
+	@Test
+	void datLichDongThoiKhongTrungLich() throws Exception {
+		List<Integer> nhanVienIds = new ArrayList<>();
+		for (int i = 0; i < SO_NHAN_VIEN; i++) {
+			nhanVienIds.add(taoBacSi().getNhanVienId());
+		}
+		nhanVienCache.invalidateAfterCommit();
+		DichVu dichVu = taoDichVu();
+		dichVuCache.invalidateAfterCommit();
+		NguoiDung khach = taoNguoiDung("Khách test", Role.USER);
+
+		int sucChua = nhanVienCache.theoVaiTro(Role.DOCTOR).size() * SO_KHUNG_GIO;
+		LocalDateTime moCua = LocalDate.now().plusDays(1).atTime(LocalTime.of(8, 0));
+		int soYeuCau = SO_KHUNG_GIO * YEU_CAU_MOI_KHUNG;
+
+		ExecutorService pool = Executors.newFixedThreadPool(SO_LUONG);
+		CountDownLatch batDau = new CountDownLatch(1);
+		List<Future<Boolean>> ketQua = new ArrayList<>();
+		int thanhCong = 0;
+		long thoiGianMs;
+		try {
+			for (int i = 0; i < soYeuCau; i++) {
+				LichHenRequest request = new LichHenRequest();
+				request.setUserId(khach.getUserId());
+				request.setDichVuId(dichVu.getDichVuId());
+				request.setThoiGianBatDau(moCua.plusMinutes((long) (i % SO_KHUNG_GIO) * THOI_LUONG_PHUT));
+				ketQua.add(pool.submit(() -> {
+					batDau.await();
+					try {
+						lichHenService.createLichHen(request);
+						return true;
+					} catch (RuntimeException e) {
+						return false;
+					}
+				}));
+			}
+			long bd = System.nanoTime();
+			batDau.countDown();
+			for (Future<Boolean> future : ketQua) {
+				if (future.get(120, TimeUnit.SECONDS)) {
+					thanhCong++;
+				}
+			}
+			thoiGianMs = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - bd));
+		} finally {
+			pool.shutdownNow();
+		}
+
+		log.info("Đặt lịch đồng thời ({} luồng): {}/{} yêu cầu thành công, sức chứa {}, {}ms, {} lịch/giây",
+				SO_LUONG, thanhCong, soYeuCau, sucChua, thoiGianMs, thanhCong * 1000L / thoiGianMs);
+
+		// Mỗi khung có nhiều yêu cầu hơn số nhân viên: khóa không chờ (SKIP LOCKED) nên không yêu cầu nào bị hủy vì deadlock,
+		// người đang bị khóa được thử lại nên mọi chỗ đều được đặt
+		assertThat(thanhCong).isEqualTo(sucChua);
+		for (Integer nhanVienId : nhanVienIds) {
+			List<LichHen> lich = lichHenRepository.findByNhanVienIdAndDateRange(nhanVienId, moCua, moCua.plusHours(10));
+			for (int i = 1; i < lich.size(); i++) {
+				assertThat(lich.get(i).getThoiGianBatDau()).isAfterOrEqualTo(lich.get(i - 1).getThoiGianKetThuc());
+			}
+		}
+	}
+
+	private NhanVien taoBacSi() {
+		NguoiDung nguoiDung = taoNguoiDung("Bác sĩ test", Role.DOCTOR);
+		NhanVien nhanVien = new NhanVien();
+		nhanVien.setHoTen(nguoiDung.getHoTen());
+		nhanVien.setNguoiDung(nguoiDung);
+		return nhanVienRepository.save(nhanVien);
+	}
+
+	private DichVu taoDichVu() {
+		DanhMucDichVu danhMuc = new DanhMucDichVu();
+		danhMuc.setTenDanhMucDv("Khám test " + UUID.randomUUID().toString().substring(0, 8));
+		danhMuc.setVaiTroThucHien(Role.DOCTOR);
+		danhMuc = danhMucDichVuRepository.save(danhMuc);
+
+		DichVu dichVu = new DichVu();
+		dichVu.setTenDichVu("Khám tổng quát test");
+		dichVu.setGiaDichVu(new BigDecimal("200000"));
+		dichVu.setThoiLuongUocTinh(THOI_LUONG_PHUT);
+		dichVu.setVaiTroThucHien(Role.DOCTOR);
+		dichVu.setDanhMucDichVu(danhMuc);
+		return dichVuRepository.save(dichVu);
+	}
+
+	private NguoiDung taoNguoiDung(String hoTen, Role role) {
+		NguoiDung nguoiDung = new NguoiDung();
+		nguoiDung.setHoTen(hoTen);
+		nguoiDung.setEmail(UUID.randomUUID() + "@test.local");
+		nguoiDung.setMatKhau("x");
+		nguoiDung.setRole(role);
+		return nguoiDungRepository.save(nguoiDung);
+	}
+
+}
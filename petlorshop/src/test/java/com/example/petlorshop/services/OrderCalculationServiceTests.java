@@ -0,0 +1,77 @@
+package com.example.petlorshop.services;
+
+import com.example.petlorshop.TestcontainersConfiguration;
+import com.example.petlorshop.dto.ChiTietDonHangRequest;
+import com.example.petlorshop.dto.OrderCalculationResult;
+import com.example.petlorshop.models.SanPham;
+import com.example.petlorshop.repositories.SanPhamRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Tính giá giỏ N dòng chỉ tốn một truy vấn sản phẩm (đo bằng Hibernate statistics)
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@ActiveProfiles("test")
+@Import(TestcontainersConfiguration.class)
+class OrderCalculationServiceTests {
+
+	private static final int SO_DONG = 10;
+
+	// Thay các bean có job định kỳ bằng mock để job chạy nền không làm lệch bộ đếm câu lệnh
+	@MockitoBean
+	private GiuChoTonKhoScheduler giuChoTonKhoScheduler;
+
+	@MockitoBean
+	private XepHangSanPhamService xepHangSanPhamService;
+
+	@Autowired
+	private OrderCalculationService orderCalculationService;
+
+	@Autowired
+	private SanPhamRepository sanPhamRepository;
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	@Test
+	void tinhGioHangNhieuDongChiMotTruyVanSanPham() {
+		List<ChiTietDonHangRequest> items = new ArrayList<>();
+		for (int i = 0; i < SO_DONG; i++) {
+			SanPham sanPham = new SanPham();
+			sanPham.setTenSanPham("Sản phẩm test " + UUID.randomUUID());
+			sanPham.setGia(new BigDecimal("10000"));
+			sanPham.setSoLuongTonKho(100);
+			sanPham = sanPhamRepository.save(sanPham);
+
+			ChiTietDonHangRequest item = new ChiTietDonHangRequest();
+			item.setSanPhamId(sanPham.getSanPhamId());
+			item.setSoLuong(2);
+			items.add(item);
+		}
+
+		Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		statistics.clear();
+
+		// Không có mã khuyến mãi và tỉnh/quận nên không đọc khuyến mãi, không gọi GHTK
+		OrderCalculationResult result = orderCalculationService.calculateOrder(items, null, null, null, null);
+
+		assertThat(result.getChiTietDonHangs()).hasSize(SO_DONG);
+		assertThat(result.getTongTienHang()).isEqualByComparingTo(new BigDecimal(10000L * 2 * SO_DONG));
+		assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+		assertThat(statistics.getEntityLoadCount()).isEqualTo(SO_DONG);
+	}
+
+}
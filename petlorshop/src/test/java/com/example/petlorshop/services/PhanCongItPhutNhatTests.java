@@ -0,0 +1,182 @@
+package com.example.petlorshop.services;
+
+import com.example.petlorshop.models.LichHen;
+import com.example.petlorshop.models.NhanVien;
+import com.example.petlorshop.repositories.LichHenRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.LongSummaryStatistics;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// Mô phỏng tự phân công trong bộ nhớ (không DB): chỉ mục lịch nhân viên + chiến lược ít phút nhất,
+// lọc ứng viên rảnh theo ID rồi để chiến lược chọn như LichHenService.findAvailableStaff
+class PhanCongItPhutNhatTests {
+
+	private static final Logger log = LoggerFactory.getLogger(PhanCongItPhutNhatTests.class);
+
+	private static final List<Integer> NHAN_VIEN = List.of(1, 2, 3);
+	private static final LocalDateTime MO_CUA = LocalDate.now().plusDays(1).atTime(8, 0);
+	private static final int THOI_LUONG_PHUT = 30;
+	private static final int PHUT_MOT_NGAY = 600;
+	private static final int SO_LUOT_DAT = 60;
+	private static final long SEED = 42;
+
+	private LichNhanVienIndex lichNhanVienIndex;
+	private PhanCongItPhutNhat phanCong;
+	private int lichHenIdTiepTheo = 1000;
+
+	@BeforeEach
+	void setUp() {
+		// Nhân viên 1 đã có một lịch 60 phút chiều mai
+		List<Object[]> daDat = new ArrayList<>();
+		daDat.add(new Object[]{1, 1, MO_CUA.plusHours(6), MO_CUA.plusHours(7), LichHen.TrangThai.CHO_XAC_NHAN});
+		lichNhanVienIndex = chiMuc(daDat);
+		phanCong = itPhutNhat(lichNhanVienIndex);
+	}
+
+	/**
+	 * Một ngày làm việc (08:00 - 18:00) của 6 nhân viên, hai người đã bận một phần ngày:
+	 * 60 lượt đặt lịch 30 hoặc 60 phút vào khung giờ ngẫu nhiên (cùng seed cho cả hai chiến lược), tổng nhu cầu
+	 * khoảng 80% sức chứa. Lượt không còn ai rảnh là xung đột. Ít phút nhất phải chia tải đều hơn theo thứ tự ID
+	 * mà không làm tăng xung đột.
+	 */
+	@Test
+	void moPhongMotNgay() {
+		List<Integer> nhanVien = List.of(1, 2, 3, 4, 5, 6);
+		List<Object[]> daDat = new ArrayList<>();
+		daDat.add(new Object[]{1, 1, MO_CUA, MO_CUA.plusHours(4), LichHen.TrangThai.DA_XAC_NHAN});
+		daDat.add(new Object[]{2, 4, MO_CUA.plusHours(5), MO_CUA.plusHours(7), LichHen.TrangThai.CHO_XAC_NHAN});
+
+		LichNhanVienIndex chiMucItPhut = chiMuc(daDat);
+		KetQuaMoPhong itPhut = moPhong(chiMucItPhut, itPhutNhat(chiMucItPhut), nhanVien);
+		KetQuaMoPhong theoThuTu = moPhong(chiMuc(daDat), new PhanCongTheoThuTu(), nhanVien);
+
+		log.info("Mô phỏng một ngày, {} lượt đặt: it-phut-nhat xung đột {}/{} ({}%), phút đã đặt thấp nhất {} cao nhất {}; "
+						+ "theo-thu-tu xung đột {}/{} ({}%), thấp nhất {} cao nhất {}",
+				SO_LUOT_DAT, itPhut.xungDot(), SO_LUOT_DAT, itPhut.xungDot() * 100 / SO_LUOT_DAT,
+				itPhut.phut().getMin(), itPhut.phut().getMax(),
+				theoThuTu.xungDot(), SO_LUOT_DAT, theoThuTu.xungDot() * 100 / SO_LUOT_DAT,
+				theoThuTu.phut().getMin(), theoThuTu.phut().getMax());
+
+		assertThat((double) itPhut.xungDot() / SO_LUOT_DAT).isLessThanOrEqualTo(0.2);
+		assertThat(itPhut.xungDot()).isLessThanOrEqualTo(theoThuTu.xungDot());
+		// Chênh lệch không quá hai lịch 60 phút, trong khi theo thứ tự ID dồn việc cho người ID nhỏ
+		assertThat(itPhut.chenhLech()).isLessThanOrEqualTo(120);
+		assertThat(itPhut.chenhLech()).isLessThan(theoThuTu.chenhLech());
+	}
+
+	// Đặt liên tiếp: luôn chọn người ít phút nhất, bằng nhau thì ID nhỏ hơn; tải chênh nhau không quá một lịch
+	@Test
+	void chiaDeuTaiTheoSoPhut() {
+		List<Integer> duocChon = new ArrayList<>();
+		for (int i = 0; i < 6; i++) {
+			LocalDateTime start = MO_CUA.plusMinutes((long) i * THOI_LUONG_PHUT);
+			duocChon.add(datLich(start, start.plusMinutes(THOI_LUONG_PHUT)).getNhanVien().getNhanVienId());
+		}
+
+		assertThat(duocChon).containsExactly(2, 3, 2, 3, 1, 2);
+		LocalDate ngay = MO_CUA.toLocalDate();
+		assertThat(NHAN_VIEN.stream().map(id -> lichNhanVienIndex.soPhutDaDat(id, ngay)).toList())
+				.containsExactly(90L, 90L, 60L);
+	}
+
+	// Người đang bận khung giờ bị loại trước khi chiến lược chọn; hủy lịch thì trả lại cả khung giờ lẫn số phút
+	@Test
+	void boQuaNguoiBanVaHuyLichGiamTai() {
+		LocalDateTime start = MO_CUA.plusHours(1);
+		LocalDateTime end = start.plusMinutes(THOI_LUONG_PHUT);
+		LichHen lichCua2 = datLich(start, end);
+		assertThat(lichCua2.getNhanVien().getNhanVienId()).isEqualTo(2);
+
+		assertThat(datLich(start, end).getNhanVien().getNhanVienId()).isEqualTo(3);
+
+		lichCua2.setTrangThai(LichHen.TrangThai.DA_HUY);
+		lichNhanVienIndex.capNhatSauCommit(lichCua2);
+		assertThat(lichNhanVienIndex.soPhutDaDat(2, start.toLocalDate())).isZero();
+		assertThat(lichNhanVienIndex.ranh(2, start, end, null)).isTrue();
+		assertThat(datLich(start, end).getNhanVien().getNhanVienId()).isEqualTo(2);
+	}
+
+	@Test
+	void theoThuTuChonIdNhoNhat() {
+		assertThat(new PhanCongTheoThuTu().sapXep(NHAN_VIEN, MO_CUA, MO_CUA.plusMinutes(THOI_LUONG_PHUT)))
+				.containsExactlyElementsOf(NHAN_VIEN);
+	}
+
+	private KetQuaMoPhong moPhong(LichNhanVienIndex chiMuc, ChienLuocPhanCong chienLuoc, List<Integer> nhanVien) {
+		Random random = new Random(SEED);
+		int xungDot = 0;
+		for (int i = 0; i < SO_LUOT_DAT; i++) {
+			int thoiLuong = random.nextBoolean() ? 30 : 60;
+			LocalDateTime start = MO_CUA.plusMinutes((long) THOI_LUONG_PHUT * random.nextInt((PHUT_MOT_NGAY - thoiLuong) / THOI_LUONG_PHUT + 1));
+			if (datLich(chiMuc, chienLuoc, nhanVien, start, start.plusMinutes(thoiLuong)) == null) {
+				xungDot++;
+			}
+		}
+		LocalDate ngay = MO_CUA.toLocalDate();
+		return new KetQuaMoPhong(xungDot, nhanVien.stream().mapToLong(id -> chiMuc.soPhutDaDat(id, ngay)).summaryStatistics());
+	}
+
+	private record KetQuaMoPhong(int xungDot, LongSummaryStatistics phut) {
+		long chenhLech() {
+			return phut.getMax() - phut.getMin();
+		}
+	}
+
+	private LichHen datLich(LocalDateTime start, LocalDateTime end) {
+		return datLich(lichNhanVienIndex, phanCong, NHAN_VIEN, start, end);
+	}
+
+	// Ứng viên rảnh theo ID tăng dần, chiến lược chọn người đứng đầu (null nếu không ai rảnh);
+	// ngoài transaction chỉ mục cập nhật ngay
+	private LichHen datLich(LichNhanVienIndex chiMuc, ChienLuocPhanCong chienLuoc, List<Integer> nhanVien,
+							LocalDateTime start, LocalDateTime end) {
+		List<Integer> ungVienRanh = nhanVien.stream()
+				.filter(id -> chiMuc.ranh(id, start, end, null))
+				.toList();
+		if (ungVienRanh.isEmpty()) {
+			return null;
+		}
+		Integer nhanVienId = chienLuoc.sapXep(ungVienRanh, start, end).get(0);
+
+		NhanVien nhanVien = new NhanVien();
+		nhanVien.setNhanVienId(nhanVienId);
+		LichHen lichHen = new LichHen();
+		lichHen.setLichHenId(lichHenIdTiepTheo++);
+		lichHen.setNhanVien(nhanVien);
+		lichHen.setThoiGianBatDau(start);
+		lichHen.setThoiGianKetThuc(end);
+		lichHen.setTrangThai(LichHen.TrangThai.CHO_XAC_NHAN);
+		chiMuc.capNhatSauCommit(lichHen);
+		return lichHen;
+	}
+
+	private static LichNhanVienIndex chiMuc(List<Object[]> daDat) {
+		LichHenRepository lichHenRepository = mock(LichHenRepository.class);
+		when(lichHenRepository.findKhoangChiemLich(any(), any())).thenReturn(daDat);
+		LichNhanVienIndex chiMuc = new LichNhanVienIndex();
+		ReflectionTestUtils.setField(chiMuc, "lichHenRepository", lichHenRepository);
+		chiMuc.dungLai();
+		return chiMuc;
+	}
+
+	private static PhanCongItPhutNhat itPhutNhat(LichNhanVienIndex chiMuc) {
+		PhanCongItPhutNhat phanCong = new PhanCongItPhutNhat();
+		ReflectionTestUtils.setField(phanCong, "lichNhanVienIndex", chiMuc);
+		return phanCong;
+	}
+
+}
@@ -0,0 +1,194 @@
+package com.example.petlorshop.services;
+
+import com.example.petlorshop.TestcontainersConfiguration;
+import com.example.petlorshop.dto.ChiTietDonHangRequest;
+import com.example.petlorshop.dto.DonHangRequest;
+import com.example.petlorshop.models.DonHang;
+import com.example.petlorshop.models.GiuChoTonKho;
+import com.example.petlorshop.models.NguoiDung;
+import com.example.petlorshop.models.SanPham;
+import com.example.petlorshop.repositories.DonHangRepository;
+import com.example.petlorshop.repositories.GiuChoTonKhoRepository;
+import com.example.petlorshop.repositories.NguoiDungRepository;
+import com.example.petlorshop.repositories.SanPhamRepository;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Tồn kho khi đặt hàng, thanh toán và hủy đơn: không bán quá tồn kho, không trừ/cộng lại sai số lượng
+@SpringBootTest
+@ActiveProfiles("test")
+@Import(TestcontainersConfiguration.class)
+class TonKhoServiceTests {
+
+	private static final Logger log = LoggerFactory.getLogger(TonKhoServiceTests.class);
+
+	private static final int TON_KHO = 5;
+	private static final int SO_DON_DONG_THOI = 20;
+
+	@Autowired
+	private DonHangService donHangService;
+
+	@Autowired
+	private SanPhamRepository sanPhamRepository;
+
+	@Autowired
+	private NguoiDungRepository nguoiDungRepository;
+
+	@Autowired
+	private DonHangRepository donHangRepository;
+
+	@Autowired
+	private GiuChoTonKhoRepository giuChoTonKhoRepository;
+
+	@Autowired
+	private TonKhoService tonKhoService;
+
+	// Nhiều đơn đặt cùng lúc một sản phẩm sắp hết hàng
+	@Test
+	void datHangCodDongThoiKhongBanQuaTonKho() throws Exception {
+		SanPham sanPham = taoSanPham(TON_KHO);
+		NguoiDung nguoiDung = taoNguoiDung();
+
+		int thanhCong = datHangDongThoi(nguoiDung, sanPham, DonHang.PhuongThucThanhToan.COD);
+
+		// Mỗi đơn một sản phẩm: đúng TON_KHO đơn thành công, không đơn nào thất bại oan khi còn hàng
+		SanPham sau = sanPhamRepository.findById(sanPham.getSanPhamId()).orElseThrow();
+		assertThat(thanhCong).isEqualTo(TON_KHO);
+		assertThat(sau.getSoLuongTonKho()).isZero();
+	}
+
+	@Test
+	void datHangOnlineDongThoiKhongGiuChoQuaTonKho() throws Exception {
+		SanPham sanPham = taoSanPham(TON_KHO);
+		NguoiDung nguoiDung = taoNguoiDung();
+
+		int thanhCong = datHangDongThoi(nguoiDung, sanPham, DonHang.PhuongThucThanhToan.VNPAY);
+
+		SanPham sau = sanPhamRepository.findById(sanPham.getSanPhamId()).orElseThrow();
+		assertThat(thanhCong).isEqualTo(TON_KHO);
+		assertThat(sau.getSoLuongTonKho()).isEqualTo(TON_KHO);
+		assertThat(sau.getSoLuongGiuCho()).isEqualTo(TON_KHO);
+		assertThat(sau.getSoLuongCoTheBan()).isZero();
+	}
+
+	// Giữ chỗ hết hạn: đơn bị hủy, thanh toán đến trễ không được ghi nhận và không làm lệch tồn kho
+	@Test
+	void thanhToanTreSauKhiGiuChoHetHanKhongDuocGhiNhan() {
+		SanPham sanPham = taoSanPham(1);
+		NguoiDung nguoiDung = taoNguoiDung();
+		DonHang donOnline = donHangService.createDonHang(donHang(nguoiDung, sanPham, DonHang.PhuongThucThanhToan.VNPAY));
+
+		List<GiuChoTonKho> soGhi = giuChoTonKhoRepository.findAll().stream()
+				.filter(g -> g.getDonHang().getDonHangId().equals(donOnline.getDonHangId()))
+				.toList();
+		soGhi.forEach(g -> g.setHetHan(LocalDateTime.now().minusMinutes(1)));
+		giuChoTonKhoRepository.saveAll(soGhi);
+		tonKhoService.giaiPhongGiuChoHetHan(1000);
+
+		assertThat(donHangRepository.findById(donOnline.getDonHangId()).orElseThrow().getTrangThai())
+				.isEqualTo(DonHang.TrangThaiDonHang.DA_HUY);
+		assertThat(tonKhoService.xacNhanThanhToan(donOnline.getDonHangId())).isFalse();
+
+		SanPham sau = sanPhamRepository.findById(sanPham.getSanPhamId()).orElseThrow();
+		assertThat(sau.getSoLuongTonKho()).isEqualTo(1);
+		assertThat(sau.getSoLuongGiuCho()).isZero();
+	}
+
+	// Hủy đơn COD cộng lại đúng số lượng đã trừ
+	@Test
+	void huyDonCodHoanLaiTonKho() {
+		SanPham sanPham = taoSanPham(3);
+		NguoiDung nguoiDung = taoNguoiDung();
+		DonHang donCod = donHangService.createDonHang(donHang(nguoiDung, sanPham, DonHang.PhuongThucThanhToan.COD));
+		assertThat(sanPhamRepository.findById(sanPham.getSanPhamId()).orElseThrow().getSoLuongTonKho()).isEqualTo(2);
+
+		donHangService.chuyenTrangThaiHangLoat(List.of(donCod.getDonHangId()), DonHang.TrangThaiDonHang.DA_HUY);
+
+		assertThat(sanPhamRepository.findById(sanPham.getSanPhamId()).orElseThrow().getSoLuongTonKho()).isEqualTo(3);
+	}
+
+	// Mỗi luồng đặt một đơn 1 sản phẩm, tất cả cùng bắt đầu; ghi log số đơn xử lý mỗi giây, trả về số đơn đặt thành công
+	private int datHangDongThoi(NguoiDung nguoiDung, SanPham sanPham, DonHang.PhuongThucThanhToan phuongThuc) throws Exception {
+		ExecutorService pool = Executors.newFixedThreadPool(SO_DON_DONG_THOI);
+		CountDownLatch batDau = new CountDownLatch(1);
+		List<Future<Boolean>> ketQua = new ArrayList<>();
+		try {
+			for (int i = 0; i < SO_DON_DONG_THOI; i++) {
+				ketQua.add(pool.submit(() -> {
+					batDau.await();
+					try {
+						donHangService.createDonHang(donHang(nguoiDung, sanPham, phuongThuc));
+						return true;
+					} catch (RuntimeException e) {
+						return false;
+					}
+				}));
+			}
+			long bd = System.nanoTime();
+			batDau.countDown();
+
+			int thanhCong = 0;
+			for (Future<Boolean> future : ketQua) {
+				if (future.get(60, TimeUnit.SECONDS)) {
+					thanhCong++;
+				}
+			}
+			long thoiGianMs = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - bd));
+			log.info("Đặt hàng {} đồng thời ({} luồng): {}/{} đơn thành công, {}ms, {} đơn/giây",
+					phuongThuc, SO_DON_DONG_THOI, thanhCong, SO_DON_DONG_THOI, thoiGianMs, SO_DON_DONG_THOI * 1000L / thoiGianMs);
+			return thanhCong;
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	// Không gửi tỉnh/quận nên không gọi GHTK, phí vận chuyển bằng 0
+	private DonHangRequest donHang(NguoiDung nguoiDung, SanPham sanPham, DonHang.PhuongThucThanhToan phuongThuc) {
+		ChiTietDonHangRequest chiTiet = new ChiTietDonHangRequest();
+		chiTiet.setSanPhamId(sanPham.getSanPhamId());
+		chiTiet.setSoLuong(1);
+
+		DonHangRequest request = new DonHangRequest();
+		request.setUserId(nguoiDung.getUserId());
+		request.setDiaChiGiaoHang("1 Test");
+		request.setSoDienThoaiNhan("0900000000");
+		request.setPhuongThucThanhToan(phuongThuc);
+		request.setChiTietDonHangs(List.of(chiTiet));
+		return request;
+	}
+
+	private SanPham taoSanPham(int tonKho) {
+		SanPham sanPham = new SanPham();
+		sanPham.setTenSanPham("Sản phẩm test " + UUID.randomUUID());
+		sanPham.setGia(new BigDecimal("100000"));
+		sanPham.setSoLuongTonKho(tonKho);
+		return sanPhamRepository.save(sanPham);
+	}
+
+	private NguoiDung taoNguoiDung() {
+		NguoiDung nguoiDung = new NguoiDung();
+		nguoiDung.setHoTen("Khách test");
+		nguoiDung.setEmail(UUID.randomUUID() + "@test.local");
+		nguoiDung.setMatKhau("x");
+		return nguoiDungRepository.save(nguoiDung);
+	}
+
+}